@@ -3,18 +3,33 @@ package org.codehaus.mojo.jdiff;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileLock;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
 import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
 import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
@@ -42,8 +57,6 @@ public abstract class AbstractJDiffMojo
     extends BaseJDiffMojo
 {
 
-    private static final String JDIFF_CHECKOUT_DIRECTORY = "jdiff.checkoutDirectory";
-
     /**
      * Version to compare the base code against. This will be the left-hand side of the report.
      */
@@ -60,6 +73,67 @@ public abstract class AbstractJDiffMojo
      */
     @Parameter( property = "jdiff.forceCheckout", defaultValue = "false" )
     private boolean forceCheckout;
+    /**
+     * Use the sources archive of a version from the repository when available, instead of checking out its sources.
+     */
+    @Parameter( property = "jdiff.useSourcesArtifact", defaultValue = "true" )
+    private boolean useSourcesArtifact;
+    /**
+     * Only check out the <code>pom.xml</code> files and source roots of the reactor projects instead of the complete
+     * repository. This only works when the layout of the comparison version matches the current one; a sparse checkout
+     * without any sources falls back to a complete checkout.
+     */
+    @Parameter( property = "jdiff.sparseCheckout", defaultValue = "false" )
+    private boolean sparseCheckout;
+    /**
+     * The directory of the checkout pool, shared by all builds using the same local repository. A checkout is reused
+     * by every build comparing against the same SCM connection and version, and survives <code>mvn clean</code>.
+     * Defaults to <code>.cache/jdiff-maven-plugin/checkouts</code> within the local repository.
+     */
+    @Parameter( property = "jdiff.checkoutPoolDirectory" )
+    private File checkoutPoolDirectory;
+    /**
+     * The number of days after which an unused checkout is removed from the pool.
+     */
+    @Parameter( property = "jdiff.checkoutPoolMaxAge", defaultValue = "30" )
+    private int checkoutPoolMaxAge;
+    /**
+     * The maximum size of the checkout pool in megabytes, after which the least recently used checkouts are removed.
+     * Use <code>0</code> to check out into the working directory of the build instead.
+     */
+    @Parameter( property = "jdiff.checkoutPoolSize", defaultValue = "2048" )
+    private int checkoutPoolSize;
+
+    /**
+     * The maximum number of API descriptors to generate concurrently. The descriptors of the comparison and base
+     * version are independent, so by default both are generated at the same time. Use <code>1</code> to generate
+     * them one after the other.
+     */
+    @Parameter( property = "jdiff.descriptorThreads", defaultValue = "2" )
+    private int descriptorThreads;
+
+    /**
+     * Compare the API descriptors within the plugin and write a single page report, instead of running the JDiff
+     * doclet over the sources of the base version. This needs neither a javadoc run nor the sources of the base
+     * version, but the report is less detailed than the JDiff report and doesn't cover documentation changes.
+     */
+    @Parameter( property = "jdiff.nativeReport", defaultValue = "false" )
+    private boolean nativeReport;
+
+    /**
+     * The number of threads comparing and rendering packages when comparing the descriptors within the plugin. Use
+     * <code>0</code> for one thread per processor.
+     */
+    @Parameter( property = "jdiff.reportThreads", defaultValue = "0" )
+    private int reportThreads;
+
+    /**
+     * The options of the JVM of a forked javadoc generating the report with the JDiff doclet, which holds both APIs in
+     * memory and usually needs a larger heap than generating a descriptor, like <code>-Xmx4g -XX:+UseParallelGC</code>.
+     * The <code>-J</code> javadoc expects in front of them is optional.
+     */
+    @Parameter( property = "jdiff.reportJvmOptions" )
+    private String reportJvmOptions;
 
     @Parameter( defaultValue = "${reactorProjects}", required = true, readonly = true )
     List<MavenProject> reactorProjects;
@@ -72,6 +146,8 @@ public abstract class AbstractJDiffMojo
     private ArtifactMetadataSource metadataSource;
     @Component
     private ArtifactFactory factory;
+    @Component
+    private ArtifactResolver artifactResolver;
     /**
      * The local repository where the artifacts are located.
      */
@@ -106,11 +182,48 @@ public abstract class AbstractJDiffMojo
     public void executeReport( Locale locale )
         throws MavenReportException
     {
-        MavenProject lhsProject, rhsProject;
+        if ( !isValidVisibility() )
+        {
+            throw new MavenReportException( "Unknown visibility '" + getVisibility() + "', expected one of "
+                + VISIBILITIES );
+        }
+
+        // checked before resolving the APIs, which may check out or extract the sources of a version
+        String goal = mojoExecution.getMojoDescriptor().getGoal();
+        ReportFingerprint reportFingerprint =
+            new ReportFingerprint( new File( workingDirectory, goal + ".fingerprint" ),
+                                   new File( getReportOutputDirectory(), "changes.html" ) );
+        String reportKey;
         try
         {
-            lhsProject = resolveProject( comparisonVersion );
-            rhsProject = resolveProject( baseVersion );
+            reportKey = getReportKey();
+            if ( reportKey != null && !forceCheckout && reportFingerprint.isUpToDate( reportKey ) )
+            {
+                getLog().info( "JDiff report is up to date, neither " + comparisonVersion + " nor " + baseVersion
+                                   + " changed since the last run" );
+                return;
+            }
+            reportFingerprint.delete();
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( e.getMessage(), e );
+        }
+        catch ( MojoFailureException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw new MavenReportException( e.getMessage() );
+        }
+
+        ApiVersion lhs, rhs;
+        try
+        {
+            lhs = resolveApiVersion( comparisonVersion, true );
+            rhs = resolveApiVersion( baseVersion, nativeReport );
+            checkExtraction( lhs, rhs );
         }
         catch ( ProjectBuildingException e )
         {
@@ -125,20 +238,68 @@ public abstract class AbstractJDiffMojo
             throw new MavenReportException( e.getMessage() );
         }
     
-        String lhsTag = getApiName( lhsProject.getVersion() );
-        String rhsTag = getApiName( rhsProject.getVersion() );
+        String lhsTag = getApiName( lhs.version );
+        String rhsTag = getApiName( rhs.version );
     
         try
         {
-            generateJDiffXML( lhsProject, lhsTag );
-            generateJDiffXML( rhsProject, rhsTag );
+            copyDescriptor( lhs, lhsTag );
+            copyDescriptor( rhs, rhsTag );
         }
-        catch ( JavadocExecutionException e )
+        catch ( IOException e )
         {
             throw new MavenReportException( e.getMessage(), e );
         }
     
-        generateReport( getSourceDirectory( rhsProject.getBuild() ), lhsTag, rhsTag );
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( 2, descriptorThreads ) ) );
+        try
+        {
+            Future<?> lhsFuture = null;
+            if ( lhs.descriptor == null )
+            {
+                lhsFuture = executor.submit( new DescriptorTask( lhs, lhsTag ) );
+            }
+            Future<?> rhsFuture = null;
+            if ( rhs.descriptor == null )
+            {
+                rhsFuture = executor.submit( new DescriptorTask( rhs, rhsTag ) );
+            }
+    
+            if ( lhsFuture != null )
+            {
+                waitForDescriptor( lhsFuture, "comparison version " + lhs.version );
+            }
+            if ( rhsFuture != null )
+            {
+                waitForDescriptor( rhsFuture, "base version " + rhs.version );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    
+        if ( nativeReport )
+        {
+            compareDescriptors( lhsTag, rhsTag );
+        }
+        else
+        {
+            generateReport( rhs, lhsTag, rhsTag );
+        }
+        logJavadocStatistics();
+    
+        if ( reportKey != null )
+        {
+            try
+            {
+                reportFingerprint.store( reportKey );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Unable to write " + reportFingerprint.getFile() + ": " + e.getMessage() );
+            }
+        }
         
         try
         {
@@ -150,6 +311,503 @@ public abstract class AbstractJDiffMojo
         }
     }
 
+    /**
+     * The report only depends on the APIs of both versions and the effective configuration of this goal, so it can be
+     * skipped before resolving the APIs. The key covers the configuration, the sources and classpath of the current
+     * projects and the resolved released versions, whose sources don't change.
+     * 
+     * @return the key, or {@code null} if a side is a snapshot of another project version, which can't be checked
+     *         without fetching its sources
+     */
+    private String getReportKey()
+        throws IOException, MojoFailureException, MojoExecutionException
+    {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add( getPluginDescriptor().getVersion() );
+        fingerprint.add( getClass().getName() );
+        addDescriptorConfiguration( fingerprint );
+        fingerprint.add( String.valueOf( nativeReport ) );
+        fingerprint.add( reportJvmOptions );
+        fingerprint.add( getDescriptorClassifier() );
+        fingerprint.add( getReportOutputDirectory().getAbsolutePath() );
+        if ( !addApiVersion( fingerprint, comparisonVersion ) || !addApiVersion( fingerprint, baseVersion ) )
+        {
+            return null;
+        }
+        return fingerprint.getHash();
+    }
+
+    private boolean addApiVersion( Fingerprint fingerprint, String versionSpec )
+        throws IOException, MojoFailureException, MojoExecutionException
+    {
+        for ( MavenProject apiProject : getApiProjects() )
+        {
+            fingerprint.add( apiProject.getId() );
+            if ( apiProject.getVersion().equals( versionSpec ) )
+            {
+                List<String> sourceRoots =
+                    JDiffUtils.getProjectSourceRoots( apiProject, getCompileSourceRoots( apiProject ) );
+                fingerprint.addAll( sourceRoots );
+                for ( String sourceRoot : sourceRoots )
+                {
+                    fingerprint.addTree( new File( sourceRoot ), "**/*.java" );
+                }
+                fingerprint.addClasspath( ProjectCache.getClasspathElements( getBuildKey(), apiProject ) );
+                if ( isUseBytecode() )
+                {
+                    fingerprint.addTree( new File( getBuildOutputDirectory( apiProject.getBuild() ) ), "**/*.class" );
+                }
+            }
+            else
+            {
+                Artifact artifact = resolveArtifact( apiProject, versionSpec );
+                if ( artifact.getVersion() != null && artifact.isSnapshot() )
+                {
+                    return false;
+                }
+                fingerprint.add( artifact.getVersion() );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the API of a version for all projects covered by this report. When covering several projects, their
+     * source roots and classpaths are merged into a single API, so each side is documented by one javadoc run.
+     * Projects missing from the version are skipped. The merged API is named after the version of the first project,
+     * with a warning when the projects resolved different versions.
+     * 
+     * @param versionSpec the version specification
+     * @param apiOnly {@code true} if only the API of the version is needed, the report needs the sources of the base
+     *            version
+     * @return the resolved version
+     */
+    private ApiVersion resolveApiVersion( String versionSpec, boolean apiOnly )
+        throws MojoFailureException, MojoExecutionException, ProjectBuildingException
+    {
+        List<MavenProject> apiProjects = getApiProjects();
+        if ( apiProjects.size() == 1 )
+        {
+            MavenProject apiProject = apiProjects.get( 0 );
+            ApiVersion api = resolveApiVersion( apiProject, versionSpec, apiOnly );
+            if ( api == null )
+            {
+                throw new MojoFailureException( apiProject.getId() + " doesn't exist in version " + versionSpec );
+            }
+            return api;
+        }
+    
+        ApiVersion aggregate = new ApiVersion();
+        Set<String> classpathElements = new LinkedHashSet<String>();
+        List<String> sourceDirectories = new ArrayList<String>();
+        List<String> withoutClasses = new ArrayList<String>();
+        Map<String, String> versions = new LinkedHashMap<String, String>();
+        for ( MavenProject apiProject : apiProjects )
+        {
+            ApiVersion api = resolveApiVersion( apiProject, versionSpec, apiOnly );
+            if ( api == null )
+            {
+                getLog().info( apiProject.getId() + " doesn't exist in version " + versionSpec + ", skipping it" );
+                continue;
+            }
+            if ( aggregate.version == null )
+            {
+                aggregate.version = api.version;
+            }
+            versions.put( apiProject.getId(), api.version );
+            if ( api.classesLocations != null )
+            {
+                if ( aggregate.classesLocations == null )
+                {
+                    aggregate.classesLocations = new ArrayList<File>();
+                }
+                aggregate.classesLocations.addAll( api.classesLocations );
+            }
+            else
+            {
+                withoutClasses.add( apiProject.getId() );
+            }
+            aggregate.sourceRoots.addAll( api.sourceRoots );
+            classpathElements.addAll( api.classpathElements );
+            if ( api.sourceDirectory != null )
+            {
+                sourceDirectories.add( api.sourceDirectory );
+            }
+        }
+        if ( aggregate.version == null )
+        {
+            throw new MojoFailureException( "None of the projects exists in version " + versionSpec );
+        }
+        if ( new HashSet<String>( versions.values() ).size() > 1 )
+        {
+            getLog().warn( "The projects resolved different versions for " + versionSpec + ": " + versions
+                + ". The report compares them as version " + aggregate.version + "." );
+        }
+        if ( aggregate.classesLocations != null && !withoutClasses.isEmpty() )
+        {
+            // a single descriptor is either extracted from classes or documented from sources
+            throw new MojoFailureException( "The classes of version " + aggregate.version + " of " + withoutClasses
+                + " are not available, disable jdiff.useBytecode to compare the sources of all projects" );
+        }
+        aggregate.classpathElements.addAll( classpathElements );
+        aggregate.sourceDirectory = StringUtils.join( sourceDirectories.iterator(), File.pathSeparator );
+        return aggregate;
+    }
+
+    /**
+     * Descriptors extracted from classes carry no documentation and differ in details from documented ones, so
+     * comparing one of each reports spurious changes.
+     */
+    private void checkExtraction( ApiVersion lhs, ApiVersion rhs )
+        throws MojoFailureException
+    {
+        if ( lhs.isFromClasses() == rhs.isFromClasses() )
+        {
+            return;
+        }
+        ApiVersion withClasses = lhs.isFromClasses() ? lhs : rhs;
+        ApiVersion withoutClasses = lhs.isFromClasses() ? rhs : lhs;
+        throw new MojoFailureException( "The API of version " + withClasses.version + " is extracted from classes, but "
+            + "the classes of version " + withoutClasses.version + " are not available. Compile the project first or "
+            + "disable jdiff.useBytecode to compare the sources of both versions." );
+    }
+
+    /**
+     * Determines where the API of a version of a project comes from, cheapest first: the current project, an attached
+     * API descriptor, the sources archive in the repository or, as last resort, the SCM checkout.
+     * 
+     * @param apiProject the project of the current build
+     * @param versionSpec the version specification
+     * @param apiOnly {@code true} if only the API is needed, which may come from an API descriptor or the classes;
+     *            the report needs the sources of the base version
+     * @return the resolved version, or {@code null} if the project doesn't exist in that version
+     */
+    private ApiVersion resolveApiVersion( MavenProject apiProject, String versionSpec, boolean apiOnly )
+        throws MojoFailureException, MojoExecutionException, ProjectBuildingException
+    {
+        ApiVersion api = new ApiVersion();
+        api.classpathElements.add( getBuildOutputDirectory( apiProject.getBuild() ) );
+        if ( apiProject.getVersion().equals( versionSpec ) )
+        {
+            api.version = apiProject.getVersion();
+            api.sourceRoots.addAll( JDiffUtils.getProjectSourceRoots( apiProject, getCompileSourceRoots( apiProject ) ) );
+            api.sourceDirectory = getSourceDirectory( apiProject.getBuild() );
+            api.classpathElements.addAll( ProjectCache.getClasspathElements( getBuildKey(), apiProject ) );
+            File classes = new File( getBuildOutputDirectory( apiProject.getBuild() ) );
+            if ( isUseBytecode() )
+            {
+                if ( classes.isDirectory() )
+                {
+                    api.classesLocations = Collections.singletonList( classes );
+                }
+                else
+                {
+                    getLog().info( classes + " doesn't exist, documenting the sources of " + apiProject.getId() );
+                }
+            }
+            return api;
+        }
+    
+        if ( apiOnly && StringUtils.isNotEmpty( getDescriptorClassifier() ) )
+        {
+            // only descriptors extracted the way this report extracts the other side
+            String classifier = getDescriptorClassifier( getDescriptorClassifier(), isUseBytecode() );
+            if ( nativeReport )
+            {
+                api.descriptor =
+                    resolveClassifiedArtifact( apiProject, versionSpec, BinaryApiWriter.EXTENSION, classifier );
+            }
+            if ( api.descriptor == null )
+            {
+                api.descriptor = resolveClassifiedArtifact( apiProject, versionSpec, "xml", classifier );
+            }
+            if ( api.descriptor != null )
+            {
+                api.version = resolveArtifact( apiProject, versionSpec ).getVersion();
+                api.descriptorFromClasses = isUseBytecode();
+                return api;
+            }
+        }
+    
+        if ( apiOnly && isUseBytecode() )
+        {
+            File classes = resolveClassifiedArtifact( apiProject, versionSpec, "jar", getClassesClassifier() );
+            if ( classes != null )
+            {
+                api.version = resolveArtifact( apiProject, versionSpec ).getVersion();
+                api.classesLocations = Collections.singletonList( classes );
+                return api;
+            }
+        }
+    
+        File sourcesDirectory = resolveSourcesArtifact( apiProject, versionSpec );
+        if ( sourcesDirectory != null )
+        {
+            Artifact artifact = resolveArtifact( apiProject, versionSpec );
+            MavenProject versionProject = buildFromRepository( artifact );
+            api.version = artifact.getVersion();
+            api.sourceRoots.add( sourcesDirectory.getAbsolutePath() );
+            api.sourceDirectory = sourcesDirectory.getAbsolutePath();
+            api.classpathElements.addAll( ProjectCache.getClasspathElements( getBuildKey(), versionProject ) );
+            return api;
+        }
+    
+        MavenProject versionProject = resolveProject( apiProject, versionSpec );
+        if ( versionProject == null )
+        {
+            return null;
+        }
+        api.version = versionProject.getVersion();
+        if ( versionProject == apiProject )
+        {
+            api.sourceRoots.addAll( JDiffUtils.getProjectSourceRoots( versionProject,
+                                                                      getCompileSourceRoots( versionProject ) ) );
+        }
+        else
+        {
+            api.sourceRoots.addAll( ProjectCache.getSourceRoots( getBuildKey(), versionProject, getClass().getName(),
+                                                                 getCompileSourceRoots( versionProject ) ) );
+        }
+        api.sourceDirectory = getSourceDirectory( versionProject.getBuild() );
+        api.classpathElements.addAll( ProjectCache.getClasspathElements( getBuildKey(), versionProject ) );
+        return api;
+    }
+
+    /**
+     * @return the projects covered by this report
+     */
+    protected List<MavenProject> getApiProjects()
+    {
+        return Collections.singletonList( project );
+    }
+
+    /**
+     * Resolves the sources archive of the selected version and extracts its Java sources, so no SCM checkout is
+     * required for that version.
+     * 
+     * @param apiProject the project of the current build
+     * @param versionSpec the version specification
+     * @return the directory with the extracted sources, or {@code null} if there is no sources archive
+     */
+    private File resolveSourcesArtifact( MavenProject apiProject, String versionSpec )
+        throws MojoFailureException, MojoExecutionException
+    {
+        if ( !useSourcesArtifact )
+        {
+            return null;
+        }
+    
+        File sources = resolveClassifiedArtifact( apiProject, versionSpec, "jar", getSourcesClassifier() );
+        if ( sources == null )
+        {
+            return null;
+        }
+    
+        String version = resolveArtifact( apiProject, versionSpec ).getVersion();
+        File sourcesDirectory =
+            new File( workingDirectory, apiProject.getArtifactId() + "-" + version + "-" + getSourcesClassifier() );
+        try
+        {
+            if ( forceCheckout || !sourcesDirectory.isDirectory() )
+            {
+                // extract next to the final directory, so an interrupted extraction is never reused
+                File extractDirectory = new File( sourcesDirectory.getPath() + ".tmp" );
+                FileUtils.deleteDirectory( extractDirectory );
+                int count = JDiffUtils.extractSources( sources, extractDirectory );
+                FileUtils.deleteDirectory( sourcesDirectory );
+                if ( !extractDirectory.renameTo( sourcesDirectory ) )
+                {
+                    throw new IOException( "Unable to rename " + extractDirectory + " to " + sourcesDirectory );
+                }
+                getLog().info( "Extracted " + count + " sources from " + sources.getName() + " to " + sourcesDirectory );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to extract " + sources + ": " + e.getMessage(), e );
+        }
+        return sourcesDirectory;
+    }
+
+    /**
+     * Resolves a classified artifact of a project for the selected version.
+     * 
+     * @param apiProject the project of the current build
+     * @param versionSpec the version specification
+     * @param type the artifact type
+     * @param classifier the artifact classifier, {@code null} for the main artifact
+     * @return the artifact file, or {@code null} if there is no such artifact
+     */
+    private File resolveClassifiedArtifact( MavenProject apiProject, String versionSpec, String type,
+                                            String classifier )
+        throws MojoFailureException, MojoExecutionException
+    {
+        if ( apiProject.getVersion().equals( versionSpec ) )
+        {
+            return null;
+        }
+    
+        Artifact artifact = resolveArtifact( apiProject, versionSpec );
+        if ( artifact.getVersion() == null )
+        {
+            return null;
+        }
+    
+        Artifact classified =
+            factory.createArtifactWithClassifier( apiProject.getGroupId(), apiProject.getArtifactId(),
+                                                  artifact.getVersion(), type, classifier );
+        try
+        {
+            artifactResolver.resolve( classified, remoteRepositories, localRepository );
+            getLog().info( "Using " + classified.getId() );
+            return classified.getFile();
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            getLog().debug( e.getMessage() );
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            getLog().debug( e.getMessage() );
+        }
+        getLog().info( classified.getId() + " is not available" );
+        return null;
+    }
+
+    /**
+     * @return the classifier of the API descriptor artifact for this report, or {@code null} if none applies
+     */
+    protected abstract String getDescriptorClassifier();
+
+    /**
+     * @return the classifier of the sources archive for this report
+     */
+    protected abstract String getSourcesClassifier();
+
+    /**
+     * @return the classifier of the archive with the classes covered by this report, {@code null} for the main archive
+     */
+    protected abstract String getClassesClassifier();
+
+    /**
+     * @param p the project
+     * @return the source roots of the project covered by this report
+     */
+    protected abstract List<String> getCompileSourceRoots( MavenProject p );
+
+    /**
+     * @param build the build of a project
+     * @return the output directory of the classes covered by this report
+     */
+    protected abstract String getBuildOutputDirectory( Build build );
+
+    /**
+     * Where to find the API of one side of the report.
+     */
+    private static class ApiVersion
+    {
+        private String version;
+
+        private List<String> sourceRoots = new ArrayList<String>();
+
+        private String sourceDirectory;
+
+        private List<String> classpathElements = new ArrayList<String>();
+
+        /**
+         * The archives or class directories to extract the API from, {@code null} when documenting the sources
+         */
+        private List<File> classesLocations;
+
+        /**
+         * The API descriptor of this version, {@code null} when it needs to be generated
+         */
+        private File descriptor;
+
+        /**
+         * {@code true} if the {@link #descriptor} was extracted from classes
+         */
+        private boolean descriptorFromClasses;
+
+        /**
+         * @return {@code true} if the API is extracted from classes rather than documented from sources
+         */
+        private boolean isFromClasses()
+        {
+            return descriptor != null ? descriptorFromClasses : classesLocations != null;
+        }
+    }
+
+    /**
+     * Copies the resolved descriptor of a version into the working directory, in the format it was resolved in.
+     */
+    private void copyDescriptor( ApiVersion api, String tag )
+        throws IOException
+    {
+        // a binary descriptor of an earlier run would take precedence over the descriptor of this one
+        new File( workingDirectory, tag + "." + BinaryApiWriter.EXTENSION ).delete();
+        if ( api.descriptor != null )
+        {
+            FileUtils.copyFile( api.descriptor, new File( workingDirectory, tag + "."
+                + FileUtils.getExtension( api.descriptor.getName() ) ) );
+        }
+    }
+
+    private void waitForDescriptor( Future<?> descriptor, String side )
+        throws MavenReportException
+    {
+        try
+        {
+            descriptor.get();
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            String message = "Failed to generate the API descriptor of the " + side + ": " + cause.getMessage();
+            if ( cause instanceof Exception )
+            {
+                throw new MavenReportException( message, (Exception) cause );
+            }
+            throw new MavenReportException( message );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MavenReportException( "Interrupted while generating the API descriptor of the " + side );
+        }
+    }
+
+    /**
+     * Generates the API descriptor of a single project, so both sides can be generated concurrently.
+     */
+    private class DescriptorTask
+        implements Callable<Object>
+    {
+        private final ApiVersion api;
+
+        private final String tag;
+
+        DescriptorTask( ApiVersion api, String tag )
+        {
+            this.api = api;
+            this.tag = tag;
+        }
+
+        public Object call()
+            throws JavadocExecutionException, IOException
+        {
+            if ( api.classesLocations != null )
+            {
+                extractJDiffXML( api.classesLocations, tag );
+            }
+            else
+            {
+                generateJDiffXML( project.getBasedir(), api.sourceRoots, api.classpathElements, tag );
+            }
+            return null;
+        }
+    }
+
     protected abstract String getApiName( String lhsTag );
     
     protected abstract String getSourceDirectory( Build build );
@@ -159,27 +817,192 @@ public abstract class AbstractJDiffMojo
         return true;
     }
 
-    private MavenProject resolveProject( String versionSpec )
+    /**
+     * @return the project from the checkout of the comparison version, or {@code null} if it doesn't exist there
+     */
+    private MavenProject resolveProject( MavenProject apiProject, String versionSpec )
         throws MojoFailureException, MojoExecutionException, ProjectBuildingException
     {
         MavenProject result;
-        if ( project.getVersion().equals( versionSpec ) )
+        if ( apiProject.getVersion().equals( versionSpec ) )
         {
-            result = project;
+            result = apiProject;
         }
         else
         {
             File executionRootDirectory = new File( getSession().getExecutionRootDirectory() );
-            String modulePath  = executionRootDirectory.toURI().relativize( project.getBasedir().toURI() ).getPath();
-            
-            File checkoutDirectory = (File) getSession().getPluginContext( getPluginDescriptor(), reactorProjects.get( 0 ) ).get( JDIFF_CHECKOUT_DIRECTORY );
-            result = mavenProjectBuilder.build( new File( checkoutDirectory, modulePath + "pom.xml" ), localRepository, null );
+            String modulePath  = executionRootDirectory.toURI().relativize( apiProject.getBasedir().toURI() ).getPath();
             
-            getLog().debug(  new File( checkoutDirectory, modulePath + "pom.xml" ).getAbsolutePath() );
+            File checkoutDirectory = getCheckoutDirectory();
+            final File pom = new File( checkoutDirectory, modulePath + "pom.xml" );
+            getLog().debug( pom.getAbsolutePath() );
+            if ( !pom.isFile() )
+            {
+                return null;
+            }
+            String coordinates = apiProject.getGroupId() + ':' + apiProject.getArtifactId() + ':' + versionSpec;
+            result = getCachedProject( coordinates, pom, new Callable<MavenProject>()
+            {
+                public MavenProject call()
+                    throws ProjectBuildingException
+                {
+                    return mavenProjectBuilder.build( pom, localRepository, null );
+                }
+            } );
         }
         return result;
     }
 
+    private MavenProject buildFromRepository( final Artifact artifact )
+        throws MojoExecutionException, ProjectBuildingException
+    {
+        // resolved versions of the repository never change, so the coordinates are enough
+        return getCachedProject( artifact.getId(), null, new Callable<MavenProject>()
+        {
+            public MavenProject call()
+                throws ProjectBuildingException
+            {
+                return mavenProjectBuilder.buildFromRepository( artifact, remoteRepositories, localRepository );
+            }
+        } );
+    }
+
+    /**
+     * Projects are built once per build and shared by all projects of the reactor.
+     */
+    private MavenProject getCachedProject( String coordinates, File pom, Callable<MavenProject> builder )
+        throws MojoExecutionException, ProjectBuildingException
+    {
+        try
+        {
+            return ProjectCache.getProject( getBuildKey(), coordinates, pom, builder );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof ProjectBuildingException )
+            {
+                throw (ProjectBuildingException) e.getCause();
+            }
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new MojoExecutionException( "Failed to build " + coordinates + ": " + e.getCause().getMessage(),
+                                              e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for the project " + coordinates );
+        }
+    }
+
+    /**
+     * The sources of the comparison version are checked out once for the whole reactor, by the first project which
+     * needs them; other projects wait for that checkout to complete. The checkout is based on the first reactor
+     * project.
+     * 
+     * @return the checkout directory
+     */
+    private File getCheckoutDirectory()
+        throws MojoFailureException, MojoExecutionException
+    {
+        String key = getClass().getName() + ':' + comparisonVersion;
+        try
+        {
+            return CheckoutCoordinator.getCheckoutDirectory( getBuildKey(), key, new Callable<File>()
+            {
+                public File call()
+                    throws MojoFailureException, MojoExecutionException
+                {
+                    return checkout( reactorProjects.get( 0 ) );
+                }
+            } );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof MojoFailureException )
+            {
+                throw (MojoFailureException) e.getCause();
+            }
+            if ( e.getCause() instanceof MojoExecutionException )
+            {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException( "Checkout failed: " + e.getCause().getMessage(), e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for the checkout" );
+        }
+    }
+
+    private File checkout( MavenProject rootProject )
+        throws MojoFailureException, MojoExecutionException
+    {
+        Artifact artifact = resolveArtifact( rootProject, comparisonVersion );
+        MavenProject externalProject;
+        try
+        {
+            externalProject = buildFromRepository( artifact );
+        }
+        catch ( ProjectBuildingException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    
+        try
+        {
+            if ( sparseCheckout )
+            {
+                File checkoutDirectory = checkout( rootProject, externalProject, getCheckoutIncludes() );
+                if ( !FileUtils.getFileNames( checkoutDirectory, "**/*.java", null, false ).isEmpty() )
+                {
+                    return checkoutDirectory;
+                }
+                getLog().warn( "The sparse checkout of " + externalProject.getVersion()
+                    + " contains no sources, the layout of the versions differs. Performing a complete checkout." );
+                if ( getCheckoutPool() == null )
+                {
+                    // pool entries are keyed by their includes, a plain checkout directory has to be replaced
+                    FileUtils.deleteDirectory( checkoutDirectory );
+                }
+            }
+            return checkout( rootProject, externalProject, null );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( ScmException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    private File checkout( MavenProject rootProject, MavenProject externalProject, String includes )
+        throws IOException, MojoFailureException, ScmException
+    {
+        getLog().debug( "Checkout includes: " + includes );
+    
+        File checkoutDirectory;
+        CheckoutPool pool = getCheckoutPool();
+        if ( pool == null )
+        {
+            File rootWorkingDirectory = new File( rootProject.getBuild().getDirectory(), "jdiff" );
+            checkoutDirectory = new File( rootWorkingDirectory, externalProject.getVersion() );
+            fetchSources( checkoutDirectory, externalProject, includes );
+        }
+        else
+        {
+            checkoutDirectory =
+                pool.getEntry( getConnection( externalProject ), externalProject.getVersion(), includes );
+            fetchPooledSources( pool, checkoutDirectory, externalProject, includes );
+        }
+        return checkoutDirectory;
+    }
+
     private String getConnection( MavenProject mavenProject )
         throws MojoFailureException
     {
@@ -206,7 +1029,73 @@ public abstract class AbstractJDiffMojo
         return connection;
     }
 
-    private void fetchSources( final File checkoutDir, MavenProject mavenProject )
+    private CheckoutPool getCheckoutPool()
+    {
+        if ( checkoutPoolSize <= 0 )
+        {
+            return null;
+        }
+        File directory = checkoutPoolDirectory;
+        if ( directory == null )
+        {
+            directory = new File( localRepository.getBasedir(), ".cache/jdiff-maven-plugin/checkouts" );
+        }
+        return new CheckoutPool( getBuildKey(), directory, checkoutPoolMaxAge * 24L * 60 * 60 * 1000,
+                                 checkoutPoolSize * 1024L * 1024L, getLog() );
+    }
+
+    /**
+     * A completed pool entry is reused as is, the sources of a version don't change. The entry is checked while
+     * holding its shared lock, so no other build can remove it in between, and only locked exclusively to check it
+     * out. Forcing a checkout invalidates the entry once other builds stopped using it.
+     */
+    private void fetchPooledSources( CheckoutPool pool, File entry, MavenProject mavenProject, String includes )
+        throws IOException, MojoFailureException, ScmException
+    {
+        boolean invalidate = forceCheckout;
+        boolean checkedOut = false;
+        while ( true )
+        {
+            if ( !invalidate )
+            {
+                pool.use( entry );
+                if ( pool.isComplete( entry ) )
+                {
+                    break;
+                }
+            }
+
+            // releases the shared lock of this build
+            FileLock lock = pool.lockExclusive( entry );
+            try
+            {
+                if ( invalidate )
+                {
+                    pool.invalidate( entry );
+                    invalidate = false;
+                }
+                // another build may have completed the checkout while waiting for the lock
+                if ( !pool.isComplete( entry ) )
+                {
+                    FileUtils.deleteDirectory( entry );
+                    fetchSources( entry, mavenProject, includes );
+                    pool.markComplete( entry );
+                    checkedOut = true;
+                }
+            }
+            finally
+            {
+                pool.release( lock );
+            }
+        }
+        if ( !checkedOut )
+        {
+            getLog().info( "Using pooled checkout " + entry );
+        }
+        pool.evict();
+    }
+
+    private void fetchSources( final File checkoutDir, MavenProject mavenProject, String includes )
         throws IOException, MojoFailureException, ScmException
     {
         if ( forceCheckout && checkoutDir.exists() )
@@ -219,35 +1108,66 @@ public abstract class AbstractJDiffMojo
     
             getLog().info( "Performing checkout to " + checkoutDir );
     
-            new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).checkout( checkoutDir.getPath() );
+            new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).checkout( checkoutDir.getPath(),
+                                                                                                   includes, null );
         }
         else
         {
             getLog().info( "Performing update to " + checkoutDir );
     
-            new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).update( checkoutDir.getPath() );
+            new ScmCommandExecutor( scmManager, getConnection( mavenProject ), getLog() ).update( checkoutDir.getPath(),
+                                                                                                 includes, null );
+        }
+    }
+
+    /**
+     * The comparison version is built from the <code>pom.xml</code> files of the reactor and documented from its
+     * source roots, so those are the only files the checkout needs.
+     * 
+     * @return the comma separated include patterns, relative to the execution root
+     */
+    private String getCheckoutIncludes()
+    {
+        URI executionRoot = new File( getSession().getExecutionRootDirectory() ).toURI();
+    
+        Set<String> includes = new LinkedHashSet<String>();
+        for ( MavenProject reactorProject : reactorProjects )
+        {
+            String modulePath = executionRoot.relativize( reactorProject.getBasedir().toURI() ).getPath();
+            includes.add( modulePath + "pom.xml" );
+    
+            for ( String sourceRoot : getCompileSourceRoots( reactorProject ) )
+            {
+                URI relativeRoot = executionRoot.relativize( new File( sourceRoot ).toURI() );
+                // roots outside the execution root, like generated sources of other builds, stay absolute
+                if ( !relativeRoot.isAbsolute() )
+                {
+                    String path = relativeRoot.getPath();
+                    includes.add( ( path.endsWith( "/" ) ? path : path + "/" ) + "**" );
+                }
+            }
         }
+        return StringUtils.join( includes.iterator(), "," );
     }
 
-    private void generateReport( String srcDir, String oldApi, String newApi )
+    private void generateReport( ApiVersion newVersion, String oldApi, String newApi )
         throws MavenReportException
     {
         try
         {
             getReportOutputDirectory().mkdirs();
             
-            JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
+            JavadocExecutor javadoc = createJavadocExecutor( reportJvmOptions );
+    
+            javadoc.setLogFile( new File( workingDirectory, "javadoc-report.log" ) );
     
-            javadoc.addArgument( "-private" );
+            javadoc.addArgument( "-" + getVisibility() );
     
             javadoc.addArgumentPair( "d", getReportOutputDirectory().getAbsolutePath() );
     
-            javadoc.addArgumentPair( "sourcepath", srcDir );
+            javadoc.addArgumentPair( "sourcepath", StringUtils.quoteAndEscape( newVersion.sourceDirectory, '\'' ) );
     
-            List<String> classpathElements = new ArrayList<String>();
-            classpathElements.add( getBuildOutputDirectory() );
-            classpathElements.addAll( JDiffUtils.getClasspathElements( project ) );
-            String classpath = StringUtils.join( classpathElements.iterator(), File.pathSeparator );
+            String classpath = StringUtils.join( newVersion.classpathElements.iterator(), File.pathSeparator );
             javadoc.addArgumentPair( "classpath", StringUtils.quoteAndEscape( classpath, '\'' ) );
     
             javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
@@ -256,8 +1176,12 @@ public abstract class AbstractJDiffMojo
     
             javadoc.addArgumentPair( "oldapi", oldApi );
     
+            javadoc.addArgumentPair( "oldapidir", workingDirectory.getAbsolutePath() );
+    
             javadoc.addArgumentPair( "newapi", newApi );
     
+            javadoc.addArgumentPair( "newapidir", workingDirectory.getAbsolutePath() );
+    
             javadoc.addArgument( "-stats" );
     
             for ( String pckg : getPackages() )
@@ -265,7 +1189,7 @@ public abstract class AbstractJDiffMojo
                 javadoc.addArgument( pckg );
             }
             
-            javadoc.execute( workingDirectory.getAbsolutePath() );
+            executeJavadoc( javadoc );
         }
         catch ( IOException e )
         {
@@ -277,6 +1201,75 @@ public abstract class AbstractJDiffMojo
         }
     }
 
+    /**
+     * Compares the descriptors in the working directory and writes the differences with the
+     * {@link #createDiffWriter(ExecutorService) diff writer}. Packages are compared and rendered concurrently.
+     */
+    private void compareDescriptors( String oldApi, String newApi )
+        throws MavenReportException
+    {
+        int threads = reportThreads > 0 ? reportThreads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            long start = System.currentTimeMillis();
+            ApiDiff diff;
+            ApiPackageReader oldReader = openDescriptor( oldApi );
+            try
+            {
+                ApiPackageReader newReader = openDescriptor( newApi );
+                try
+                {
+                    diff = new ApiComparator( executor, 2 * threads ).compare( oldReader, newReader );
+                }
+                finally
+                {
+                    newReader.close();
+                }
+            }
+            finally
+            {
+                oldReader.close();
+            }
+            createDiffWriter( executor ).write( diff );
+            getLog().info( "Compared " + oldApi + " to " + newApi + " in " + ( System.currentTimeMillis() - start )
+                               + " ms with " + threads + " thread(s): " + diff.getRemovedPackages().size()
+                               + " removed, " + diff.getAddedPackages().size() + " added and "
+                               + diff.getChangedPackages().size() + " changed package(s)" );
+        }
+        catch ( IOException e )
+        {
+            throw new MavenReportException( e.getMessage(), e );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens the descriptor of {@code tag} in the working directory, preferring the binary format.
+     */
+    private ApiPackageReader openDescriptor( String tag )
+        throws IOException
+    {
+        File binary = new File( workingDirectory, tag + "." + BinaryApiWriter.EXTENSION );
+        if ( binary.isFile() )
+        {
+            return new BinaryApiReader( binary );
+        }
+        return new ApiReader( new File( workingDirectory, tag + ".xml" ) );
+    }
+
+    /**
+     * @param executor the executor for rendering parts of the report concurrently
+     * @return the writer of the report when comparing the descriptors within the plugin
+     */
+    protected ApiDiffWriter createDiffWriter( ExecutorService executor )
+    {
+        return new HtmlApiDiffWriter( getReportOutputDirectory(), executor );
+    }
+
     /** {@inheritDoc} */
     public String getDescription( Locale locale )
     {
@@ -305,7 +1298,7 @@ public abstract class AbstractJDiffMojo
         return getDestDir() + "/changes";
     }
 
-    private Artifact resolveArtifact( String versionSpec )
+    private Artifact resolveArtifact( MavenProject mavenProject, String versionSpec )
         throws MojoFailureException, MojoExecutionException
     {
         // Find the previous version JAR and resolve it, and it's dependencies
@@ -323,15 +1316,15 @@ public abstract class AbstractJDiffMojo
         try
         {
             previousArtifact =
-                factory.createDependencyArtifact( project.getGroupId(), project.getArtifactId(), range,
-                                                  project.getPackaging(), null, Artifact.SCOPE_COMPILE );
+                factory.createDependencyArtifact( mavenProject.getGroupId(), mavenProject.getArtifactId(), range,
+                                                  mavenProject.getPackaging(), null, Artifact.SCOPE_COMPILE );
     
             if ( !previousArtifact.getVersionRange().isSelectedVersionKnown( previousArtifact ) )
             {
                 getLog().debug( "Searching for versions in range: " + previousArtifact.getVersionRange() );
                 List<ArtifactVersion> availableVersions =
                     metadataSource.retrieveAvailableVersions( previousArtifact, localRepository,
-                                                              project.getRemoteArtifactRepositories() );
+                                                              mavenProject.getRemoteArtifactRepositories() );
                 filterSnapshots( availableVersions );
                 ArtifactVersion version = range.matchVersion( availableVersions );
                 if ( version != null )
@@ -384,38 +1377,6 @@ public abstract class AbstractJDiffMojo
     public void execute()
         throws MojoExecutionException, MojoFailureException
     {
-        // first project should do the checkout
-        if( project.equals( reactorProjects.get( 0 ) ) )
-        {
-            Artifact artifact = resolveArtifact( comparisonVersion );
-            MavenProject externalProject;
-            try
-            {
-                externalProject = mavenProjectBuilder.buildFromRepository( artifact, remoteRepositories, localRepository );
-            }
-            catch ( ProjectBuildingException e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
-    
-            File checkoutDirectory = new File( workingDirectory, externalProject.getVersion() );
-            
-            try
-            {
-                fetchSources( checkoutDirectory, externalProject );
-                
-                getSession().getPluginContext( getPluginDescriptor(), project ).put( JDIFF_CHECKOUT_DIRECTORY, checkoutDirectory );
-            }
-            catch ( IOException e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
-            catch ( ScmException e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
-        }
-        
         if ( !canGenerateReport() )
         {
             return;
@@ -511,4 +1472,4 @@ public abstract class AbstractJDiffMojo
             return getCompileSourceRoots();
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugins.annotations.Execute;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates a single API difference report for all projects of the reactor. The sources of all projects are
+ * documented together, so each version takes one javadoc run and classes moved between projects show up as changes.
+ */
+@Mojo( name = "aggregate", aggregator = true, requiresDependencyResolution = ResolutionScope.COMPILE,
+       threadSafe = true )
+@Execute( phase = LifecyclePhase.GENERATE_SOURCES )
+public class AggregateJDiffMojo
+    extends JDiffMojo
+{
+    @Override
+    protected List<MavenProject> getApiProjects()
+    {
+        List<MavenProject> apiProjects = new ArrayList<MavenProject>();
+        for ( MavenProject reactorProject : reactorProjects )
+        {
+            if ( !JDiffUtils.getProjectSourceRoots( reactorProject, getCompileSourceRoots( reactorProject ) ).isEmpty() )
+            {
+                apiProjects.add( reactorProject );
+            }
+        }
+        return apiProjects;
+    }
+
+    @Override
+    protected String getDescriptorClassifier()
+    {
+        // descriptors are attached per project and can't be combined
+        return null;
+    }
+
+    @Override
+    public boolean canGenerateReport()
+    {
+        return getProject().isExecutionRoot() && !getApiProjects().isEmpty();
+    }
+}
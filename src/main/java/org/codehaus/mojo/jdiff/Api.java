@@ -0,0 +1,87 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The API of one version as described by a JDiff API descriptor: its packages, their classes and the members of
+ * those.
+ */
+public class Api
+{
+    /**
+     * The version of the JDiff descriptor schema.
+     */
+    public static final String JDIFF_VERSION = "1.0.9";
+
+    private final String name;
+
+    private final SortedMap<String, ApiPackage> packages = new TreeMap<String, ApiPackage>();
+
+    /**
+     * The constructor
+     *
+     * @param name the api name, which is also the name of the descriptor file
+     */
+    public Api( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @param packageName the package name
+     * @return the package, which is created when it doesn't exist yet
+     */
+    public ApiPackage getPackage( String packageName )
+    {
+        ApiPackage apiPackage = packages.get( packageName );
+        if ( apiPackage == null )
+        {
+            apiPackage = new ApiPackage( packageName );
+            packages.put( packageName, apiPackage );
+        }
+        return apiPackage;
+    }
+
+    /**
+     * @param packageName the package name
+     * @return the package, or {@code null} if this API has no such package
+     */
+    public ApiPackage findPackage( String packageName )
+    {
+        return packages.get( packageName );
+    }
+
+    /**
+     * @return the packages, ordered by name
+     */
+    public Collection<ApiPackage> getPackages()
+    {
+        return packages.values();
+    }
+}
@@ -0,0 +1,115 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class or interface of an {@link ApiPackage}.
+ */
+public class ApiClass
+    extends ApiElement
+{
+    private final boolean isInterface;
+
+    private String superclass;
+
+    private final List<String> interfaces = new ArrayList<String>();
+
+    private final List<ApiMember> constructors = new ArrayList<ApiMember>();
+
+    private final List<ApiMember> methods = new ArrayList<ApiMember>();
+
+    private final List<ApiMember> fields = new ArrayList<ApiMember>();
+
+    /**
+     * The constructor
+     *
+     * @param name the name within the package, nested classes are named <code>Outer.Inner</code>
+     * @param isInterface {@code true} for an interface
+     */
+    public ApiClass( String name, boolean isInterface )
+    {
+        super( name );
+        this.isInterface = isInterface;
+    }
+
+    public boolean isInterface()
+    {
+        return isInterface;
+    }
+
+    /**
+     * @return the qualified name of the superclass, {@code null} for interfaces and <code>java.lang.Object</code>
+     */
+    public String getSuperclass()
+    {
+        return superclass;
+    }
+
+    public void setSuperclass( String superclass )
+    {
+        this.superclass = superclass;
+    }
+
+    /**
+     * @return the qualified names of the implemented or extended interfaces
+     */
+    public List<String> getInterfaces()
+    {
+        return interfaces;
+    }
+
+    public List<ApiMember> getConstructors()
+    {
+        return constructors;
+    }
+
+    public List<ApiMember> getMethods()
+    {
+        return methods;
+    }
+
+    public List<ApiMember> getFields()
+    {
+        return fields;
+    }
+
+    /**
+     * Add a member to the constructors, methods or fields depending on its kind.
+     *
+     * @param member the member
+     */
+    public void addMember( ApiMember member )
+    {
+        switch ( member.getKind() )
+        {
+            case CONSTRUCTOR:
+                constructors.add( member );
+                break;
+            case METHOD:
+                methods.add( member );
+                break;
+            default:
+                fields.add( member );
+        }
+    }
+}
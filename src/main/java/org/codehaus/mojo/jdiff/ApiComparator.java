@@ -0,0 +1,427 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Compares two {@link Api}s. Packages and classes are looked up by name and members by their signature, so each API
+ * is traversed once. APIs can also be compared while {@link ApiPackageReader reading} their descriptors, package by
+ * package. Those packages may be compared concurrently.
+ */
+public class ApiComparator
+{
+    private static final String[] CLASS_MODIFIERS = { "abstract", "static", "final" };
+
+    private static final String[] METHOD_MODIFIERS = { "abstract", "native", "synchronized", "static", "final" };
+
+    private static final String[] FIELD_MODIFIERS = { "transient", "volatile", "static", "final" };
+
+    private static final String[] CONSTRUCTOR_MODIFIERS = { "static", "final" };
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private static final Comparator<ApiPackage> PACKAGES_BY_NAME = new Comparator<ApiPackage>()
+    {
+        public int compare( ApiPackage o1, ApiPackage o2 )
+        {
+            return o1.getName().compareTo( o2.getName() );
+        }
+    };
+
+    private static final Comparator<ApiDiff.PackageDiff> PACKAGE_DIFFS_BY_NAME = new Comparator<ApiDiff.PackageDiff>()
+    {
+        public int compare( ApiDiff.PackageDiff o1, ApiDiff.PackageDiff o2 )
+        {
+            return o1.getName().compareTo( o2.getName() );
+        }
+    };
+
+    /**
+     * The constructor, for comparing in the calling thread.
+     */
+    public ApiComparator()
+    {
+        this( null, 0 );
+    }
+
+    /**
+     * The constructor, for comparing the packages of descriptors concurrently.
+     *
+     * @param executor the executor comparing the packages, {@code null} to compare in the calling thread
+     * @param maxPending the maximum number of packages read but not compared yet, which bounds the memory needed
+     */
+    public ApiComparator( ExecutorService executor, int maxPending )
+    {
+        this.executor = executor;
+        this.maxPending = Math.max( 1, maxPending );
+    }
+
+    /**
+     * Compare two APIs.
+     *
+     * @param oldApi the old API
+     * @param newApi the new API
+     * @return the differences
+     */
+    public ApiDiff compare( Api oldApi, Api newApi )
+    {
+        ApiDiff diff = new ApiDiff( oldApi.getName(), newApi.getName() );
+        for ( ApiPackage oldPackage : oldApi.getPackages() )
+        {
+            ApiPackage newPackage = newApi.findPackage( oldPackage.getName() );
+            if ( newPackage == null )
+            {
+                diff.getRemovedPackages().add( oldPackage );
+            }
+            else
+            {
+                addPackageDiff( diff, oldPackage, newPackage );
+            }
+        }
+        for ( ApiPackage newPackage : newApi.getPackages() )
+        {
+            if ( oldApi.findPackage( newPackage.getName() ) == null )
+            {
+                diff.getAddedPackages().add( newPackage );
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Compare two APIs while reading their descriptors, in either format. The packages of both descriptors are
+     * merged by name, so when both list their packages in the same order only the packages at hand are held in
+     * memory. Packages out of order are kept until the other descriptor has been read up to them. Matching packages
+     * are compared with the executor, if any, while reading on.
+     *
+     * @param oldReader the reader of the old API
+     * @param newReader the reader of the new API
+     * @return the differences, with the packages sorted by name
+     * @throws IOException if a descriptor can't be read
+     */
+    public ApiDiff compare( ApiPackageReader oldReader, ApiPackageReader newReader )
+        throws IOException
+    {
+        ApiDiff diff = new ApiDiff( oldReader.getApiName(), newReader.getApiName() );
+        Map<String, ApiPackage> unmatchedOld = new HashMap<String, ApiPackage>();
+        Map<String, ApiPackage> unmatchedNew = new HashMap<String, ApiPackage>();
+        LinkedList<Future<ApiDiff.PackageDiff>> pending = new LinkedList<Future<ApiDiff.PackageDiff>>();
+
+        ApiPackage oldPackage = oldReader.nextPackage();
+        ApiPackage newPackage = newReader.nextPackage();
+        while ( oldPackage != null || newPackage != null )
+        {
+            if ( oldPackage != null
+                && ( newPackage == null || oldPackage.getName().compareTo( newPackage.getName() ) <= 0 ) )
+            {
+                ApiPackage match = unmatchedNew.remove( oldPackage.getName() );
+                if ( match == null )
+                {
+                    unmatchedOld.put( oldPackage.getName(), oldPackage );
+                }
+                else
+                {
+                    submit( diff, pending, oldPackage, match );
+                }
+                oldPackage = oldReader.nextPackage();
+            }
+            else
+            {
+                ApiPackage match = unmatchedOld.remove( newPackage.getName() );
+                if ( match == null )
+                {
+                    unmatchedNew.put( newPackage.getName(), newPackage );
+                }
+                else
+                {
+                    submit( diff, pending, match, newPackage );
+                }
+                newPackage = newReader.nextPackage();
+            }
+        }
+        while ( !pending.isEmpty() )
+        {
+            addPackageDiff( diff, pending.removeFirst() );
+        }
+        diff.getRemovedPackages().addAll( unmatchedOld.values() );
+        diff.getAddedPackages().addAll( unmatchedNew.values() );
+
+        Collections.sort( diff.getRemovedPackages(), PACKAGES_BY_NAME );
+        Collections.sort( diff.getAddedPackages(), PACKAGES_BY_NAME );
+        Collections.sort( diff.getChangedPackages(), PACKAGE_DIFFS_BY_NAME );
+        return diff;
+    }
+
+    /**
+     * Compare a pair of packages with the executor, if any. When too many packages are pending, waits for the
+     * comparison of the oldest one.
+     */
+    private void submit( ApiDiff diff, LinkedList<Future<ApiDiff.PackageDiff>> pending, final ApiPackage oldPackage,
+                         final ApiPackage newPackage )
+        throws IOException
+    {
+        if ( executor == null )
+        {
+            addPackageDiff( diff, oldPackage, newPackage );
+            return;
+        }
+        pending.add( executor.submit( new Callable<ApiDiff.PackageDiff>()
+        {
+            public ApiDiff.PackageDiff call()
+            {
+                return comparePackage( oldPackage, newPackage );
+            }
+        } ) );
+        while ( pending.size() > maxPending )
+        {
+            addPackageDiff( diff, pending.removeFirst() );
+        }
+    }
+
+    private void addPackageDiff( ApiDiff diff, Future<ApiDiff.PackageDiff> future )
+        throws IOException
+    {
+        ApiDiff.PackageDiff packageDiff;
+        try
+        {
+            packageDiff = future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new InterruptedIOException( "Interrupted while comparing packages" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+        if ( !packageDiff.isEmpty() )
+        {
+            diff.getChangedPackages().add( packageDiff );
+        }
+    }
+
+    private void addPackageDiff( ApiDiff diff, ApiPackage oldPackage, ApiPackage newPackage )
+    {
+        ApiDiff.PackageDiff packageDiff = comparePackage( oldPackage, newPackage );
+        if ( !packageDiff.isEmpty() )
+        {
+            diff.getChangedPackages().add( packageDiff );
+        }
+    }
+
+    /**
+     * Compare the same package of two APIs.
+     *
+     * @param oldPackage the package in the old API
+     * @param newPackage the package in the new API
+     * @return the differences
+     */
+    public ApiDiff.PackageDiff comparePackage( ApiPackage oldPackage, ApiPackage newPackage )
+    {
+        ApiDiff.PackageDiff diff = new ApiDiff.PackageDiff( newPackage.getName() );
+        for ( ApiClass oldClass : oldPackage.getClasses() )
+        {
+            ApiClass newClass = newPackage.findClass( oldClass.getName() );
+            if ( newClass == null )
+            {
+                diff.getRemovedClasses().add( oldClass );
+            }
+            else
+            {
+                ApiDiff.ClassDiff classDiff = compareClass( oldClass, newClass );
+                if ( !classDiff.isEmpty() )
+                {
+                    diff.getChangedClasses().add( classDiff );
+                }
+            }
+        }
+        for ( ApiClass newClass : newPackage.getClasses() )
+        {
+            if ( oldPackage.findClass( newClass.getName() ) == null )
+            {
+                diff.getAddedClasses().add( newClass );
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Compare the same class of two APIs.
+     *
+     * @param oldClass the class in the old API
+     * @param newClass the class in the new API
+     * @return the differences
+     */
+    public ApiDiff.ClassDiff compareClass( ApiClass oldClass, ApiClass newClass )
+    {
+        ApiDiff.ClassDiff diff = new ApiDiff.ClassDiff( oldClass, newClass );
+        List<String> changes = diff.getChanges();
+        if ( oldClass.isInterface() != newClass.isInterface() )
+        {
+            changes.add( oldClass.isInterface() ? "changed from interface to class" : "changed from class to interface" );
+        }
+        if ( !StringUtils.equals( oldClass.getSuperclass(), newClass.getSuperclass() ) )
+        {
+            changes.add( "superclass changed from " + oldClass.getSuperclass() + " to " + newClass.getSuperclass() );
+        }
+        compareNames( "interface", oldClass.getInterfaces(), newClass.getInterfaces(), changes );
+        compareElements( oldClass, newClass, CLASS_MODIFIERS, changes );
+
+        Map<String, ApiMember> newMembers = index( newClass );
+        for ( ApiMember oldMember : getMembers( oldClass ) )
+        {
+            ApiMember newMember = newMembers.remove( getKey( oldMember ) );
+            if ( newMember == null )
+            {
+                diff.getRemovedMembers().add( oldMember );
+            }
+            else
+            {
+                ApiDiff.MemberDiff memberDiff = compareMember( oldMember, newMember );
+                if ( !memberDiff.getChanges().isEmpty() )
+                {
+                    diff.getChangedMembers().add( memberDiff );
+                }
+            }
+        }
+        diff.getAddedMembers().addAll( newMembers.values() );
+        return diff;
+    }
+
+    private ApiDiff.MemberDiff compareMember( ApiMember oldMember, ApiMember newMember )
+    {
+        ApiDiff.MemberDiff diff = new ApiDiff.MemberDiff( oldMember, newMember );
+        List<String> changes = diff.getChanges();
+        if ( !StringUtils.equals( oldMember.getType(), newMember.getType() ) )
+        {
+            changes.add( ( oldMember.getKind() == ApiMember.Kind.METHOD ? "return type" : "type" ) + " changed from "
+                + oldMember.getType() + " to " + newMember.getType() );
+        }
+        if ( oldMember.getValue() != null && newMember.getValue() != null
+            && !oldMember.getValue().equals( newMember.getValue() ) )
+        {
+            changes.add( "value changed from " + oldMember.getValue() + " to " + newMember.getValue() );
+        }
+        compareNames( "exception", oldMember.getExceptions(), newMember.getExceptions(), changes );
+
+        String[] modifiers;
+        switch ( newMember.getKind() )
+        {
+            case CONSTRUCTOR:
+                modifiers = CONSTRUCTOR_MODIFIERS;
+                break;
+            case METHOD:
+                modifiers = METHOD_MODIFIERS;
+                break;
+            default:
+                modifiers = FIELD_MODIFIERS;
+        }
+        compareElements( oldMember, newMember, modifiers, changes );
+        return diff;
+    }
+
+    private static void compareElements( ApiElement oldElement, ApiElement newElement, String[] modifiers,
+                                         List<String> changes )
+    {
+        for ( String modifier : modifiers )
+        {
+            boolean oldValue = oldElement.hasModifier( modifier );
+            if ( oldValue != newElement.hasModifier( modifier ) )
+            {
+                changes.add( oldValue ? "no longer " + modifier : "now " + modifier );
+            }
+        }
+        if ( !oldElement.getVisibility().equals( newElement.getVisibility() ) )
+        {
+            changes.add( "visibility changed from " + oldElement.getVisibility() + " to "
+                + newElement.getVisibility() );
+        }
+        if ( oldElement.isDeprecated() != newElement.isDeprecated() )
+        {
+            changes.add( oldElement.isDeprecated() ? "no longer deprecated" : "now deprecated" );
+        }
+    }
+
+    private static void compareNames( String kind, List<String> oldNames, List<String> newNames, List<String> changes )
+    {
+        Set<String> added = new HashSet<String>( newNames );
+        for ( String oldName : oldNames )
+        {
+            if ( !added.remove( oldName ) )
+            {
+                changes.add( kind + " " + oldName + " removed" );
+            }
+        }
+        for ( String newName : newNames )
+        {
+            if ( added.contains( newName ) )
+            {
+                changes.add( kind + " " + newName + " added" );
+            }
+        }
+    }
+
+    private static Map<String, ApiMember> index( ApiClass apiClass )
+    {
+        Map<String, ApiMember> members = new LinkedHashMap<String, ApiMember>();
+        for ( ApiMember member : getMembers( apiClass ) )
+        {
+            members.put( getKey( member ), member );
+        }
+        return members;
+    }
+
+    private static List<ApiMember> getMembers( ApiClass apiClass )
+    {
+        List<ApiMember> members = new ArrayList<ApiMember>( apiClass.getConstructors() );
+        members.addAll( apiClass.getMethods() );
+        members.addAll( apiClass.getFields() );
+        return members;
+    }
+
+    private static String getKey( ApiMember member )
+    {
+        return member.getKind() + " " + member.getSignature();
+    }
+}
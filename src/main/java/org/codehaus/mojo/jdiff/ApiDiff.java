@@ -0,0 +1,232 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The differences between two {@link Api}s, as computed by the {@link ApiComparator}.
+ */
+public class ApiDiff
+{
+    private final String oldName;
+
+    private final String newName;
+
+    private final List<ApiPackage> removedPackages = new ArrayList<ApiPackage>();
+
+    private final List<ApiPackage> addedPackages = new ArrayList<ApiPackage>();
+
+    private final List<PackageDiff> changedPackages = new ArrayList<PackageDiff>();
+
+    /**
+     * The constructor
+     *
+     * @param oldName the name of the old API
+     * @param newName the name of the new API
+     */
+    public ApiDiff( String oldName, String newName )
+    {
+        this.oldName = oldName;
+        this.newName = newName;
+    }
+
+    public String getOldName()
+    {
+        return oldName;
+    }
+
+    public String getNewName()
+    {
+        return newName;
+    }
+
+    public List<ApiPackage> getRemovedPackages()
+    {
+        return removedPackages;
+    }
+
+    public List<ApiPackage> getAddedPackages()
+    {
+        return addedPackages;
+    }
+
+    public List<PackageDiff> getChangedPackages()
+    {
+        return changedPackages;
+    }
+
+    /**
+     * @return {@code true} if both APIs are the same
+     */
+    public boolean isEmpty()
+    {
+        return removedPackages.isEmpty() && addedPackages.isEmpty() && changedPackages.isEmpty();
+    }
+
+    /**
+     * The changes within a package which exists in both APIs.
+     */
+    public static class PackageDiff
+    {
+        private final String name;
+
+        private final List<ApiClass> removedClasses = new ArrayList<ApiClass>();
+
+        private final List<ApiClass> addedClasses = new ArrayList<ApiClass>();
+
+        private final List<ClassDiff> changedClasses = new ArrayList<ClassDiff>();
+
+        public PackageDiff( String name )
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public List<ApiClass> getRemovedClasses()
+        {
+            return removedClasses;
+        }
+
+        public List<ApiClass> getAddedClasses()
+        {
+            return addedClasses;
+        }
+
+        public List<ClassDiff> getChangedClasses()
+        {
+            return changedClasses;
+        }
+
+        public boolean isEmpty()
+        {
+            return removedClasses.isEmpty() && addedClasses.isEmpty() && changedClasses.isEmpty();
+        }
+    }
+
+    /**
+     * The changes of a class which exists in both APIs.
+     */
+    public static class ClassDiff
+    {
+        private final ApiClass oldClass;
+
+        private final ApiClass newClass;
+
+        private final List<String> changes = new ArrayList<String>();
+
+        private final List<ApiMember> removedMembers = new ArrayList<ApiMember>();
+
+        private final List<ApiMember> addedMembers = new ArrayList<ApiMember>();
+
+        private final List<MemberDiff> changedMembers = new ArrayList<MemberDiff>();
+
+        public ClassDiff( ApiClass oldClass, ApiClass newClass )
+        {
+            this.oldClass = oldClass;
+            this.newClass = newClass;
+        }
+
+        public String getName()
+        {
+            return newClass.getName();
+        }
+
+        public ApiClass getOldClass()
+        {
+            return oldClass;
+        }
+
+        public ApiClass getNewClass()
+        {
+            return newClass;
+        }
+
+        /**
+         * @return the descriptions of the changes of the class itself, like its superclass or modifiers
+         */
+        public List<String> getChanges()
+        {
+            return changes;
+        }
+
+        public List<ApiMember> getRemovedMembers()
+        {
+            return removedMembers;
+        }
+
+        public List<ApiMember> getAddedMembers()
+        {
+            return addedMembers;
+        }
+
+        public List<MemberDiff> getChangedMembers()
+        {
+            return changedMembers;
+        }
+
+        public boolean isEmpty()
+        {
+            return changes.isEmpty() && removedMembers.isEmpty() && addedMembers.isEmpty()
+                && changedMembers.isEmpty();
+        }
+    }
+
+    /**
+     * The changes of a member with the same signature in both APIs.
+     */
+    public static class MemberDiff
+    {
+        private final ApiMember oldMember;
+
+        private final ApiMember newMember;
+
+        private final List<String> changes = new ArrayList<String>();
+
+        public MemberDiff( ApiMember oldMember, ApiMember newMember )
+        {
+            this.oldMember = oldMember;
+            this.newMember = newMember;
+        }
+
+        public ApiMember getOldMember()
+        {
+            return oldMember;
+        }
+
+        public ApiMember getNewMember()
+        {
+            return newMember;
+        }
+
+        /**
+         * @return the descriptions of the changes, like its type or modifiers
+         */
+        public List<String> getChanges()
+        {
+            return changes;
+        }
+    }
+}
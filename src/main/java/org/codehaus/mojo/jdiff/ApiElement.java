@@ -0,0 +1,128 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The attributes shared by classes and members in a JDiff API descriptor.
+ */
+public abstract class ApiElement
+{
+    /**
+     * The value of the <code>deprecated</code> attribute of elements which aren't deprecated.
+     */
+    public static final String NOT_DEPRECATED = "not deprecated";
+
+    /**
+     * The value of the <code>deprecated</code> attribute of deprecated elements without a comment.
+     */
+    public static final String DEPRECATED = "deprecated, no comment";
+
+    private final String name;
+
+    private final Set<String> modifiers = new TreeSet<String>();
+
+    private String visibility = "public";
+
+    private String deprecated = NOT_DEPRECATED;
+
+    private String doc;
+
+    protected ApiElement( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @param modifier a boolean attribute of the descriptor, like <code>static</code> or <code>abstract</code>
+     * @return {@code true} if the element has the modifier
+     */
+    public boolean hasModifier( String modifier )
+    {
+        return modifiers.contains( modifier );
+    }
+
+    /**
+     * @param modifier a boolean attribute of the descriptor, like <code>static</code> or <code>abstract</code>
+     * @param value {@code true} if the element has the modifier
+     */
+    public void setModifier( String modifier, boolean value )
+    {
+        if ( value )
+        {
+            modifiers.add( modifier );
+        }
+        else
+        {
+            modifiers.remove( modifier );
+        }
+    }
+
+    /**
+     * @return one of <code>public</code>, <code>protected</code>, <code>package</code> or <code>private</code>
+     */
+    public String getVisibility()
+    {
+        return visibility;
+    }
+
+    public void setVisibility( String visibility )
+    {
+        this.visibility = visibility;
+    }
+
+    /**
+     * @return {@link #NOT_DEPRECATED}, {@link #DEPRECATED} or the comment of the <code>@deprecated</code> tag
+     */
+    public String getDeprecated()
+    {
+        return deprecated;
+    }
+
+    public void setDeprecated( String deprecated )
+    {
+        this.deprecated = deprecated;
+    }
+
+    public boolean isDeprecated()
+    {
+        return !NOT_DEPRECATED.equals( deprecated );
+    }
+
+    /**
+     * @return the documentation, {@code null} if there is none
+     */
+    public String getDoc()
+    {
+        return doc;
+    }
+
+    public void setDoc( String doc )
+    {
+        this.doc = doc;
+    }
+}
@@ -0,0 +1,152 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A constructor, method or field of an {@link ApiClass}.
+ */
+public class ApiMember
+    extends ApiElement
+{
+    /**
+     * The kinds of members, named like their descriptor elements.
+     */
+    public enum Kind
+    {
+        CONSTRUCTOR, METHOD, FIELD
+    }
+
+    private final Kind kind;
+
+    private String type;
+
+    private String value;
+
+    private final List<String> parameterNames = new ArrayList<String>();
+
+    private final List<String> parameterTypes = new ArrayList<String>();
+
+    private final List<String> exceptions = new ArrayList<String>();
+
+    /**
+     * The constructor
+     *
+     * @param kind the kind of member
+     * @param name the member name, constructors are named after their class
+     */
+    public ApiMember( Kind kind, String name )
+    {
+        super( name );
+        this.kind = kind;
+    }
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @return the type of a field or the return type of a method, {@code null} for constructors
+     */
+    public String getType()
+    {
+        return type;
+    }
+
+    public void setType( String type )
+    {
+        this.type = type;
+    }
+
+    /**
+     * @return the value of a constant field, {@code null} if unknown
+     */
+    public String getValue()
+    {
+        return value;
+    }
+
+    public void setValue( String value )
+    {
+        this.value = value;
+    }
+
+    /**
+     * Add a parameter of a constructor or method.
+     *
+     * @param parameterName the parameter name
+     * @param parameterType the parameter type
+     */
+    public void addParameter( String parameterName, String parameterType )
+    {
+        parameterNames.add( parameterName );
+        parameterTypes.add( parameterType );
+    }
+
+    public List<String> getParameterNames()
+    {
+        return parameterNames;
+    }
+
+    public List<String> getParameterTypes()
+    {
+        return parameterTypes;
+    }
+
+    /**
+     * @return the qualified names of the declared exceptions
+     */
+    public List<String> getExceptions()
+    {
+        return exceptions;
+    }
+
+    /**
+     * The signature identifies a member within its class: the name of a field, the name and parameter types of a
+     * method and the parameter types of a constructor.
+     *
+     * @return the signature
+     */
+    public String getSignature()
+    {
+        if ( kind == Kind.FIELD )
+        {
+            return getName();
+        }
+        StringBuffer signature = new StringBuffer();
+        if ( kind == Kind.METHOD )
+        {
+            signature.append( getName() );
+        }
+        signature.append( '(' );
+        for ( int i = 0; i < parameterTypes.size(); i++ )
+        {
+            if ( i > 0 )
+            {
+                signature.append( ", " );
+            }
+            signature.append( parameterTypes.get( i ) );
+        }
+        return signature.append( ')' ).toString();
+    }
+}
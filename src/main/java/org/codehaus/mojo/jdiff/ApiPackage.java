@@ -0,0 +1,91 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A package of an {@link Api}.
+ */
+public class ApiPackage
+{
+    private final String name;
+
+    private final SortedMap<String, ApiClass> classes = new TreeMap<String, ApiClass>();
+
+    private String doc;
+
+    /**
+     * The constructor
+     *
+     * @param name the package name
+     */
+    public ApiPackage( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Add a class, replacing a class with the same name.
+     *
+     * @param apiClass the class
+     */
+    public void addClass( ApiClass apiClass )
+    {
+        classes.put( apiClass.getName(), apiClass );
+    }
+
+    /**
+     * @param className the class name within the package, nested classes are named <code>Outer.Inner</code>
+     * @return the class, or {@code null} if this package has no such class
+     */
+    public ApiClass findClass( String className )
+    {
+        return classes.get( className );
+    }
+
+    /**
+     * @return the classes and interfaces, ordered by name
+     */
+    public Collection<ApiClass> getClasses()
+    {
+        return classes.values();
+    }
+
+    /**
+     * @return the package documentation, {@code null} if there is none
+     */
+    public String getDoc()
+    {
+        return doc;
+    }
+
+    public void setDoc( String doc )
+    {
+        this.doc = doc;
+    }
+}
@@ -0,0 +1,48 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Reads an API descriptor one package at a time, as needed to {@link ApiComparator compare} APIs without holding
+ * them in memory.
+ */
+public interface ApiPackageReader
+{
+    /**
+     * @return the name of the API
+     */
+    String getApiName();
+
+    /**
+     * Read the next package with all its classes.
+     *
+     * @return the package, or {@code null} when all packages have been read
+     * @throws IOException if the descriptor can't be read or is invalid
+     */
+    ApiPackage nextPackage()
+        throws IOException;
+
+    /**
+     * Release the descriptor.
+     */
+    void close();
+}
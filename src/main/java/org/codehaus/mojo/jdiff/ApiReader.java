@@ -0,0 +1,376 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Reads a JDiff API descriptor, as written by the JDiff doclet or {@link ApiWriter}, with a pull parser. The
+ * descriptor is read one class or package at a time, so comparing two descriptors only needs the packages at hand in
+ * memory instead of both APIs.
+ */
+public class ApiReader
+    implements ApiPackageReader
+{
+    private final File descriptor;
+
+    private final Reader reader;
+
+    private final XmlPullParser parser;
+
+    private String apiName;
+
+    private ApiPackage apiPackage;
+
+    private ApiClass apiClass;
+
+    private boolean packageComplete;
+
+    /**
+     * The constructor, reads up to the api element.
+     *
+     * @param descriptor the descriptor file
+     * @throws IOException if the descriptor can't be read or is invalid
+     */
+    public ApiReader( File descriptor )
+        throws IOException
+    {
+        this.descriptor = descriptor;
+        this.reader = ReaderFactory.newXmlReader( descriptor );
+        try
+        {
+            parser = new MXParser();
+            parser.setInput( reader );
+            int event = parser.nextTag();
+            if ( event != XmlPullParser.START_TAG || !"api".equals( parser.getName() ) )
+            {
+                throw new XmlPullParserException( "No api element found" );
+            }
+            apiName = parser.getAttributeValue( null, "name" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            IOUtil.close( reader );
+            throw invalid( e );
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( reader );
+            throw e;
+        }
+    }
+
+    /**
+     * Read a whole descriptor into an {@link Api}.
+     *
+     * @param descriptor the descriptor file
+     * @return the API
+     * @throws IOException if the descriptor can't be read or is invalid
+     */
+    public static Api read( File descriptor )
+        throws IOException
+    {
+        ApiReader reader = new ApiReader( descriptor );
+        try
+        {
+            Api api = new Api( reader.getApiName() );
+            for ( ApiPackage apiPackage = reader.nextPackage(); apiPackage != null; apiPackage = reader.nextPackage() )
+            {
+                ApiPackage target = api.getPackage( apiPackage.getName() );
+                for ( ApiClass apiClass : apiPackage.getClasses() )
+                {
+                    target.addClass( apiClass );
+                }
+                if ( apiPackage.getDoc() != null )
+                {
+                    target.setDoc( apiPackage.getDoc() );
+                }
+            }
+            return api;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    public String getApiName()
+    {
+        return apiName;
+    }
+
+    /**
+     * Read the next class of the descriptor. Only the package name of the returned class is known, its documentation
+     * follows the classes.
+     *
+     * @return the class, or {@code null} at the end of the descriptor
+     * @throws IOException if the descriptor can't be read or is invalid
+     */
+    public ApiClass nextClass()
+        throws IOException
+    {
+        while ( advance() )
+        {
+            if ( apiClass != null )
+            {
+                return apiClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the package of the class returned last by {@link #nextClass()}
+     */
+    public String getPackageName()
+    {
+        return apiPackage == null ? null : apiPackage.getName();
+    }
+
+    /**
+     * Read the remaining classes of the current package, or all classes of the next package if the current one is
+     * complete.
+     *
+     * @return the package with its classes and documentation, or {@code null} at the end of the descriptor
+     * @throws IOException if the descriptor can't be read or is invalid
+     */
+    public ApiPackage nextPackage()
+        throws IOException
+    {
+        ApiPackage result = null;
+        while ( advance() )
+        {
+            if ( result == null )
+            {
+                result = new ApiPackage( apiPackage.getName() );
+            }
+            if ( apiClass != null )
+            {
+                result.addClass( apiClass );
+            }
+            else if ( packageComplete )
+            {
+                result.setDoc( apiPackage.getDoc() );
+                return result;
+            }
+        }
+        return result;
+    }
+
+    public void close()
+    {
+        IOUtil.close( reader );
+    }
+
+    /**
+     * Parse up to the end of the next class or package.
+     *
+     * @return {@code false} at the end of the descriptor
+     */
+    private boolean advance()
+        throws IOException
+    {
+        if ( packageComplete )
+        {
+            apiPackage = null;
+            packageComplete = false;
+        }
+        apiClass = null;
+        try
+        {
+            return advance( parser );
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw invalid( e );
+        }
+    }
+
+    private boolean advance( XmlPullParser parser )
+        throws XmlPullParserException, IOException
+    {
+        ApiClass current = null;
+        ApiMember member = null;
+        for ( int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next() )
+        {
+            if ( event == XmlPullParser.START_TAG )
+            {
+                String element = parser.getName();
+                if ( "package".equals( element ) )
+                {
+                    apiPackage = new ApiPackage( parser.getAttributeValue( null, "name" ) );
+                }
+                else if ( "class".equals( element ) || "interface".equals( element ) )
+                {
+                    current = new ApiClass( parser.getAttributeValue( null, "name" ), "interface".equals( element ) );
+                    current.setSuperclass( parser.getAttributeValue( null, "extends" ) );
+                    readModifier( parser, current, "abstract" );
+                    readCommonAttributes( parser, current );
+                }
+                else if ( "implements".equals( element ) )
+                {
+                    current.getInterfaces().add( parser.getAttributeValue( null, "name" ) );
+                }
+                else if ( "constructor".equals( element ) )
+                {
+                    member = new ApiMember( ApiMember.Kind.CONSTRUCTOR, parser.getAttributeValue( null, "name" ) );
+                    // the descriptor only has the parameter types of constructors
+                    for ( String type : splitTypes( parser.getAttributeValue( null, "type" ) ) )
+                    {
+                        member.addParameter( null, type );
+                    }
+                    readCommonAttributes( parser, member );
+                }
+                else if ( "method".equals( element ) )
+                {
+                    member = new ApiMember( ApiMember.Kind.METHOD, parser.getAttributeValue( null, "name" ) );
+                    member.setType( parser.getAttributeValue( null, "return" ) );
+                    readModifier( parser, member, "abstract" );
+                    readModifier( parser, member, "native" );
+                    readModifier( parser, member, "synchronized" );
+                    readCommonAttributes( parser, member );
+                }
+                else if ( "field".equals( element ) )
+                {
+                    member = new ApiMember( ApiMember.Kind.FIELD, parser.getAttributeValue( null, "name" ) );
+                    member.setType( parser.getAttributeValue( null, "type" ) );
+                    member.setValue( parser.getAttributeValue( null, "value" ) );
+                    readModifier( parser, member, "transient" );
+                    readModifier( parser, member, "volatile" );
+                    readCommonAttributes( parser, member );
+                }
+                else if ( "param".equals( element ) )
+                {
+                    member.addParameter( parser.getAttributeValue( null, "name" ),
+                                         parser.getAttributeValue( null, "type" ) );
+                }
+                else if ( "exception".equals( element ) )
+                {
+                    member.getExceptions().add( parser.getAttributeValue( null, "type" ) );
+                }
+                else if ( "doc".equals( element ) )
+                {
+                    String doc = parser.nextText();
+                    if ( member != null )
+                    {
+                        member.setDoc( doc );
+                    }
+                    else if ( current != null )
+                    {
+                        current.setDoc( doc );
+                    }
+                    else if ( apiPackage != null )
+                    {
+                        apiPackage.setDoc( doc );
+                    }
+                }
+            }
+            else if ( event == XmlPullParser.END_TAG )
+            {
+                String element = parser.getName();
+                if ( "constructor".equals( element ) || "method".equals( element ) || "field".equals( element ) )
+                {
+                    current.addMember( member );
+                    member = null;
+                }
+                else if ( "class".equals( element ) || "interface".equals( element ) )
+                {
+                    apiClass = current;
+                    return true;
+                }
+                else if ( "package".equals( element ) )
+                {
+                    packageComplete = true;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private IOException invalid( XmlPullParserException e )
+    {
+        return new IOException( "Invalid API descriptor " + descriptor + ": " + e.getMessage() );
+    }
+
+    private static void readModifier( XmlPullParser parser, ApiElement element, String modifier )
+    {
+        element.setModifier( modifier, "true".equals( parser.getAttributeValue( null, modifier ) ) );
+    }
+
+    private static void readCommonAttributes( XmlPullParser parser, ApiElement element )
+    {
+        readModifier( parser, element, "static" );
+        readModifier( parser, element, "final" );
+        String visibility = parser.getAttributeValue( null, "visibility" );
+        if ( visibility != null )
+        {
+            element.setVisibility( visibility );
+        }
+        String deprecated = parser.getAttributeValue( null, "deprecated" );
+        if ( deprecated != null )
+        {
+            element.setDeprecated( deprecated );
+        }
+    }
+
+    /**
+     * Split a comma separated list of types, ignoring the commas within type arguments.
+     */
+    static List<String> splitTypes( String types )
+    {
+        List<String> result = new ArrayList<String>();
+        if ( types == null || types.trim().length() == 0 )
+        {
+            return result;
+        }
+        int depth = 0;
+        int start = 0;
+        for ( int i = 0; i < types.length(); i++ )
+        {
+            char c = types.charAt( i );
+            if ( c == '<' )
+            {
+                depth++;
+            }
+            else if ( c == '>' )
+            {
+                depth--;
+            }
+            else if ( c == ',' && depth == 0 )
+            {
+                result.add( types.substring( start, i ).trim() );
+                start = i + 1;
+            }
+        }
+        result.add( types.substring( start ).trim() );
+        return result;
+    }
+}
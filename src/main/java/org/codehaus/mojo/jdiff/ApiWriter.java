@@ -0,0 +1,377 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.xml.pull.MXSerializer;
+import org.codehaus.plexus.util.xml.pull.XmlSerializer;
+
+/**
+ * Writes JDiff API descriptors with the elements and attributes of the descriptors of the JDiff doclet, so both can be
+ * compared by the report. Classes are serialized as soon as they are written, so a descriptor can be written one
+ * class at a time without holding the whole API.
+ */
+public class ApiWriter
+{
+    private static final String ENCODING = "UTF-8";
+
+    private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+    private static final Comparator<ApiMember> BY_SIGNATURE = new Comparator<ApiMember>()
+    {
+        public int compare( ApiMember o1, ApiMember o2 )
+        {
+            return o1.getSignature().compareTo( o2.getSignature() );
+        }
+    };
+
+    private final Writer writer;
+
+    private final XmlSerializer out;
+
+    /**
+     * The package opened by {@link #writeClass(String, ApiClass)}, {@code null} if none is open
+     */
+    private String openPackage;
+
+    /**
+     * The constructor, starts the descriptor.
+     *
+     * @param descriptor the descriptor file
+     * @param apiName the api name
+     * @throws IOException if the descriptor can't be written
+     */
+    public ApiWriter( File descriptor, String apiName )
+        throws IOException
+    {
+        descriptor.getParentFile().mkdirs();
+        writer = WriterFactory.newWriter( descriptor, ENCODING );
+        try
+        {
+            out = new MXSerializer();
+            out.setProperty( "http://xmlpull.org/v1/doc/properties.html#serializer-indentation", "  " );
+            out.setProperty( "http://xmlpull.org/v1/doc/properties.html#serializer-line-separator", "\n" );
+            out.setOutput( writer );
+            out.startDocument( ENCODING, Boolean.FALSE );
+            out.comment( " Generated by the JDiff Maven Plugin " );
+            out.comment( " on " + new Date() + " " );
+            out.setPrefix( "xsi", XSI_NAMESPACE );
+            out.startTag( null, "api" );
+            out.attribute( XSI_NAMESPACE, "noNamespaceSchemaLocation", "api.xsd" );
+            out.attribute( null, "name", apiName );
+            out.attribute( null, "jdversion", Api.JDIFF_VERSION );
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( writer );
+            throw e;
+        }
+    }
+
+    /**
+     * Write {@code api} to <code>name.xml</code> in {@code directory}.
+     *
+     * @param api the API
+     * @param directory the output directory
+     * @return the descriptor file
+     * @throws IOException if the descriptor can't be written
+     */
+    public static File write( Api api, File directory )
+        throws IOException
+    {
+        File descriptor = new File( directory, api.getName() + ".xml" );
+        ApiWriter apiWriter = new ApiWriter( descriptor, api.getName() );
+        try
+        {
+            for ( ApiPackage apiPackage : api.getPackages() )
+            {
+                apiWriter.writePackage( apiPackage );
+            }
+            apiWriter.close();
+        }
+        finally
+        {
+            IOUtil.close( apiWriter.writer );
+        }
+        return descriptor;
+    }
+
+    /**
+     * Write a package with all its classes.
+     *
+     * @param apiPackage the package
+     * @throws IOException if the descriptor can't be written
+     */
+    public void writePackage( ApiPackage apiPackage )
+        throws IOException
+    {
+        closePackage();
+        out.startTag( null, "package" );
+        out.attribute( null, "name", apiPackage.getName() );
+        for ( ApiClass apiClass : apiPackage.getClasses() )
+        {
+            writeClassElement( apiClass );
+        }
+        writeDoc( apiPackage.getDoc() );
+        out.endTag( null, "package" );
+    }
+
+    /**
+     * Write a single class. Consecutive classes of the same package share the package element, so the classes of a
+     * package should be written together.
+     *
+     * @param packageName the name of the package of the class
+     * @param apiClass the class
+     * @throws IOException if the descriptor can't be written
+     */
+    public void writeClass( String packageName, ApiClass apiClass )
+        throws IOException
+    {
+        if ( !packageName.equals( openPackage ) )
+        {
+            closePackage();
+            out.startTag( null, "package" );
+            out.attribute( null, "name", packageName );
+            openPackage = packageName;
+        }
+        writeClassElement( apiClass );
+    }
+
+    /**
+     * Complete the descriptor and close the file.
+     *
+     * @throws IOException if the descriptor can't be written
+     */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            closePackage();
+            out.endTag( null, "api" );
+            out.endDocument();
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    private void closePackage()
+        throws IOException
+    {
+        if ( openPackage != null )
+        {
+            out.endTag( null, "package" );
+            openPackage = null;
+        }
+    }
+
+    private void writeClassElement( ApiClass apiClass )
+        throws IOException
+    {
+        String element = apiClass.isInterface() ? "interface" : "class";
+        out.startTag( null, element );
+        out.attribute( null, "name", apiClass.getName() );
+        if ( apiClass.getSuperclass() != null )
+        {
+            out.attribute( null, "extends", apiClass.getSuperclass() );
+        }
+        writeModifier( apiClass, "abstract" );
+        writeCommonAttributes( apiClass );
+
+        for ( String implemented : apiClass.getInterfaces() )
+        {
+            out.startTag( null, "implements" );
+            out.attribute( null, "name", implemented );
+            out.endTag( null, "implements" );
+        }
+        for ( ApiMember constructor : sort( apiClass.getConstructors() ) )
+        {
+            writeConstructor( constructor );
+        }
+        for ( ApiMember method : sort( apiClass.getMethods() ) )
+        {
+            writeMethod( method );
+        }
+        for ( ApiMember field : sort( apiClass.getFields() ) )
+        {
+            writeField( field );
+        }
+        writeDoc( apiClass.getDoc() );
+
+        out.endTag( null, element );
+    }
+
+    private void writeConstructor( ApiMember constructor )
+        throws IOException
+    {
+        out.startTag( null, "constructor" );
+        out.attribute( null, "name", constructor.getName() );
+        if ( !constructor.getParameterTypes().isEmpty() )
+        {
+            StringBuffer type = new StringBuffer();
+            for ( String parameterType : constructor.getParameterTypes() )
+            {
+                if ( type.length() > 0 )
+                {
+                    type.append( ", " );
+                }
+                type.append( parameterType );
+            }
+            out.attribute( null, "type", type.toString() );
+        }
+        writeCommonAttributes( constructor );
+        writeExceptions( constructor );
+        writeDoc( constructor.getDoc() );
+        out.endTag( null, "constructor" );
+    }
+
+    private void writeMethod( ApiMember method )
+        throws IOException
+    {
+        out.startTag( null, "method" );
+        out.attribute( null, "name", method.getName() );
+        out.attribute( null, "return", method.getType() );
+        writeModifier( method, "abstract" );
+        writeModifier( method, "native" );
+        writeModifier( method, "synchronized" );
+        writeCommonAttributes( method );
+        for ( int i = 0; i < method.getParameterTypes().size(); i++ )
+        {
+            out.startTag( null, "param" );
+            out.attribute( null, "name", method.getParameterNames().get( i ) );
+            out.attribute( null, "type", method.getParameterTypes().get( i ) );
+            out.endTag( null, "param" );
+        }
+        writeExceptions( method );
+        writeDoc( method.getDoc() );
+        out.endTag( null, "method" );
+    }
+
+    private void writeField( ApiMember field )
+        throws IOException
+    {
+        out.startTag( null, "field" );
+        out.attribute( null, "name", field.getName() );
+        out.attribute( null, "type", field.getType() );
+        writeModifier( field, "transient" );
+        writeModifier( field, "volatile" );
+        if ( field.getValue() != null )
+        {
+            out.attribute( null, "value", field.getValue() );
+        }
+        writeCommonAttributes( field );
+        writeDoc( field.getDoc() );
+        out.endTag( null, "field" );
+    }
+
+    private void writeExceptions( ApiMember member )
+        throws IOException
+    {
+        for ( String exception : member.getExceptions() )
+        {
+            out.startTag( null, "exception" );
+            out.attribute( null, "name", exception.substring( exception.lastIndexOf( '.' ) + 1 ) );
+            out.attribute( null, "type", exception );
+            out.endTag( null, "exception" );
+        }
+    }
+
+    private void writeModifier( ApiElement element, String modifier )
+        throws IOException
+    {
+        out.attribute( null, modifier, String.valueOf( element.hasModifier( modifier ) ) );
+    }
+
+    private void writeCommonAttributes( ApiElement element )
+        throws IOException
+    {
+        writeModifier( element, "static" );
+        writeModifier( element, "final" );
+        out.attribute( null, "visibility", element.getVisibility() );
+        out.attribute( null, "deprecated", element.getDeprecated() );
+    }
+
+    private void writeDoc( String doc )
+        throws IOException
+    {
+        if ( doc != null )
+        {
+            out.startTag( null, "doc" );
+            out.text( doc );
+            out.endTag( null, "doc" );
+        }
+    }
+
+    private static List<ApiMember> sort( List<ApiMember> members )
+    {
+        List<ApiMember> sorted = new ArrayList<ApiMember>( members );
+        Collections.sort( sorted, BY_SIGNATURE );
+        return sorted;
+    }
+
+    /**
+     * Escape markup and characters outside of ISO-8859-1, for writing API elements into documents.
+     */
+    static String escape( String value )
+    {
+        StringBuffer result = new StringBuffer( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '<':
+                    result.append( "&lt;" );
+                    break;
+                case '>':
+                    result.append( "&gt;" );
+                    break;
+                case '&':
+                    result.append( "&amp;" );
+                    break;
+                case '"':
+                    result.append( "&quot;" );
+                    break;
+                default:
+                    if ( c > 0xff )
+                    {
+                        result.append( "&#" ).append( (int) c ).append( ';' );
+                    }
+                    else
+                    {
+                        result.append( c );
+                    }
+            }
+        }
+        return result.toString();
+    }
+}
@@ -2,12 +2,16 @@ package org.codehaus.mojo.jdiff;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.SystemUtils;
 import org.apache.maven.artifact.Artifact;
@@ -26,6 +30,12 @@ import org.codehaus.plexus.util.cli.CommandLineUtils;
 public abstract class BaseJDiffMojo
     extends AbstractMojo
 {
+    static final List<String> VISIBILITIES =
+        Arrays.asList( new String[] { "public", "protected", "package", "private" } );
+
+    private static final List<String> PATH_OPTIONS =
+        Arrays.asList( new String[] { "-apidir", "-classpath", "-docletpath", "-sourcepath" } );
+    
     /**
      * The working directory for this plugin.
      */
@@ -37,6 +47,111 @@ public abstract class BaseJDiffMojo
     @Parameter( property = "javadocExecutable" )
     private String javadocExecutable;
     
+    /**
+     * Run javadoc on a single long-lived javadoc worker instead of forking it for every run.
+     * 
+     * @deprecated Use <code>javadocWorkers=1</code>, of which this is an alias; a <code>javadocWorkers</code> above
+     *             <code>0</code> takes precedence. javadoc doesn't run inside the Maven JVM, as the JDiff doclet calls
+     *             <code>System.exit</code> on errors.
+     */
+    @Parameter( property = "jdiff.inProcess", defaultValue = "false" )
+    private boolean inProcess;
+    
+    /**
+     * Pass classpaths longer than this number of characters to a forked javadoc through a jar whose manifest only
+     * holds the classpath, for platforms which limit the length of command lines or arguments. The options and
+     * packages are always passed through argument files. <code>0</code> passes the classpath itself.
+     */
+    @Parameter( property = "jdiff.pathingJarThreshold", defaultValue = "0" )
+    private int pathingJarThreshold;
+    
+    /**
+     * The options of the JVM of a forked javadoc generating API descriptors, like
+     * <code>-Xmx2g -XX:+UseParallelGC -XX:TieredStopAtLevel=1 -Xshare:auto</code>. The <code>-J</code> javadoc
+     * expects in front of them is optional.
+     */
+    @Parameter( property = "jdiff.descriptorJvmOptions" )
+    private String descriptorJvmOptions;
+    
+    /**
+     * Measure the peak resident set size (on Linux) and the GC time of every forked javadoc and log them, to size the
+     * JVM options from data. This adds <code>-verbose:gc</code> to the JVM options.
+     */
+    @Parameter( property = "jdiff.forkStatistics", defaultValue = "false" )
+    private boolean forkStatistics;
+    
+    /**
+     * Let forked javadoc runs map the classes of javadoc from an application class data sharing archive, which is
+     * created from the first run and kept in the <code>cds</code> directory of the plugin cache, next to the descriptor
+     * cache. Requires a JDK 10 or later for the forks, the JDiff doclet itself requires a JDK 12 or older. Skipped when
+     * the JVM options configure class data sharing themselves.
+     */
+    @Parameter( property = "jdiff.classDataSharing", defaultValue = "false" )
+    private boolean classDataSharing;
+    
+    /**
+     * The maximum number of long-lived javadoc processes per JDK and JVM options, shared by all projects and goals of
+     * the build. Runs of javadoc are sent to these workers instead of forking javadoc every time, so they start with a
+     * warm JVM. Goals asking for different numbers share the largest one. <code>0</code> forks javadoc for every run.
+     * Requires a JDK providing the <code>javax.tools</code> documentation tool, that is Java 8 or later.
+     */
+    @Parameter( property = "jdiff.javadocWorkers", defaultValue = "0" )
+    private int javadocWorkers;
+    
+    /**
+     * The directory of the persistent API descriptor cache, shared by all builds using the same local repository.
+     * Descriptors are cached by a hash of their sources, classpath, JDK, doclet version and javadoc options. Defaults
+     * to <code>.cache/jdiff-maven-plugin</code> within the local repository.
+     */
+    @Parameter( property = "jdiff.descriptorCacheDirectory" )
+    private File descriptorCacheDirectory;
+    
+    /**
+     * The maximum size of the API descriptor cache in megabytes, after which the least recently used descriptors are
+     * evicted. The cache is disabled by default, use a positive size like <code>100</code> to enable it.
+     */
+    @Parameter( property = "jdiff.descriptorCacheSize", defaultValue = "0" )
+    private int descriptorCacheSize;
+    
+    /**
+     * Extract the API descriptors from compiled classes instead of documenting the sources with javadoc. This is much
+     * faster and uses the archive of the comparison version instead of its sources, but the descriptors carry no
+     * documentation, so documentation changes aren't reported. The classes of the current version must have been
+     * compiled, otherwise its sources are documented as before.
+     */
+    @Parameter( property = "jdiff.useBytecode", defaultValue = "false" )
+    private boolean useBytecode;
+    
+    /**
+     * The least visibility of the classes and members to compare: <code>public</code>, <code>protected</code>,
+     * <code>package</code> or <code>private</code>. It applies to the API descriptors and the report, so javadoc
+     * doesn't model the members below it at all.
+     */
+    @Parameter( property = "jdiff.visibility", defaultValue = "protected" )
+    private String visibility;
+    
+    /**
+     * Keep the API descriptor of each package and only document the packages whose sources changed since the last
+     * run. A package is only documented again when its own sources, the archives on the classpath or the javadoc
+     * options change, so a change in another package or project which alters its API, like the value of a constant
+     * it refers to, goes unnoticed until then.
+     */
+    @Parameter( property = "jdiff.incremental", defaultValue = "false" )
+    private boolean incremental;
+    
+    /**
+     * Comma separated patterns of the packages to document, in which <code>*</code> matches any part of a name,
+     * including dots, e.g. <code>org.example.*</code>. By default all packages with public types are documented.
+     */
+    @Parameter( property = "jdiff.includePackages" )
+    private String includePackages;
+    
+    /**
+     * Comma separated patterns of the packages not to document, e.g. <code>*.internal,*.internal.*</code>.
+     */
+    @Parameter( property = "jdiff.excludePackages" )
+    private String excludePackages;
+    
     @Component
     private ToolchainManager toolchainManager;
     
@@ -47,9 +162,21 @@ public abstract class BaseJDiffMojo
     private MavenSession session;
 
     /**
-     * Holds the packages of both the comparisonVersion and baseVersion
+     * Holds the packages of both the comparisonVersion and baseVersion, which may be generated concurrently
      */
-    private Set<String> packages = new HashSet<String>();
+    private Set<String> packages = Collections.synchronizedSet( new HashSet<String>() );
+    
+    private int javadocRuns;
+    
+    private long javadocTime;
+    
+    private boolean javadocOnWorker;
+    
+    private boolean inProcessWarned;
+    
+    private long javadocPeakRss = -1;
+    
+    private long javadocGcTime = -1;
 
     @Parameter( defaultValue = "${project}", required = true, readonly = true )
     protected MavenProject project;
@@ -62,11 +189,71 @@ public abstract class BaseJDiffMojo
         return session;
     }
     
+    /**
+     * Finds the packages to document below the source roots.
+     * 
+     * @param basedir the directory to resolve relative source roots against
+     * @param sourceRoots the source roots
+     * @return the packages with types of the configured visibility, exported by their module and matching the package
+     *         patterns
+     * @throws InterruptedIOException if interrupted while walking the source roots
+     */
+    protected final Set<String> getApiPackages( File basedir, List<String> sourceRoots )
+        throws InterruptedIOException
+    {
+        Set<String> apiPackages = JDiffUtils.getPackages( basedir, sourceRoots, visibility, getBuildKey(), getLog() );
+        return JDiffUtils.filterPackages( apiPackages, includePackages, excludePackages );
+    }
+    
+    /**
+     * @return identifies this build, also when parallel builds give every project its own copy of the session
+     */
+    protected final String getBuildKey()
+    {
+        return session.getExecutionRootDirectory() + '@' + session.getStartTime().getTime();
+    }
+    
     protected final Set<String> getPackages()
     {
         return packages;
     }
     
+    protected final boolean isUseBytecode()
+    {
+        return useBytecode;
+    }
+    
+    /**
+     * @return the least visibility of the compared classes and members
+     */
+    protected final String getVisibility()
+    {
+        return visibility;
+    }
+    
+    /**
+     * The visibility is part of the classifier of an attached API descriptor, as a descriptor only models the classes
+     * and members of its visibility and above. A report therefore only resolves descriptors of its own visibility.
+     * Descriptors extracted from class files carry no documentation and differ in details from documented ones, so
+     * they get a <code>-bytecode</code> suffix.
+     * 
+     * @param classifier the configured descriptor classifier
+     * @param fromClasses {@code true} for a descriptor extracted from class files
+     * @return the qualified classifier, like <code>jdiff-protected</code> or <code>jdiff-protected-bytecode</code>
+     */
+    protected final String getDescriptorClassifier( String classifier, boolean fromClasses )
+    {
+        return classifier + "-" + visibility + ( fromClasses ? "-bytecode" : "" );
+    }
+    
+    /**
+     * @return {@code true} if the configured visibility is one javadoc knows
+     */
+    protected final boolean isValidVisibility()
+    {
+        return VISIBILITIES.contains( visibility );
+    }
+    
     @SuppressWarnings( "unchecked" )
     protected final Map<String, Artifact> getPluginArtifactMap()
     {
@@ -78,45 +265,404 @@ public abstract class BaseJDiffMojo
         return mojoExecution.getMojoDescriptor().getPluginDescriptor();
     }
     
-    protected void generateJDiffXML( MavenProject project, String tag )
+    /**
+     * Generates the API descriptor <code>tag.xml</code> in the working directory.
+     * 
+     * @param basedir the directory to resolve relative source roots against
+     * @param sourceRoots the source roots to document, possibly of several projects
+     * @param classpathElements the classpath to document them with
+     * @param tag the api name
+     * @throws JavadocExecutionException if the execution of javadoc fails
+     */
+    protected void generateJDiffXML( File basedir, List<String> sourceRoots, List<String> classpathElements,
+                                     String tag )
         throws JavadocExecutionException
     {
         try
         {
-            JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
+            JavadocExecutor javadoc = createJDiffJavadoc( sourceRoots, classpathElements, tag, workingDirectory );
+    
+            Set<String> pckgs = getApiPackages( basedir, sourceRoots );
+            for ( String pckg : pckgs )
+            {
+                javadoc.addArgument( pckg );
+            }
+            packages.addAll( pckgs );
+    
+            DescriptorCache cache = getDescriptorCache();
+            File descriptor = new File( workingDirectory, tag + ".xml" );
+            String key = null;
+            if ( cache != null )
+            {
+                key = getDescriptorKey( javadoc, sourceRoots, classpathElements );
+                if ( cache.restore( key, descriptor ) )
+                {
+                    return;
+                }
+            }
+
+            if ( incremental )
+            {
+                generateIncrementally( sourceRoots, classpathElements, tag, pckgs );
+            }
+            else
+            {
+                executeJavadoc( javadoc );
+            }
+
+            if ( cache != null )
+            {
+                cache.store( key, descriptor );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new JavadocExecutionException( e.getMessage(), e );
+        }
+    }
+
+    private JavadocExecutor createJDiffJavadoc( List<String> sourceRoots, List<String> classpathElements, String tag,
+                                                File apidir )
+        throws IOException
+    {
+        JavadocExecutor javadoc = createJavadocExecutor();
+
+        javadoc.setLogFile( new File( workingDirectory, "javadoc-" + tag + ".log" ) );
+
+        javadoc.addArgument( "-" + visibility );
+
+        javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
+
+        javadoc.addArgumentPair( "docletpath", getDocletpath() );
+
+        javadoc.addArgumentPair( "apiname", tag );
+
+        javadoc.addArgumentPair( "apidir", apidir.getAbsolutePath() );
+
+        String classpath = StringUtils.join( classpathElements.iterator(), File.pathSeparator );
+        javadoc.addArgumentPair( "classpath", StringUtils.quoteAndEscape( classpath, '\'' ) );
+
+        String sourcePath = StringUtils.join( sourceRoots.iterator(), File.pathSeparator );
+        javadoc.addArgumentPair( "sourcepath", StringUtils.quoteAndEscape( sourcePath, '\'' ) );
+
+        return javadoc;
+    }
+
+    /**
+     * Documents only the packages whose sources changed since the last run into their
+     * {@link DescriptorFragments fragments}, then stitches the descriptor <code>tag.xml</code> together from those.
+     */
+    private void generateIncrementally( List<String> sourceRoots, List<String> classpathElements, String tag,
+                                        Set<String> pckgs )
+        throws IOException, JavadocExecutionException
+    {
+        File fragmentsDirectory = new File( workingDirectory, "fragments/" + tag );
+        File runDirectory = new File( fragmentsDirectory, "run" );
+        DescriptorFragments fragments = new DescriptorFragments( fragmentsDirectory );
+
+        JavadocExecutor javadoc = createJDiffJavadoc( sourceRoots, classpathElements, tag, runDirectory );
+        Fingerprint options = new Fingerprint();
+        addJavadocOptions( options, javadoc );
+        options.addAll( sourceRoots );
+        for ( String element : classpathElements )
+        {
+            // class directories, like the one of this project, change with every source change; only archives count
+            File file = new File( element );
+            if ( file.isFile() )
+            {
+                options.addStamp( file );
+            }
+            else
+            {
+                options.add( element );
+            }
+        }
+        String optionsKey = options.getHash();
+
+        Map<String, String> packageHashes = new TreeMap<String, String>();
+        for ( String pckg : pckgs )
+        {
+            packageHashes.put( pckg, DescriptorFragments.getPackageHash( sourceRoots, pckg ) );
+        }
+
+        Set<String> stale = fragments.getStalePackages( optionsKey, packageHashes );
+        getLog().info( "Documenting " + stale.size() + " of " + pckgs.size() + " package(s) of " + tag );
+        if ( !stale.isEmpty() )
+        {
+            for ( String pckg : stale )
+            {
+                javadoc.addArgument( pckg );
+            }
+            runDirectory.mkdirs();
+            executeJavadoc( javadoc );
+            fragments.update( new File( runDirectory, tag + ".xml" ), stale, optionsKey, packageHashes );
+        }
+        fragments.stitch( new File( workingDirectory, tag + ".xml" ), tag, pckgs );
+    }
+
+    /**
+     * Extracts the API descriptor <code>tag.xml</code> in the working directory from compiled classes.
+     * 
+     * @param classesLocations the archives and class directories
+     * @param tag the api name
+     * @throws IOException if a class file can't be read or the descriptor can't be written
+     */
+    protected void extractJDiffXML( List<File> classesLocations, String tag )
+        throws IOException
+    {
+        long start = System.currentTimeMillis();
+        Api api = new BytecodeApiExtractor( visibility, getLog() ).extract( tag, classesLocations );
+        ApiWriter.write( api, workingDirectory );
+        for ( ApiPackage apiPackage : api.getPackages() )
+        {
+            packages.add( apiPackage.getName() );
+        }
+        getLog().info( "Extracted the API of " + tag + " from its classes in " + ( System.currentTimeMillis() - start )
+                           + " ms" );
+    }
+
+    private DescriptorCache getDescriptorCache()
+    {
+        if ( descriptorCacheSize <= 0 )
+        {
+            return null;
+        }
+        return new DescriptorCache( getCacheDirectory(), descriptorCacheSize * 1024L * 1024L, getLog() );
+    }
     
-            javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
+    /**
+     * @return the directory of the caches shared by all builds
+     */
+    private File getCacheDirectory()
+    {
+        if ( descriptorCacheDirectory != null )
+        {
+            return descriptorCacheDirectory;
+        }
+        return new File( session.getLocalRepository().getBasedir(), ".cache/jdiff-maven-plugin" );
+    }
     
-            javadoc.addArgumentPair( "docletpath", getDocletpath() );
+    /**
+     * The key of a descriptor covers the javadoc options, the content of the sources, the classpath and the doclet
+     * version. Options holding paths are left out, their content is part of the key instead.
+     */
+    private String getDescriptorKey( JavadocExecutor javadoc, List<String> sourceRoots,
+                                     List<String> classpathElements )
+        throws IOException
+    {
+        Fingerprint fingerprint = new Fingerprint();
+        addJavadocOptions( fingerprint, javadoc );
     
-            javadoc.addArgumentPair( "apiname", tag );
+        for ( String sourceRoot : sourceRoots )
+        {
+            fingerprint.addTree( new File( sourceRoot ), "**/*.java" );
+        }
+        fingerprint.addClasspath( classpathElements );
     
-            javadoc.addArgumentPair( "apidir", workingDirectory.getAbsolutePath() );
+        return fingerprint.getHash();
+    }
     
-            List<String> classpathElements = new ArrayList<String>();
-            classpathElements.add( getBuildOutputDirectory() );
-            classpathElements.addAll( JDiffUtils.getClasspathElements( project ) );
-            String classpath = StringUtils.join( classpathElements.iterator(), File.pathSeparator );
-            javadoc.addArgumentPair( "classpath", StringUtils.quoteAndEscape( classpath, '\'' ) );
+    /**
+     * Adds the effective configuration of the API descriptors: the JDK, the doclet version, the visibility, the
+     * extraction method, the package patterns and the JVM options.
+     * 
+     * @param fingerprint the fingerprint to add to
+     * @throws IOException if the javadoc executable can't be found
+     */
+    protected final void addDescriptorConfiguration( Fingerprint fingerprint )
+        throws IOException
+    {
+        fingerprint.addJdk( getJavadocExecutable() );
+        fingerprint.add( getPluginArtifactMap().get( "jdiff:jdiff" ).getVersion() );
+        fingerprint.add( visibility );
+        fingerprint.add( String.valueOf( useBytecode ) );
+        fingerprint.add( includePackages );
+        fingerprint.add( excludePackages );
+        fingerprint.add( descriptorJvmOptions );
+    }
     
-            String sourcePath =
-                StringUtils.join( JDiffUtils.getProjectSourceRoots( project, getCompileSourceRoots() ).iterator(), File.pathSeparator );
-            javadoc.addArgumentPair( "sourcepath", StringUtils.quoteAndEscape( sourcePath, '\'' ) );
+    /**
+     * Adds the JDK, the doclet version and the javadoc arguments, except the values of options holding paths.
+     */
+    private void addJavadocOptions( Fingerprint fingerprint, JavadocExecutor javadoc )
+        throws IOException
+    {
+        fingerprint.addJdk( javadoc.getExecutable() );
+        fingerprint.add( getPluginArtifactMap().get( "jdiff:jdiff" ).getVersion() );
+        fingerprint.add( getPluginArtifactMap().get( "xerces:xercesImpl" ).getVersion() );
     
-            Set<String> pckgs = JDiffUtils.getPackages( project.getBasedir(), getCompileSourceRoots() );
-            for ( String pckg : pckgs )
+        String[] arguments = javadoc.getArguments();
+        for ( int i = 0; i < arguments.length; i++ )
+        {
+            fingerprint.add( arguments[i] );
+            if ( PATH_OPTIONS.contains( arguments[i] ) )
             {
-                javadoc.addArgument( pckg );
+                i++;
             }
-            packages.addAll( pckgs );
+        }
+    }
+    
+    /**
+     * @return the number of javadoc workers, with the deprecated <code>inProcess</code> standing for one
+     */
+    private int getJavadocWorkers()
+    {
+        if ( javadocWorkers > 0 || !inProcess )
+        {
+            return javadocWorkers;
+        }
+        if ( !inProcessWarned )
+        {
+            getLog().warn( "jdiff.inProcess is deprecated, use jdiff.javadocWorkers=1 instead." );
+            inProcessWarned = true;
+        }
+        return 1;
+    }
+    
+    /**
+     * Creates a javadoc executor generating API descriptors, see {@link #createJavadocExecutor(String)}.
+     * 
+     * @return the javadoc executor
+     * @throws IOException if the javadoc executable can't be found
+     */
+    protected final JavadocExecutor createJavadocExecutor()
+        throws IOException
+    {
+        return createJavadocExecutor( descriptorJvmOptions );
+    }
     
+    /**
+     * Creates a javadoc executor for the configured executable, running on a javadoc worker when requested.
+     * 
+     * @param jvmOptions the JVM options of a forked javadoc, may be {@code null}
+     * @return the javadoc executor
+     * @throws IOException if the javadoc executable can't be found or the JVM options can't be parsed
+     */
+    protected final JavadocExecutor createJavadocExecutor( String jvmOptions )
+        throws IOException
+    {
+        JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
+        javadoc.setPathingJarThreshold( pathingJarThreshold );
+        javadoc.setMeasure( forkStatistics );
+        List<String> options = new ArrayList<String>();
+        if ( StringUtils.isNotEmpty( jvmOptions ) )
+        {
+            try
+            {
+                options.addAll( Arrays.asList( CommandLineUtils.translateCommandline( jvmOptions ) ) );
+            }
+            catch ( Exception e )
+            {
+                throw new IOException( "Invalid JVM options '" + jvmOptions + "': " + e.getMessage() );
+            }
+            for ( String option : options )
+            {
+                javadoc.addJvmOption( option );
+            }
+        }
+        int workers = getJavadocWorkers();
+        if ( workers > 0 )
+        {
+            JavadocWorkerPool pool =
+                JavadocWorkerPool.getPool( getBuildKey(), javadoc.getExecutable(), options, workers, getLog() );
+            if ( pool != null )
+            {
+                javadoc.setWorkerPool( pool );
+                return javadoc;
+            }
+            getLog().warn( "No java executable next to " + javadoc.getExecutable() + ", javadoc will be forked." );
+        }
+        if ( classDataSharing && !configuresClassDataSharing( options ) )
+        {
+            ClassDataArchive archive = new ClassDataArchive( new File( getCacheDirectory(), "cds" ),
+                                                             javadoc.getExecutable(), getDocletpath(), options,
+                                                             getLog() );
+            if ( archive.isSupported() )
+            {
+                javadoc.setClassDataArchive( archive );
+            }
+            else
+            {
+                getLog().debug( "The JDK of javadoc doesn't support application class data sharing archives." );
+            }
+        }
+        return javadoc;
+    }
+    
+    private static boolean configuresClassDataSharing( List<String> jvmOptions )
+    {
+        for ( String option : jvmOptions )
+        {
+            if ( option.indexOf( "-Xshare" ) >= 0 || option.indexOf( "SharedArchiveFile" ) >= 0
+                || option.indexOf( "ArchiveClassesAtExit" ) >= 0 || option.indexOf( "DumpLoadedClassList" ) >= 0 )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Executes javadoc from the working directory and keeps track of its wall-clock time.
+     * 
+     * @param javadoc the javadoc executor
+     * @throws JavadocExecutionException if the execution of javadoc fails
+     */
+    protected final void executeJavadoc( JavadocExecutor javadoc )
+        throws JavadocExecutionException
+    {
+        try
+        {
             javadoc.execute( workingDirectory.getAbsolutePath() );
         }
-        catch ( IOException e )
+        finally
         {
-            throw new JavadocExecutionException( e.getMessage(), e );
+            synchronized ( this )
+            {
+                javadocRuns++;
+                javadocTime += javadoc.getExecutionTime();
+                javadocOnWorker = javadoc.isOnWorker();
+                javadocPeakRss = Math.max( javadocPeakRss, javadoc.getPeakRss() );
+                if ( javadoc.getGcTime() >= 0 )
+                {
+                    javadocGcTime = Math.max( javadocGcTime, 0 ) + javadoc.getGcTime();
+                }
+            }
+            if ( forkStatistics && !javadoc.isOnWorker() )
+            {
+                getLog().info( "javadoc (forked) took " + javadoc.getExecutionTime() + " ms, "
+                                   + formatRss( javadoc.getPeakRss() ) + ", GC " + javadoc.getGcTime() + " ms" );
+            }
+            else
+            {
+                getLog().debug( "javadoc " + ( javadoc.isOnWorker() ? "(worker)" : "(forked)" ) + " took "
+                                    + javadoc.getExecutionTime() + " ms" );
+            }
+        }
+    }
+    
+    /**
+     * Logs the number of javadoc runs of this goal and their total wall-clock time, so forked execution and
+     * execution on workers can be compared.
+     */
+    protected final synchronized void logJavadocStatistics()
+    {
+        if ( javadocRuns > 0 )
+        {
+            getLog().info( "Executed javadoc " + javadocRuns + " time(s) "
+                               + ( javadocOnWorker ? "on workers" : "forked" ) + " in " + javadocTime + " ms" );
+        }
+        if ( javadocGcTime >= 0 )
+        {
+            getLog().info( "Forked javadoc: largest " + formatRss( javadocPeakRss ) + ", total GC " + javadocGcTime
+                               + " ms" );
         }
     }
+    
+    private static String formatRss( long rss )
+    {
+        return rss < 0 ? "peak RSS unknown" : "peak RSS " + ( rss / ( 1024 * 1024 ) ) + " MB";
+    }
 
     /**
      * Get the path of the Javadoc tool executable depending the user entry or try to find it depending the OS or the
@@ -255,4 +801,4 @@ public abstract class BaseJDiffMojo
         return project;
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
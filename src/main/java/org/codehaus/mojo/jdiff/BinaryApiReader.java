@@ -0,0 +1,314 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a binary API descriptor, as written by the {@link BinaryApiWriter}. The descriptor is mapped into memory and
+ * only the records asked for are decoded, so looking up a class or package takes the same time regardless of the
+ * size of the API.
+ */
+public class BinaryApiReader
+    implements ApiPackageReader
+{
+    private final File descriptor;
+
+    private final ByteBuffer buffer;
+
+    private final String apiName;
+
+    private final int packageCount;
+
+    private final int packagesOffset;
+
+    private final int classCount;
+
+    private final int classesOffset;
+
+    private final int membersOffset;
+
+    private final int listsOffset;
+
+    private final int stringCount;
+
+    private final int stringsOffset;
+
+    private final int indexOffset;
+
+    /**
+     * The package to be returned by {@link #nextPackage()}
+     */
+    private int nextPackage;
+
+    /**
+     * The constructor, maps the descriptor into memory.
+     *
+     * @param descriptor the descriptor file
+     * @throws IOException if the descriptor can't be read or is no binary descriptor
+     */
+    public BinaryApiReader( File descriptor )
+        throws IOException
+    {
+        this.descriptor = descriptor;
+        RandomAccessFile file = new RandomAccessFile( descriptor, "r" );
+        try
+        {
+            FileChannel channel = file.getChannel();
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        finally
+        {
+            file.close();
+        }
+
+        if ( buffer.capacity() < BinaryApiWriter.HEADER_SIZE || buffer.getInt( 0 ) != BinaryApiWriter.MAGIC )
+        {
+            throw new IOException( descriptor + " is no binary API descriptor" );
+        }
+        if ( buffer.getInt( 4 ) != BinaryApiWriter.VERSION )
+        {
+            throw new IOException( "Unsupported version " + buffer.getInt( 4 ) + " of binary API descriptor "
+                + descriptor );
+        }
+        packageCount = buffer.getInt( 12 );
+        packagesOffset = buffer.getInt( 16 );
+        classCount = buffer.getInt( 20 );
+        classesOffset = buffer.getInt( 24 );
+        membersOffset = buffer.getInt( 32 );
+        listsOffset = buffer.getInt( 36 );
+        stringCount = buffer.getInt( 40 );
+        stringsOffset = buffer.getInt( 44 );
+        indexOffset = buffer.getInt( 48 );
+        apiName = getString( buffer.getInt( 8 ) );
+    }
+
+    public String getApiName()
+    {
+        return apiName;
+    }
+
+    /**
+     * @return the names of all packages, ordered by name
+     * @throws IOException if the descriptor is invalid
+     */
+    public List<String> getPackageNames()
+        throws IOException
+    {
+        List<String> names = new ArrayList<String>( packageCount );
+        for ( int i = 0; i < packageCount; i++ )
+        {
+            names.add( getString( buffer.getInt( packagesOffset + i * BinaryApiWriter.PACKAGE_RECORD_SIZE ) ) );
+        }
+        return names;
+    }
+
+    /**
+     * @param packageName the package name
+     * @return the package with all its classes, or {@code null} if the API has no such package
+     * @throws IOException if the descriptor is invalid
+     */
+    public ApiPackage findPackage( String packageName )
+        throws IOException
+    {
+        int low = 0;
+        int high = packageCount - 1;
+        while ( low <= high )
+        {
+            int middle = ( low + high ) >>> 1;
+            String name = getString( buffer.getInt( packagesOffset + middle * BinaryApiWriter.PACKAGE_RECORD_SIZE ) );
+            int comparison = name.compareTo( packageName );
+            if ( comparison == 0 )
+            {
+                return readPackage( middle );
+            }
+            if ( comparison < 0 )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param qualifiedName the qualified class name, nested classes are named <code>package.Outer.Inner</code>
+     * @return the class, or {@code null} if the API has no such class
+     * @throws IOException if the descriptor is invalid
+     */
+    public ApiClass findClass( String qualifiedName )
+        throws IOException
+    {
+        int low = 0;
+        int high = classCount - 1;
+        while ( low <= high )
+        {
+            int middle = ( low + high ) >>> 1;
+            int entry = indexOffset + middle * 8;
+            int comparison = getString( buffer.getInt( entry ) ).compareTo( qualifiedName );
+            if ( comparison == 0 )
+            {
+                return readClass( buffer.getInt( entry + 4 ) );
+            }
+            if ( comparison < 0 )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    public ApiPackage nextPackage()
+        throws IOException
+    {
+        return nextPackage < packageCount ? readPackage( nextPackage++ ) : null;
+    }
+
+    public void close()
+    {
+        // the mapping is released with the buffer
+    }
+
+    private ApiPackage readPackage( int number )
+        throws IOException
+    {
+        int record = packagesOffset + number * BinaryApiWriter.PACKAGE_RECORD_SIZE;
+        ApiPackage apiPackage = new ApiPackage( getString( buffer.getInt( record ) ) );
+        int firstClass = buffer.getInt( record + 4 );
+        int count = buffer.getInt( record + 8 );
+        for ( int i = 0; i < count; i++ )
+        {
+            apiPackage.addClass( readClass( firstClass + i ) );
+        }
+        apiPackage.setDoc( getString( buffer.getInt( record + 12 ) ) );
+        return apiPackage;
+    }
+
+    private ApiClass readClass( int number )
+        throws IOException
+    {
+        int record = classesOffset + number * BinaryApiWriter.CLASS_RECORD_SIZE;
+        int flags = buffer.getInt( record + 8 );
+        ApiClass apiClass = new ApiClass( getString( buffer.getInt( record ) ), ( flags & 3 ) == 1 );
+        readModifiers( apiClass, flags );
+        apiClass.setSuperclass( getString( buffer.getInt( record + 12 ) ) );
+        readCommon( apiClass, record + 16 );
+        apiClass.getInterfaces().addAll( getList( buffer.getInt( record + 28 ), buffer.getInt( record + 32 ) ) );
+
+        int firstMember = buffer.getInt( record + 36 );
+        int count = buffer.getInt( record + 40 );
+        for ( int i = 0; i < count; i++ )
+        {
+            apiClass.addMember( readMember( firstMember + i ) );
+        }
+        return apiClass;
+    }
+
+    private ApiMember readMember( int number )
+        throws IOException
+    {
+        int record = membersOffset + number * BinaryApiWriter.MEMBER_RECORD_SIZE;
+        int flags = buffer.getInt( record + 4 );
+        ApiMember.Kind[] kinds = ApiMember.Kind.values();
+        if ( ( flags & 3 ) >= kinds.length )
+        {
+            throw invalid();
+        }
+        ApiMember member = new ApiMember( kinds[flags & 3], getString( buffer.getInt( record ) ) );
+        readModifiers( member, flags );
+        member.setType( getString( buffer.getInt( record + 8 ) ) );
+        member.setValue( getString( buffer.getInt( record + 12 ) ) );
+        readCommon( member, record + 16 );
+
+        List<String> parameters = getList( buffer.getInt( record + 28 ), 2 * buffer.getInt( record + 32 ) );
+        for ( int i = 0; i < parameters.size(); i += 2 )
+        {
+            member.addParameter( parameters.get( i ), parameters.get( i + 1 ) );
+        }
+        member.getExceptions().addAll( getList( buffer.getInt( record + 36 ), buffer.getInt( record + 40 ) ) );
+        return member;
+    }
+
+    private void readCommon( ApiElement element, int offset )
+        throws IOException
+    {
+        element.setVisibility( getString( buffer.getInt( offset ) ) );
+        element.setDeprecated( getString( buffer.getInt( offset + 4 ) ) );
+        element.setDoc( getString( buffer.getInt( offset + 8 ) ) );
+    }
+
+    private static void readModifiers( ApiElement element, int flags )
+    {
+        for ( int i = 0; i < BinaryApiWriter.MODIFIERS.length; i++ )
+        {
+            element.setModifier( BinaryApiWriter.MODIFIERS[i], ( flags & ( 1 << ( i + 2 ) ) ) != 0 );
+        }
+    }
+
+    private List<String> getList( int start, int size )
+        throws IOException
+    {
+        List<String> values = new ArrayList<String>( size );
+        for ( int i = 0; i < size; i++ )
+        {
+            values.add( getString( buffer.getInt( listsOffset + ( start + i ) * 4 ) ) );
+        }
+        return values;
+    }
+
+    private String getString( int id )
+        throws IOException
+    {
+        if ( id == -1 )
+        {
+            return null;
+        }
+        if ( id < 0 || id >= stringCount )
+        {
+            throw invalid();
+        }
+        int offset = buffer.getInt( stringsOffset + id * 4 );
+        byte[] bytes = new byte[buffer.getInt( offset )];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = buffer.get( offset + 4 + i );
+        }
+        return new String( bytes, "UTF-8" );
+    }
+
+    private IOException invalid()
+    {
+        return new IOException( "Invalid binary API descriptor " + descriptor );
+    }
+}
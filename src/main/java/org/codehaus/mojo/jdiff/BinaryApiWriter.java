@@ -0,0 +1,286 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Writes an {@link Api} as binary API descriptor, which can be read in parts by the {@link BinaryApiReader}.
+ * <p>
+ * All numbers are big-endian ints. The descriptor starts with a header of {@value #HEADER_SIZE} bytes: the magic
+ * number, the format version, the string of the api name, then count and offset of the package, class and member
+ * records, the offset of the lists, the count and offset of the strings and the offset of the class index.
+ * <ul>
+ * <li>A package record is its name, its first class and number of classes, and its documentation. Packages are
+ * ordered by name and their classes are consecutive.</li>
+ * <li>A class record is its name, its package, flags, superclass, visibility, deprecation, documentation, the list
+ * and number of its interfaces and its first member and number of members. The members of a class are
+ * consecutive.</li>
+ * <li>A member record is its name, flags, type, value, visibility, deprecation, documentation, the list and number of
+ * its parameters, each a pair of name and type, and the list and number of its exceptions.</li>
+ * <li>The lists are a single array of strings, referenced by index.</li>
+ * <li>The strings are an array of their offsets followed by each string as length and UTF-8 bytes. Every distinct
+ * string is stored once; an absent string is referenced as <code>-1</code>.</li>
+ * <li>The class index is the qualified name and record of each class, ordered by qualified name.</li>
+ * </ul>
+ * Flags hold the kind in the lowest two bits, <code>1</code> for interfaces or the ordinal of the member kind, and
+ * the {@link #MODIFIERS modifiers} in the bits above.
+ */
+public class BinaryApiWriter
+{
+    /**
+     * The file extension and artifact type of binary descriptors.
+     */
+    public static final String EXTENSION = "api";
+
+    static final int MAGIC = 0x4a415049;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 52;
+
+    static final int PACKAGE_RECORD_SIZE = 16;
+
+    static final int CLASS_RECORD_SIZE = 44;
+
+    static final int MEMBER_RECORD_SIZE = 44;
+
+    static final String[] MODIFIERS = { "abstract", "static", "final", "native", "synchronized", "transient",
+        "volatile" };
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    private final List<String> stringList = new ArrayList<String>();
+
+    private int listSize;
+
+    /**
+     * Write {@code api} to <code>name.api</code> in {@code directory}.
+     *
+     * @param api the API
+     * @param directory the output directory
+     * @return the descriptor file
+     * @throws IOException if the descriptor can't be written
+     */
+    public static File write( Api api, File directory )
+        throws IOException
+    {
+        directory.mkdirs();
+        File descriptor = new File( directory, api.getName() + "." + EXTENSION );
+        DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( descriptor ) ) );
+        try
+        {
+            new BinaryApiWriter().write( api, out );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        return descriptor;
+    }
+
+    private void write( Api api, DataOutputStream out )
+        throws IOException
+    {
+        ByteArrayOutputStream packageBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream memberBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream listBytes = new ByteArrayOutputStream();
+        DataOutputStream packages = new DataOutputStream( packageBytes );
+        DataOutputStream classes = new DataOutputStream( classBytes );
+        DataOutputStream members = new DataOutputStream( memberBytes );
+        DataOutputStream lists = new DataOutputStream( listBytes );
+
+        SortedMap<String, Integer> index = new TreeMap<String, Integer>();
+        int packageCount = 0;
+        int classCount = 0;
+        int memberCount = 0;
+        for ( ApiPackage apiPackage : api.getPackages() )
+        {
+            packages.writeInt( intern( apiPackage.getName() ) );
+            packages.writeInt( classCount );
+            packages.writeInt( apiPackage.getClasses().size() );
+            packages.writeInt( intern( apiPackage.getDoc() ) );
+
+            for ( ApiClass apiClass : apiPackage.getClasses() )
+            {
+                index.put( apiPackage.getName() + "." + apiClass.getName(), Integer.valueOf( classCount++ ) );
+
+                List<ApiMember> classMembers = new ArrayList<ApiMember>();
+                classMembers.addAll( apiClass.getConstructors() );
+                classMembers.addAll( apiClass.getMethods() );
+                classMembers.addAll( apiClass.getFields() );
+
+                classes.writeInt( intern( apiClass.getName() ) );
+                classes.writeInt( packageCount );
+                classes.writeInt( getFlags( apiClass, apiClass.isInterface() ? 1 : 0 ) );
+                classes.writeInt( intern( apiClass.getSuperclass() ) );
+                writeCommon( classes, apiClass );
+                classes.writeInt( writeList( lists, apiClass.getInterfaces() ) );
+                classes.writeInt( apiClass.getInterfaces().size() );
+                classes.writeInt( memberCount );
+                classes.writeInt( classMembers.size() );
+
+                for ( ApiMember member : classMembers )
+                {
+                    List<String> parameters = new ArrayList<String>();
+                    for ( int i = 0; i < member.getParameterTypes().size(); i++ )
+                    {
+                        parameters.add( member.getParameterNames().get( i ) );
+                        parameters.add( member.getParameterTypes().get( i ) );
+                    }
+
+                    members.writeInt( intern( member.getName() ) );
+                    members.writeInt( getFlags( member, member.getKind().ordinal() ) );
+                    members.writeInt( intern( member.getType() ) );
+                    members.writeInt( intern( member.getValue() ) );
+                    writeCommon( members, member );
+                    members.writeInt( writeList( lists, parameters ) );
+                    members.writeInt( member.getParameterTypes().size() );
+                    members.writeInt( writeList( lists, member.getExceptions() ) );
+                    members.writeInt( member.getExceptions().size() );
+                    memberCount++;
+                }
+            }
+            packageCount++;
+        }
+        int apiName = intern( api.getName() );
+        for ( String qualifiedName : index.keySet() )
+        {
+            intern( qualifiedName );
+        }
+
+        int packagesOffset = HEADER_SIZE;
+        int classesOffset = packagesOffset + packageBytes.size();
+        int membersOffset = classesOffset + classBytes.size();
+        int listsOffset = membersOffset + memberBytes.size();
+        int stringsOffset = listsOffset + listBytes.size();
+        byte[][] encoded = new byte[stringList.size()][];
+        int stringsSize = 4 * encoded.length;
+        for ( int i = 0; i < encoded.length; i++ )
+        {
+            encoded[i] = stringList.get( i ).getBytes( "UTF-8" );
+            stringsSize += 4 + encoded[i].length;
+        }
+        int indexOffset = stringsOffset + stringsSize;
+
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        out.writeInt( apiName );
+        out.writeInt( packageCount );
+        out.writeInt( packagesOffset );
+        out.writeInt( classCount );
+        out.writeInt( classesOffset );
+        out.writeInt( memberCount );
+        out.writeInt( membersOffset );
+        out.writeInt( listsOffset );
+        out.writeInt( encoded.length );
+        out.writeInt( stringsOffset );
+        out.writeInt( indexOffset );
+        packageBytes.writeTo( out );
+        classBytes.writeTo( out );
+        memberBytes.writeTo( out );
+        listBytes.writeTo( out );
+
+        int stringOffset = stringsOffset + 4 * encoded.length;
+        for ( byte[] bytes : encoded )
+        {
+            out.writeInt( stringOffset );
+            stringOffset += 4 + bytes.length;
+        }
+        for ( byte[] bytes : encoded )
+        {
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+
+        for ( Map.Entry<String, Integer> entry : index.entrySet() )
+        {
+            out.writeInt( intern( entry.getKey() ) );
+            out.writeInt( entry.getValue().intValue() );
+        }
+    }
+
+    private void writeCommon( DataOutputStream out, ApiElement element )
+        throws IOException
+    {
+        out.writeInt( intern( element.getVisibility() ) );
+        out.writeInt( intern( element.getDeprecated() ) );
+        out.writeInt( intern( element.getDoc() ) );
+    }
+
+    /**
+     * @return the index of the first string of the list
+     */
+    private int writeList( DataOutputStream lists, List<String> values )
+        throws IOException
+    {
+        int start = listSize;
+        for ( String value : values )
+        {
+            lists.writeInt( intern( value ) );
+            listSize++;
+        }
+        return start;
+    }
+
+    private static int getFlags( ApiElement element, int kind )
+    {
+        int flags = kind;
+        for ( int i = 0; i < MODIFIERS.length; i++ )
+        {
+            if ( element.hasModifier( MODIFIERS[i] ) )
+            {
+                flags |= 1 << ( i + 2 );
+            }
+        }
+        return flags;
+    }
+
+    private int intern( String value )
+    {
+        if ( value == null )
+        {
+            return -1;
+        }
+        Integer id = strings.get( value );
+        if ( id == null )
+        {
+            id = Integer.valueOf( stringList.size() );
+            strings.put( value, id );
+            stringList.add( value );
+        }
+        return id.intValue();
+    }
+}
@@ -0,0 +1,185 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Extracts an {@link Api} from compiled classes instead of their sources, so no checkout, classpath or javadoc run is
+ * required. Class files carry no documentation, so neither does the extracted API.
+ */
+public class BytecodeApiExtractor
+{
+    private final String visibility;
+
+    private final Log log;
+
+    /**
+     * Classes read so far by qualified name, nested classes are only part of the API when their outer classes are
+     */
+    private final Map<String, ClassFileReader> classes = new HashMap<String, ClassFileReader>();
+
+    /**
+     * The constructor
+     *
+     * @param visibility the least visibility of the classes and members to extract
+     * @param log the mojo logger
+     */
+    public BytecodeApiExtractor( String visibility, Log log )
+    {
+        this.visibility = visibility;
+        this.log = log;
+    }
+
+    /**
+     * Extract the API of the classes in archives and directories.
+     *
+     * @param apiName the api name
+     * @param locations the archives and class directories, missing locations are ignored
+     * @return the API
+     * @throws IOException if a class file can't be read
+     */
+    public Api extract( String apiName, List<File> locations )
+        throws IOException
+    {
+        classes.clear();
+        for ( File location : locations )
+        {
+            if ( location.isDirectory() )
+            {
+                readDirectory( location );
+            }
+            else if ( location.isFile() )
+            {
+                readArchive( location );
+            }
+        }
+
+        Api api = new Api( apiName );
+        int count = 0;
+        for ( ClassFileReader reader : classes.values() )
+        {
+            if ( isIncluded( reader ) )
+            {
+                api.getPackage( reader.getPackageName() ).addClass( reader.getApiClass() );
+                count++;
+            }
+        }
+        log.debug( "Extracted " + count + " classes of " + apiName + " from " + locations );
+        classes.clear();
+        return api;
+    }
+
+    private boolean isIncluded( ClassFileReader reader )
+    {
+        for ( String outer = reader.getOuterClassName(); outer != null; )
+        {
+            ClassFileReader outerReader = classes.get( outer );
+            if ( outerReader == null )
+            {
+                return false;
+            }
+            outer = outerReader.getOuterClassName();
+        }
+        return true;
+    }
+
+    private void readDirectory( File directory )
+        throws IOException
+    {
+        @SuppressWarnings( "unchecked" )
+        List<String> files = FileUtils.getFileNames( directory, "**/*.class", "META-INF/**", false );
+        for ( String file : files )
+        {
+            InputStream in = new FileInputStream( new File( directory, file ) );
+            try
+            {
+                read( in, file );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    private void readArchive( File archive )
+        throws IOException
+    {
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                // skips the classes of other Java versions in multi-release archives
+                if ( entry.isDirectory() || !entry.getName().endsWith( ".class" )
+                    || entry.getName().startsWith( "META-INF/" ) )
+                {
+                    continue;
+                }
+                InputStream in = zip.getInputStream( entry );
+                try
+                {
+                    read( in, archive.getName() + "!" + entry.getName() );
+                }
+                finally
+                {
+                    IOUtil.close( in );
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    private void read( InputStream in, String name )
+        throws IOException
+    {
+        ClassFileReader reader = new ClassFileReader( visibility );
+        try
+        {
+            reader.read( in );
+        }
+        catch ( RuntimeException e )
+        {
+            throw new IOException( "Invalid class file " + name + ": " + e );
+        }
+        if ( reader.isApiClass() )
+        {
+            classes.put( reader.getClassName(), reader );
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Hands the checkout of the comparison version to all projects of a build. Whichever project needs it first performs
+ * the checkout, all other projects block until it completed. This keeps parallel builds (<code>-T</code>) from
+ * reading the checkout before it exists, without depending on the order in which projects are built.
+ * <p>
+ * With parallel builds every project may get its own copy of the session, so checkouts are registered per build
+ * instead of in the session itself. The checkouts of a previous build in the same JVM are dropped when the next build
+ * starts.
+ */
+public final class CheckoutCoordinator
+{
+    private static final Map<String, FutureTask<File>> CHECKOUTS = new HashMap<String, FutureTask<File>>();
+
+    private static String checkoutsBuildKey;
+
+    private CheckoutCoordinator()
+    {
+        // hide constructor of utility class
+    }
+
+    /**
+     * Returns the checkout directory registered for {@code key}, running {@code checkout} in the calling thread when
+     * this is the first request for it.
+     *
+     * @param buildKey identifies the build
+     * @param key identifies the checkout within the build
+     * @param checkout performs the checkout and returns its directory
+     * @return the checkout directory
+     * @throws ExecutionException if the checkout failed, for the calling project as well as all waiting ones
+     * @throws InterruptedException if interrupted while waiting for another project to complete the checkout
+     */
+    public static File getCheckoutDirectory( String buildKey, String key, Callable<File> checkout )
+        throws ExecutionException, InterruptedException
+    {
+        FutureTask<File> task;
+        boolean owner = false;
+        synchronized ( CHECKOUTS )
+        {
+            if ( !buildKey.equals( checkoutsBuildKey ) )
+            {
+                // a new build in the same JVM, it checks out again
+                CHECKOUTS.clear();
+                checkoutsBuildKey = buildKey;
+            }
+            task = CHECKOUTS.get( key );
+            if ( task == null )
+            {
+                task = new FutureTask<File>( checkout );
+                CHECKOUTS.put( key, task );
+                owner = true;
+            }
+        }
+
+        if ( owner )
+        {
+            task.run();
+        }
+        return task.get();
+    }
+}
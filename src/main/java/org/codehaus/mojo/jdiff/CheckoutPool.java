@@ -0,0 +1,488 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Pool of SCM checkouts shared by all builds on a machine, keyed by SCM connection, version and checkout includes.
+ * <p>
+ * Every entry has a lock file next to it. A build holds a shared lock on the entries it uses until the next build in
+ * the same JVM starts or the JVM exits, and an exclusive lock while checking out or removing an entry, so concurrent
+ * builds never remove or rewrite a checkout which is in use. A marker file next to the entry tells whether the
+ * checkout completed and holds the size of the entry, its modification time is the last use of the entry.
+ */
+public class CheckoutPool
+{
+    private static final String LOCK_SUFFIX = ".lock";
+
+    private static final String COMPLETE_SUFFIX = ".complete";
+
+    /**
+     * The time in milliseconds to wait for other builds to stop using an entry before giving up
+     */
+    private static final long EXCLUSIVE_TIMEOUT = 10 * 60 * 1000;
+
+    /**
+     * Shared locks held by this JVM, by entry path. File locks are held per JVM, so they are tracked here instead of
+     * per pool instance.
+     */
+    private static final Map<String, FileLock> SHARED_LOCKS = new HashMap<String, FileLock>();
+
+    private static String locksBuildKey;
+
+    private String buildKey;
+
+    private File directory;
+
+    private long maxAge;
+
+    private long maxSize;
+
+    private Log log;
+
+    /**
+     * The constructor
+     *
+     * @param buildKey identifies the build, the entries used by a previous build in the same JVM are released
+     * @param directory the pool directory
+     * @param maxAge the time in milliseconds after which an unused entry is removed
+     * @param maxSize the maximum total size of the pool in bytes
+     * @param log the mojo logger
+     */
+    public CheckoutPool( String buildKey, File directory, long maxAge, long maxSize, Log log )
+    {
+        this.buildKey = buildKey;
+        this.directory = directory;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * @param connection the SCM connection
+     * @param version the checked out version
+     * @param includes the checkout includes, may be {@code null}
+     * @return the directory of the pool entry
+     */
+    public File getEntry( String connection, String version, String includes )
+    {
+        String key = new Fingerprint().add( normalize( connection ) ).add( version ).add( includes ).getHash();
+        return new File( directory, version + "-" + key.substring( 0, 12 ) );
+    }
+
+    /**
+     * Connections only differing in case of the provider or trailing slashes refer to the same sources.
+     */
+    static String normalize( String connection )
+    {
+        String result = connection.trim();
+        while ( result.endsWith( "/" ) )
+        {
+            result = result.substring( 0, result.length() - 1 );
+        }
+        if ( result.startsWith( "scm:" ) )
+        {
+            int providerEnd = result.indexOf( ':', 4 );
+            if ( providerEnd > 0 )
+            {
+                result = result.substring( 0, providerEnd ).toLowerCase() + result.substring( providerEnd );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param entry the pool entry
+     * @return {@code true} if the checkout of the entry completed
+     */
+    public boolean isComplete( File entry )
+    {
+        return entry.isDirectory() && getMarker( entry ).isFile();
+    }
+
+    /**
+     * Mark the checkout of {@code entry} as complete and record its size, so eviction doesn't have to measure it.
+     *
+     * @param entry the pool entry
+     * @throws IOException if the marker can't be written
+     */
+    public void markComplete( File entry )
+        throws IOException
+    {
+        FileUtils.fileWrite( getMarker( entry ).getPath(), String.valueOf( FileUtils.sizeOfDirectory( entry ) ) );
+    }
+
+    /**
+     * Waits until no other build uses {@code entry} and locks it for this build, to check it out or invalidate it.
+     * Builds hold their shared locks until their JVM starts another build, so an idle build daemon may hold one
+     * indefinitely; the wait is therefore limited.
+     *
+     * @param entry the pool entry
+     * @return the lock, to be released with {@link #release(FileLock)}
+     * @throws IOException if the lock file can't be written or other builds keep using the entry
+     */
+    public FileLock lockExclusive( File entry )
+        throws IOException
+    {
+        directory.mkdirs();
+        synchronized ( SHARED_LOCKS )
+        {
+            checkBuild();
+            // a JVM can't hold two locks on the same file
+            release( SHARED_LOCKS.remove( entry.getPath() ) );
+        }
+        log.debug( "Waiting for exclusive access to " + entry );
+        long deadline = System.currentTimeMillis() + EXCLUSIVE_TIMEOUT;
+        boolean logged = false;
+        while ( true )
+        {
+            FileLock lock = tryLock( entry, false );
+            if ( lock != null )
+            {
+                return lock;
+            }
+            if ( System.currentTimeMillis() > deadline )
+            {
+                throw new IOException( "Timed out waiting for other builds to stop using " + entry
+                    + ", stop idle build daemons or use another checkoutPoolDirectory" );
+            }
+            if ( !logged )
+            {
+                log.info( "Waiting for other builds to stop using " + entry );
+                logged = true;
+            }
+            pause( entry );
+        }
+    }
+
+    /**
+     * Remove the checkout of {@code entry}; the caller must hold its exclusive lock.
+     *
+     * @param entry the pool entry
+     * @throws IOException if the entry can't be deleted
+     */
+    public void invalidate( File entry )
+        throws IOException
+    {
+        log.info( "Invalidating pooled checkout " + entry );
+        getMarker( entry ).delete();
+        FileUtils.deleteDirectory( entry );
+    }
+
+    /**
+     * Register the use of {@code entry} by this build, so other builds won't remove it until this JVM starts another
+     * build or exits. Waits while another build checks the entry out or removes it.
+     *
+     * @param entry the pool entry
+     * @throws IOException if the lock file can't be written
+     */
+    public void use( File entry )
+        throws IOException
+    {
+        directory.mkdirs();
+        boolean logged = false;
+        while ( true )
+        {
+            synchronized ( SHARED_LOCKS )
+            {
+                checkBuild();
+                if ( SHARED_LOCKS.containsKey( entry.getPath() ) )
+                {
+                    break;
+                }
+            }
+            // polled without holding the monitor, so waiting for a long checkout doesn't hold up the other entries
+            FileLock lock = tryLock( entry, true );
+            if ( lock != null )
+            {
+                synchronized ( SHARED_LOCKS )
+                {
+                    if ( buildKey.equals( locksBuildKey ) && !SHARED_LOCKS.containsKey( entry.getPath() ) )
+                    {
+                        SHARED_LOCKS.put( entry.getPath(), lock );
+                        break;
+                    }
+                }
+                release( lock );
+                continue;
+            }
+            if ( !logged )
+            {
+                log.info( "Waiting for another build to finish with " + entry );
+                logged = true;
+            }
+            pause( entry );
+        }
+        getMarker( entry ).setLastModified( System.currentTimeMillis() );
+    }
+
+    /**
+     * Must be called while holding the lock on {@link #SHARED_LOCKS}.
+     */
+    private void checkBuild()
+    {
+        if ( !buildKey.equals( locksBuildKey ) )
+        {
+            // a new build in the same JVM, the entries of the previous one are no longer in use
+            for ( FileLock lock : SHARED_LOCKS.values() )
+            {
+                release( lock );
+            }
+            SHARED_LOCKS.clear();
+            locksBuildKey = buildKey;
+        }
+    }
+
+    /**
+     * Release a lock and its channel.
+     *
+     * @param lock the lock, may be {@code null}
+     */
+    public void release( FileLock lock )
+    {
+        if ( lock != null )
+        {
+            try
+            {
+                lock.release();
+                lock.channel().close();
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to release " + lock + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Remove the entries which haven't been used for longer than the maximum age, then the least recently used
+     * entries until the pool fits its maximum size. Entries in use by any build are left alone.
+     */
+    public void evict()
+    {
+        File[] entries = directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.isDirectory();
+            }
+        } );
+        File[] locks = directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.getName().endsWith( LOCK_SUFFIX );
+            }
+        } );
+        if ( locks != null )
+        {
+            for ( File lock : locks )
+            {
+                String name = lock.getName();
+                File entry = new File( directory, name.substring( 0, name.length() - LOCK_SUFFIX.length() ) );
+                if ( !entry.exists() )
+                {
+                    // the lock file of a checkout which never started or failed
+                    remove( entry );
+                }
+            }
+        }
+        if ( entries == null )
+        {
+            return;
+        }
+
+        long size = 0;
+        final Map<File, Long> lastUse = new HashMap<File, Long>();
+        List<File> candidates = new ArrayList<File>();
+        final Map<File, Long> sizes = new HashMap<File, Long>();
+        for ( File entry : entries )
+        {
+            sizes.put( entry, Long.valueOf( getSize( entry ) ) );
+            size += sizes.get( entry ).longValue();
+            lastUse.put( entry, Long.valueOf( getMarker( entry ).lastModified() ) );
+            synchronized ( SHARED_LOCKS )
+            {
+                if ( !SHARED_LOCKS.containsKey( entry.getPath() ) )
+                {
+                    candidates.add( entry );
+                }
+            }
+        }
+
+        Collections.sort( candidates, new Comparator<File>()
+        {
+            public int compare( File o1, File o2 )
+            {
+                return lastUse.get( o1 ).compareTo( lastUse.get( o2 ) );
+            }
+        } );
+
+        long now = System.currentTimeMillis();
+        for ( File entry : candidates )
+        {
+            boolean expired = now - lastUse.get( entry ).longValue() > maxAge;
+            if ( !expired && size <= maxSize )
+            {
+                break;
+            }
+
+            if ( remove( entry ) )
+            {
+                size -= sizes.get( entry ).longValue();
+            }
+        }
+    }
+
+    /**
+     * @return the size recorded when the checkout completed, measured for incomplete entries
+     */
+    private long getSize( File entry )
+    {
+        File marker = getMarker( entry );
+        if ( marker.isFile() )
+        {
+            try
+            {
+                return Long.parseLong( FileUtils.fileRead( marker ).trim() );
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to read " + marker + ": " + e.getMessage() );
+            }
+            catch ( NumberFormatException e )
+            {
+                // a marker of an older version of the pool
+            }
+        }
+        return FileUtils.sizeOfDirectory( entry );
+    }
+
+    private boolean remove( File entry )
+    {
+        FileLock lock = null;
+        try
+        {
+            lock = tryLock( entry, false );
+            if ( lock == null )
+            {
+                // in use by another build
+                return false;
+            }
+            if ( entry.exists() )
+            {
+                log.info( "Removing " + entry.getName() + " from the checkout pool" );
+            }
+            getMarker( entry ).delete();
+            FileUtils.deleteDirectory( entry );
+            // builds waiting for the removed lock file notice it's gone and lock the new one
+            getLockFile( entry ).delete();
+            return true;
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Failed to remove " + entry + " from the checkout pool: " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            release( lock );
+        }
+    }
+
+    /**
+     * @param shared {@code true} for a shared lock, {@code false} for an exclusive one
+     * @return the lock of the entry, or {@code null} if another build or thread holds a conflicting one
+     */
+    private FileLock tryLock( File entry, boolean shared )
+        throws IOException
+    {
+        FileChannel channel = openChannel( entry );
+        FileLock lock = null;
+        try
+        {
+            lock = channel.tryLock( 0, Long.MAX_VALUE, shared );
+        }
+        catch ( OverlappingFileLockException e )
+        {
+            // locked by another thread of this JVM
+        }
+        finally
+        {
+            if ( lock == null )
+            {
+                channel.close();
+            }
+        }
+        if ( lock != null && !getLockFile( entry ).isFile() )
+        {
+            // the entry was removed and its lock file deleted while opening it
+            release( lock );
+            return null;
+        }
+        return lock;
+    }
+
+    private static void pause( File entry )
+        throws IOException
+    {
+        try
+        {
+            Thread.sleep( 1000 );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while waiting for " + entry );
+        }
+    }
+
+    private FileChannel openChannel( File entry )
+        throws IOException
+    {
+        return new RandomAccessFile( getLockFile( entry ), "rw" ).getChannel();
+    }
+
+    private File getLockFile( File entry )
+    {
+        return new File( directory, entry.getName() + LOCK_SUFFIX );
+    }
+
+    private File getMarker( File entry )
+    {
+        return new File( directory, entry.getName() + COMPLETE_SUFFIX );
+    }
+}
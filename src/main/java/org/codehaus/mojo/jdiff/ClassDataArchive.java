@@ -0,0 +1,368 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * Application class data sharing (AppCDS) archive of the classes a forked javadoc loads: the javadoc tool itself and
+ * the doclet. Mapping the archive instead of loading and verifying those classes again cuts the startup of every fork.
+ * <p>
+ * Archives live in a directory shared by all builds, named by a {@link Fingerprint} of the JDK, the docletpath and the
+ * JVM options, so a different JDK or doclet version gets an archive of its own.
+ * <p>
+ * The JDiff doclet uses the <code>com.sun.javadoc</code> API, which javadoc dropped in Java 13, so the forks usually
+ * run on Java 8 to 12. Java 10 to 12 get a static archive: the first fork writes the list of the classes it loaded,
+ * which a <code>java -Xshare:dump</code> run turns into the archive later forks map. Classes the doclet loads from the
+ * docletpath can't be archived statically, only the classes of javadoc itself are. Java 13 and later, for doclets
+ * supporting them, dump a dynamic archive at the exit of the first fork; Java 19 and later create and validate it by
+ * themselves. Java 9 and older run without.
+ */
+public class ClassDataArchive
+{
+    private static final String EXTENSION = ".jsa";
+
+    /**
+     * Locked while publishing an archive, by all builds sharing the directory
+     */
+    private static final String LOCK_FILE = "publish.lock";
+
+    /**
+     * Archives unused for this long are removed when another archive is created
+     */
+    private static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+    private File archive;
+
+    private int featureVersion;
+
+    private File java;
+
+    private List<String> jvmOptions;
+
+    private Log log;
+
+    private File dumpFile;
+
+    private File classList;
+
+    /**
+     * The constructor
+     *
+     * @param directory the directory of the archives
+     * @param javadocExecutable the javadoc executable of the forks
+     * @param docletpath the docletpath of the forks
+     * @param jvmOptions the other JVM options of the forks, the archive must be created with the same ones
+     * @param log the mojo logger
+     */
+    public ClassDataArchive( File directory, String javadocExecutable, String docletpath, List<String> jvmOptions,
+                             Log log )
+    {
+        this.log = log;
+
+        File javaHome = new File( javadocExecutable ).getAbsoluteFile().getParentFile().getParentFile();
+        featureVersion = getFeatureVersion( javaHome );
+        java = new File( new File( javadocExecutable ).getAbsoluteFile().getParentFile(),
+                         new File( javadocExecutable ).getName().replaceFirst( "javadoc", "java" ) );
+        this.jvmOptions = jvmOptions;
+
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add( javaHome.getAbsolutePath() );
+        fingerprint.addStamp( new File( javaHome, "release" ) );
+        fingerprint.addStamp( new File( javaHome, "lib/modules" ) );
+        for ( String element : StringUtils.split( docletpath, File.pathSeparator ) )
+        {
+            fingerprint.add( element ).addStamp( new File( element ) );
+        }
+        fingerprint.addAll( jvmOptions );
+        archive = new File( directory, "javadoc-" + featureVersion + "-" + fingerprint.getHash() + EXTENSION );
+    }
+
+    /**
+     * @return {@code true} if the JDK of the forks supports application class data sharing archives
+     */
+    public boolean isSupported()
+    {
+        return featureVersion >= 13 || ( featureVersion >= 10 && java.isFile() );
+    }
+
+    /**
+     * @return the JVM options to map the archive, or to create it when it doesn't exist yet
+     * @throws IOException if the directory of the archives can't be created
+     */
+    public List<String> getJvmOptions()
+        throws IOException
+    {
+        if ( !isSupported() )
+        {
+            return Collections.emptyList();
+        }
+
+        List<String> options = new ArrayList<String>();
+        if ( featureVersion >= 19 )
+        {
+            if ( archive.isFile() )
+            {
+                archive.setLastModified( System.currentTimeMillis() );
+            }
+            else
+            {
+                archive.getParentFile().mkdirs();
+                removeUnused();
+            }
+            options.add( "-XX:+AutoCreateSharedArchive" );
+            options.add( "-XX:SharedArchiveFile=" + archive.getAbsolutePath() );
+        }
+        else if ( archive.isFile() )
+        {
+            archive.setLastModified( System.currentTimeMillis() );
+            if ( featureVersion == 10 )
+            {
+                options.add( "-XX:+UseAppCDS" );
+            }
+            options.add( "-XX:SharedArchiveFile=" + archive.getAbsolutePath() );
+        }
+        else if ( featureVersion < 13 )
+        {
+            // the class list of the fork is dumped into an archive once the fork completed
+            archive.getParentFile().mkdirs();
+            classList = File.createTempFile( archive.getName(), ".classlist", archive.getParentFile() );
+            log.debug( "Recording the classes for the class data sharing archive " + archive );
+            options.add( "-XX:DumpLoadedClassList=" + classList.getAbsolutePath() );
+        }
+        else
+        {
+            // concurrent forks each dump under a name of their own, the first one published is kept
+            archive.getParentFile().mkdirs();
+            dumpFile = File.createTempFile( archive.getName(), ".tmp", archive.getParentFile() );
+            dumpFile.delete();
+            log.debug( "Creating the class data sharing archive " + archive );
+            options.add( "-XX:ArchiveClassesAtExit=" + dumpFile.getAbsolutePath() );
+        }
+        return options;
+    }
+
+    /**
+     * Publish the archive dumped by the fork, if any.
+     *
+     * @param success {@code true} if the fork completed successfully; a failed fork may have dumped an incomplete
+     *            set of classes
+     */
+    public void forkCompleted( boolean success )
+    {
+        if ( classList != null )
+        {
+            if ( success && classList.length() > 0 )
+            {
+                dumpStaticArchive();
+            }
+            classList.delete();
+            classList = null;
+        }
+        if ( dumpFile == null )
+        {
+            return;
+        }
+        if ( success && dumpFile.isFile() )
+        {
+            publish();
+        }
+        dumpFile.delete();
+        dumpFile = null;
+    }
+
+    /**
+     * Moves the dumped archive to its name, unless another fork published one in the meantime. Other forks may map
+     * that one already, so it's kept.
+     */
+    private void publish()
+    {
+        // file locks are held per JVM, so concurrent forks of this JVM are serialized here
+        synchronized ( ClassDataArchive.class )
+        {
+            FileChannel channel = null;
+            try
+            {
+                channel = new RandomAccessFile( new File( archive.getParentFile(), LOCK_FILE ), "rw" ).getChannel();
+                FileLock lock = channel.lock();
+                try
+                {
+                    if ( archive.exists() )
+                    {
+                        log.debug( "The class data sharing archive " + archive + " was created by another fork" );
+                    }
+                    else if ( dumpFile.renameTo( archive ) )
+                    {
+                        log.debug( "Created the class data sharing archive " + archive );
+                        removeUnused();
+                    }
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to publish the class data sharing archive " + archive + ": " + e.getMessage() );
+            }
+            finally
+            {
+                close( channel );
+            }
+        }
+    }
+
+    private void close( FileChannel channel )
+    {
+        if ( channel != null )
+        {
+            try
+            {
+                channel.close();
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to close the lock of " + archive.getParentFile() + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Dumps the classes of the class list into the archive. Without an archive the forks just run without, so
+     * failures are only logged.
+     */
+    private void dumpStaticArchive()
+    {
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( java.getAbsolutePath() );
+        for ( String option : jvmOptions )
+        {
+            cmd.createArg().setValue( option.startsWith( "-J" ) ? option.substring( 2 ) : option );
+        }
+        if ( featureVersion == 10 )
+        {
+            cmd.createArg().setValue( "-XX:+UseAppCDS" );
+        }
+        cmd.createArg().setValue( "-Xshare:dump" );
+        cmd.createArg().setValue( "-XX:SharedClassListFile=" + classList.getAbsolutePath() );
+        try
+        {
+            // concurrent dumps each write a file of their own, the first one published is kept
+            dumpFile = File.createTempFile( archive.getName(), ".tmp", archive.getParentFile() );
+            dumpFile.delete();
+            cmd.createArg().setValue( "-XX:SharedArchiveFile=" + dumpFile.getAbsolutePath() );
+            log.debug( "Creating the class data sharing archive " + archive );
+
+            CommandLineUtils.StringStreamConsumer output = new CommandLineUtils.StringStreamConsumer();
+            int exitCode = CommandLineUtils.executeCommandLine( cmd, output, output );
+            if ( exitCode != 0 )
+            {
+                log.debug( "Failed to create the class data sharing archive " + archive + ":\n" + output.getOutput() );
+                dumpFile.delete();
+            }
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Failed to create the class data sharing archive " + archive + ": " + e.getMessage() );
+        }
+        catch ( CommandLineException e )
+        {
+            log.debug( "Failed to create the class data sharing archive " + archive + ": " + e.getMessage() );
+        }
+    }
+
+    private void removeUnused()
+    {
+        final long now = System.currentTimeMillis();
+        File[] unused = archive.getParentFile().listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.getName().endsWith( EXTENSION ) && now - file.lastModified() > MAX_AGE;
+            }
+        } );
+        if ( unused != null )
+        {
+            for ( File file : unused )
+            {
+                log.debug( "Removing the unused class data sharing archive " + file );
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the major version of the JDK from its <code>release</code> file, or {@code 0} if unknown
+     */
+    private static int getFeatureVersion( File javaHome )
+    {
+        File release = new File( javaHome, "release" );
+        if ( !release.isFile() )
+        {
+            return 0;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( release );
+            properties.load( in );
+        }
+        catch ( IOException e )
+        {
+            return 0;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        String version = StringUtils.replace( properties.getProperty( "JAVA_VERSION", "" ), "\"", "" );
+        if ( version.startsWith( "1." ) )
+        {
+            version = version.substring( 2 );
+        }
+        int end = 0;
+        while ( end < version.length() && Character.isDigit( version.charAt( end ) ) )
+        {
+            end++;
+        }
+        return end == 0 ? 0 : Integer.parseInt( version.substring( 0, end ) );
+    }
+}
@@ -0,0 +1,837 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the API of a class from its class file in a single pass, without loading the class. Types are named like
+ * javadoc names them in API descriptors: qualified, with nested classes separated by dots, without type arguments, but
+ * with type variables by their name.
+ */
+public class ClassFileReader
+{
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int ACC_PUBLIC = 0x0001;
+
+    private static final int ACC_PRIVATE = 0x0002;
+
+    private static final int ACC_PROTECTED = 0x0004;
+
+    private static final int ACC_STATIC = 0x0008;
+
+    private static final int ACC_FINAL = 0x0010;
+
+    private static final int ACC_SYNCHRONIZED = 0x0020;
+
+    private static final int ACC_VOLATILE = 0x0040;
+
+    private static final int ACC_BRIDGE = 0x0040;
+
+    private static final int ACC_TRANSIENT = 0x0080;
+
+    private static final int ACC_NATIVE = 0x0100;
+
+    private static final int ACC_INTERFACE = 0x0200;
+
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int ACC_ENUM = 0x4000;
+
+    private static final int ACC_MANDATED = 0x8000;
+
+    private final String visibility;
+
+    private DataInputStream in;
+
+    private String[] utf8;
+
+    private int[] classNames;
+
+    /**
+     * The values of numeric constants by constant pool index, the values of string constants are {@link #strings}
+     */
+    private Object[] constants;
+
+    private int[] strings;
+
+    /**
+     * Nested classes referenced by the class file, by internal name: the internal name of the outer class (or
+     * {@code null}), the simple name (or {@code null}) and the access flags
+     */
+    private final Map<String, Object[]> innerClasses = new HashMap<String, Object[]>();
+
+    private String internalName;
+
+    private int access;
+
+    private boolean synthetic;
+
+    private ApiClass apiClass;
+
+    /**
+     * The constructor
+     *
+     * @param visibility the least visibility of the classes and members to read: <code>public</code>,
+     *            <code>protected</code>, <code>package</code> or <code>private</code>
+     */
+    public ClassFileReader( String visibility )
+    {
+        this.visibility = visibility;
+    }
+
+    /**
+     * Read a class file. Members which are synthetic or less visible than requested are skipped.
+     *
+     * @param stream the class file, which is not closed
+     * @throws IOException if the class file can't be read or is invalid
+     */
+    public void read( InputStream stream )
+        throws IOException
+    {
+        in = new DataInputStream( stream );
+        innerClasses.clear();
+
+        if ( in.readInt() != MAGIC )
+        {
+            throw new IOException( "Not a class file" );
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        readConstantPool();
+
+        access = in.readUnsignedShort();
+        internalName = getClassName( in.readUnsignedShort() );
+        String superName = getClassName( in.readUnsignedShort() );
+        List<String> interfaceNames = new ArrayList<String>();
+        for ( int i = in.readUnsignedShort(); i > 0; i-- )
+        {
+            interfaceNames.add( getClassName( in.readUnsignedShort() ) );
+        }
+
+        // members refer to nested classes which are only known from the attributes at the end of the class file
+        List<Object[]> fields = readMembers();
+        List<Object[]> methods = readMembers();
+        Map<String, Object> attributes = readAttributes();
+        synthetic = ( access & ACC_SYNTHETIC ) != 0 || attributes.containsKey( "Synthetic" );
+
+        Object[] inner = innerClasses.get( internalName );
+        if ( inner != null )
+        {
+            access = ( (Integer) inner[2] ).intValue();
+        }
+
+        String className = getQualifiedName( internalName );
+        String packageName = getPackageName();
+        boolean isInterface = ( access & ACC_INTERFACE ) != 0;
+        apiClass =
+            new ApiClass( packageName.length() > 0 ? className.substring( packageName.length() + 1 ) : className,
+                          isInterface );
+        setCommonAttributes( apiClass, access, attributes );
+        apiClass.setModifier( "abstract", ( access & ACC_ABSTRACT ) != 0 );
+        if ( !isInterface && superName != null )
+        {
+            apiClass.setSuperclass( getQualifiedName( superName ) );
+        }
+        for ( String interfaceName : interfaceNames )
+        {
+            apiClass.getInterfaces().add( getQualifiedName( interfaceName ) );
+        }
+
+        for ( Object[] field : fields )
+        {
+            addField( field );
+        }
+        for ( Object[] method : methods )
+        {
+            addMethod( method );
+        }
+    }
+
+    /**
+     * @return the qualified name of the class, nested classes are separated by dots
+     */
+    public String getClassName()
+    {
+        return getQualifiedName( internalName );
+    }
+
+    /**
+     * @return the package name of the class, empty for the default package
+     */
+    public String getPackageName()
+    {
+        int index = internalName.lastIndexOf( '/' );
+        return index < 0 ? "" : internalName.substring( 0, index ).replace( '/', '.' );
+    }
+
+    /**
+     * @return the qualified name of the class enclosing this nested class, {@code null} for top level classes
+     */
+    public String getOuterClassName()
+    {
+        Object[] inner = innerClasses.get( internalName );
+        return inner == null || inner[0] == null ? null : getQualifiedName( (String) inner[0] );
+    }
+
+    /**
+     * @return {@code true} if the class can be part of an API: it is neither synthetic, anonymous or local, nor less
+     *         visible than requested
+     */
+    public boolean isApiClass()
+    {
+        Object[] inner = innerClasses.get( internalName );
+        if ( inner != null && ( inner[0] == null || inner[1] == null ) )
+        {
+            // anonymous or local class
+            return false;
+        }
+        return !synthetic && !internalName.endsWith( "package-info" ) && !internalName.endsWith( "module-info" )
+            && isShown( access );
+    }
+
+    /**
+     * @return the API of the class
+     */
+    public ApiClass getApiClass()
+    {
+        return apiClass;
+    }
+
+    private void addField( Object[] field )
+    {
+        int flags = ( (Integer) field[0] ).intValue();
+        @SuppressWarnings( "unchecked" )
+        Map<String, Object> attributes = (Map<String, Object>) field[3];
+        // enum constants aren't fields to javadoc
+        if ( ( flags & ( ACC_SYNTHETIC | ACC_ENUM ) ) != 0 || attributes.containsKey( "Synthetic" )
+            || !isShown( flags ) )
+        {
+            return;
+        }
+
+        ApiMember member = new ApiMember( ApiMember.Kind.FIELD, (String) field[1] );
+        String signature = (String) attributes.get( "Signature" );
+        member.setType( signature != null ? new TypeParser( signature ).nextType()
+                        : new TypeParser( (String) field[2] ).nextType() );
+        member.setModifier( "transient", ( flags & ACC_TRANSIENT ) != 0 );
+        member.setModifier( "volatile", ( flags & ACC_VOLATILE ) != 0 );
+        setCommonAttributes( member, flags, attributes );
+        Integer constantValue = (Integer) attributes.get( "ConstantValue" );
+        if ( constantValue != null )
+        {
+            member.setValue( getConstantValue( constantValue.intValue(), (String) field[2] ) );
+        }
+        apiClass.addMember( member );
+    }
+
+    /**
+     * Formats a constant like javadoc does for the doclet, as Java source: quoted and escaped strings and characters,
+     * suffixed longs and floats and casted bytes and shorts.
+     */
+    private String getConstantValue( int index, String descriptor )
+    {
+        if ( strings[index] != 0 )
+        {
+            StringBuffer result = new StringBuffer( "\"" );
+            String value = utf8[strings[index]];
+            for ( int i = 0; i < value.length(); i++ )
+            {
+                appendSourceChar( value.charAt( i ), result );
+            }
+            return result.append( '"' ).toString();
+        }
+
+        Object value = constants[index];
+        switch ( descriptor.charAt( 0 ) )
+        {
+            case 'Z':
+                return String.valueOf( ( (Integer) value ).intValue() != 0 );
+            case 'C':
+                StringBuffer result = new StringBuffer( "'" );
+                appendSourceChar( (char) ( (Integer) value ).intValue(), result );
+                return result.append( '\'' ).toString();
+            case 'B':
+                return "(byte)" + value;
+            case 'S':
+                return "(short)" + value;
+            case 'J':
+                return value + "L";
+            case 'F':
+                float f = ( (Float) value ).floatValue();
+                if ( Float.isNaN( f ) )
+                {
+                    return "0f/0";
+                }
+                if ( Float.isInfinite( f ) )
+                {
+                    return f > 0 ? "1f/0" : "-1f/0";
+                }
+                return value + "f";
+            case 'D':
+                double d = ( (Double) value ).doubleValue();
+                if ( Double.isNaN( d ) )
+                {
+                    return "0d/0";
+                }
+                if ( Double.isInfinite( d ) )
+                {
+                    return d > 0 ? "1d/0" : "-1d/0";
+                }
+                return String.valueOf( value );
+            default:
+                return String.valueOf( value );
+        }
+    }
+
+    private static void appendSourceChar( char c, StringBuffer result )
+    {
+        switch ( c )
+        {
+            case '\b':
+                result.append( "\\b" );
+                break;
+            case '\t':
+                result.append( "\\t" );
+                break;
+            case '\n':
+                result.append( "\\n" );
+                break;
+            case '\f':
+                result.append( "\\f" );
+                break;
+            case '\r':
+                result.append( "\\r" );
+                break;
+            case '"':
+                result.append( "\\\"" );
+                break;
+            case '\'':
+                result.append( "\\'" );
+                break;
+            case '\\':
+                result.append( "\\\\" );
+                break;
+            default:
+                if ( c >= ' ' && c <= '~' )
+                {
+                    result.append( c );
+                }
+                else
+                {
+                    String hex = Integer.toHexString( c );
+                    result.append( "\\u" ).append( "0000".substring( hex.length() ) ).append( hex );
+                }
+        }
+    }
+
+    private void addMethod( Object[] method )
+    {
+        int flags = ( (Integer) method[0] ).intValue();
+        String name = (String) method[1];
+        @SuppressWarnings( "unchecked" )
+        Map<String, Object> attributes = (Map<String, Object>) method[3];
+        if ( ( flags & ( ACC_SYNTHETIC | ACC_BRIDGE ) ) != 0 || attributes.containsKey( "Synthetic" )
+            || "<clinit>".equals( name ) || !isShown( flags ) )
+        {
+            return;
+        }
+
+        boolean constructor = "<init>".equals( name );
+        ApiMember member;
+        if ( constructor )
+        {
+            member = new ApiMember( ApiMember.Kind.CONSTRUCTOR, apiClass.getName().substring(
+                apiClass.getName().lastIndexOf( '.' ) + 1 ) );
+        }
+        else
+        {
+            member = new ApiMember( ApiMember.Kind.METHOD, name );
+            member.setModifier( "abstract", ( flags & ACC_ABSTRACT ) != 0 );
+            member.setModifier( "native", ( flags & ACC_NATIVE ) != 0 );
+            member.setModifier( "synchronized", ( flags & ACC_SYNCHRONIZED ) != 0 );
+        }
+        setCommonAttributes( member, flags, attributes );
+
+        TypeParser descriptor = new TypeParser( (String) method[2] );
+        List<String> types = descriptor.nextParameters();
+        List<Integer> slots = new ArrayList<Integer>();
+        int slot = ( flags & ACC_STATIC ) != 0 ? 0 : 1;
+        for ( String type : types )
+        {
+            slots.add( Integer.valueOf( slot ) );
+            slot += "long".equals( type ) || "double".equals( type ) ? 2 : 1;
+        }
+        String returnType = descriptor.nextType();
+
+        // parameters added by the compiler to constructors, like the outer instance of inner classes or the name and
+        // ordinal of enum constants, aren't part of the API; the mandated parameter of the implicit Enum.valueOf is
+        @SuppressWarnings( "unchecked" )
+        List<String> parameterNames = (List<String>) attributes.get( "MethodParameters" );
+        @SuppressWarnings( "unchecked" )
+        List<Integer> parameterFlags = (List<Integer>) attributes.get( "MethodParameterFlags" );
+        List<Integer> declared = new ArrayList<Integer>();
+        if ( constructor && parameterFlags != null && parameterFlags.size() == types.size() )
+        {
+            for ( int i = 0; i < types.size(); i++ )
+            {
+                if ( ( parameterFlags.get( i ).intValue() & ( ACC_SYNTHETIC | ACC_MANDATED ) ) == 0 )
+                {
+                    declared.add( Integer.valueOf( i ) );
+                }
+            }
+        }
+        else
+        {
+            int first = 0;
+            if ( constructor && ( access & ACC_ENUM ) != 0 )
+            {
+                first = Math.min( 2, types.size() );
+            }
+            else if ( constructor && !types.isEmpty() && isInnerClass() )
+            {
+                first = 1;
+            }
+            for ( int i = first; i < types.size(); i++ )
+            {
+                declared.add( Integer.valueOf( i ) );
+            }
+        }
+
+        // the generic signature only covers the declared parameters, unless compilers disagree on that
+        List<String> declaredTypes = new ArrayList<String>();
+        for ( Integer i : declared )
+        {
+            declaredTypes.add( types.get( i.intValue() ) );
+        }
+        String signature = (String) attributes.get( "Signature" );
+        if ( signature != null )
+        {
+            TypeParser parser = new TypeParser( signature );
+            List<String> genericTypes = parser.nextParameters();
+            if ( genericTypes.size() == declared.size() )
+            {
+                declaredTypes = genericTypes;
+                returnType = parser.nextType();
+            }
+            else if ( genericTypes.size() <= types.size() )
+            {
+                declared.clear();
+                for ( int i = types.size() - genericTypes.size(); i < types.size(); i++ )
+                {
+                    declared.add( Integer.valueOf( i ) );
+                }
+                declaredTypes = genericTypes;
+                returnType = parser.nextType();
+            }
+        }
+
+        @SuppressWarnings( "unchecked" )
+        Map<Integer, String> localVariables = (Map<Integer, String>) attributes.get( "LocalVariableTable" );
+        for ( int i = 0; i < declared.size(); i++ )
+        {
+            int index = declared.get( i ).intValue();
+            String parameterName = null;
+            if ( parameterNames != null && parameterNames.size() == slots.size() )
+            {
+                parameterName = parameterNames.get( index );
+            }
+            else if ( localVariables != null )
+            {
+                parameterName = localVariables.get( slots.get( index ) );
+            }
+            member.addParameter( parameterName != null ? parameterName : "arg" + i, declaredTypes.get( i ) );
+        }
+
+        if ( !constructor )
+        {
+            member.setType( returnType );
+        }
+        @SuppressWarnings( "unchecked" )
+        List<String> exceptions = (List<String>) attributes.get( "Exceptions" );
+        if ( exceptions != null )
+        {
+            for ( String exception : exceptions )
+            {
+                member.getExceptions().add( getQualifiedName( exception ) );
+            }
+        }
+        apiClass.addMember( member );
+    }
+
+    private boolean isInnerClass()
+    {
+        Object[] inner = innerClasses.get( internalName );
+        return inner != null && inner[0] != null && ( access & ( ACC_STATIC | ACC_INTERFACE ) ) == 0;
+    }
+
+    private void setCommonAttributes( ApiElement element, int flags, Map<String, Object> attributes )
+    {
+        element.setModifier( "static", ( flags & ACC_STATIC ) != 0 );
+        element.setModifier( "final", ( flags & ACC_FINAL ) != 0 );
+        element.setVisibility( getVisibility( flags ) );
+        if ( attributes.containsKey( "Deprecated" ) )
+        {
+            element.setDeprecated( ApiElement.DEPRECATED );
+        }
+    }
+
+    private boolean isShown( int flags )
+    {
+        return rank( getVisibility( flags ) ) <= rank( visibility );
+    }
+
+    private static String getVisibility( int flags )
+    {
+        if ( ( flags & ACC_PUBLIC ) != 0 )
+        {
+            return "public";
+        }
+        if ( ( flags & ACC_PROTECTED ) != 0 )
+        {
+            return "protected";
+        }
+        if ( ( flags & ACC_PRIVATE ) != 0 )
+        {
+            return "private";
+        }
+        return "package";
+    }
+
+    /**
+     * @param visibility a visibility
+     * @return the rank of the visibility, from 0 for public to 3 for private
+     */
+    static int rank( String visibility )
+    {
+        if ( "public".equals( visibility ) )
+        {
+            return 0;
+        }
+        if ( "protected".equals( visibility ) )
+        {
+            return 1;
+        }
+        if ( "package".equals( visibility ) )
+        {
+            return 2;
+        }
+        return 3;
+    }
+
+    private void readConstantPool()
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        utf8 = new String[count];
+        classNames = new int[count];
+        constants = new Object[count];
+        strings = new int[count];
+        for ( int i = 1; i < count; i++ )
+        {
+            int tag = in.readUnsignedByte();
+            switch ( tag )
+            {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                    strings[i] = in.readUnsignedShort();
+                    break;
+                case 3: // Integer
+                    constants[i] = Integer.valueOf( in.readInt() );
+                    break;
+                case 4: // Float
+                    constants[i] = Float.valueOf( in.readFloat() );
+                    break;
+                case 5: // Long
+                    constants[i] = Long.valueOf( in.readLong() );
+                    i++;
+                    break;
+                case 6: // Double
+                    constants[i] = Double.valueOf( in.readDouble() );
+                    i++;
+                    break;
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes( 2 );
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes( 3 );
+                    break;
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes( 4 );
+                    break;
+                default:
+                    throw new IOException( "Invalid constant pool tag " + tag );
+            }
+        }
+    }
+
+    private List<Object[]> readMembers()
+        throws IOException
+    {
+        List<Object[]> members = new ArrayList<Object[]>();
+        for ( int i = in.readUnsignedShort(); i > 0; i-- )
+        {
+            Integer flags = Integer.valueOf( in.readUnsignedShort() );
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            members.add( new Object[] { flags, name, descriptor, readAttributes() } );
+        }
+        return members;
+    }
+
+    private Map<String, Object> readAttributes()
+        throws IOException
+    {
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        for ( int i = in.readUnsignedShort(); i > 0; i-- )
+        {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ( "Signature".equals( name ) )
+            {
+                attributes.put( name, utf8[in.readUnsignedShort()] );
+            }
+            else if ( "ConstantValue".equals( name ) )
+            {
+                attributes.put( name, Integer.valueOf( in.readUnsignedShort() ) );
+            }
+            else if ( "Exceptions".equals( name ) )
+            {
+                List<String> exceptions = new ArrayList<String>();
+                for ( int j = in.readUnsignedShort(); j > 0; j-- )
+                {
+                    exceptions.add( getClassName( in.readUnsignedShort() ) );
+                }
+                attributes.put( name, exceptions );
+            }
+            else if ( "Code".equals( name ) )
+            {
+                in.skipBytes( 4 ); // max_stack, max_locals
+                skipFully( in.readInt() ); // code
+                skipFully( in.readUnsignedShort() * 8 ); // exception_table
+                attributes.putAll( readAttributes() );
+            }
+            else if ( "LocalVariableTable".equals( name ) )
+            {
+                Map<Integer, String> variables = new HashMap<Integer, String>();
+                for ( int j = in.readUnsignedShort(); j > 0; j-- )
+                {
+                    int startPc = in.readUnsignedShort();
+                    in.skipBytes( 2 ); // length
+                    String variable = utf8[in.readUnsignedShort()];
+                    in.skipBytes( 2 ); // descriptor
+                    Integer index = Integer.valueOf( in.readUnsignedShort() );
+                    if ( startPc == 0 )
+                    {
+                        variables.put( index, variable );
+                    }
+                }
+                attributes.put( name, variables );
+            }
+            else if ( "MethodParameters".equals( name ) )
+            {
+                List<String> parameters = new ArrayList<String>();
+                List<Integer> flags = new ArrayList<Integer>();
+                for ( int j = in.readUnsignedByte(); j > 0; j-- )
+                {
+                    int nameIndex = in.readUnsignedShort();
+                    flags.add( Integer.valueOf( in.readUnsignedShort() ) );
+                    parameters.add( nameIndex == 0 ? null : utf8[nameIndex] );
+                }
+                attributes.put( name, parameters );
+                attributes.put( "MethodParameterFlags", flags );
+            }
+            else if ( "InnerClasses".equals( name ) )
+            {
+                for ( int j = in.readUnsignedShort(); j > 0; j-- )
+                {
+                    String inner = getClassName( in.readUnsignedShort() );
+                    String outer = getClassName( in.readUnsignedShort() );
+                    int simpleName = in.readUnsignedShort();
+                    Integer flags = Integer.valueOf( in.readUnsignedShort() );
+                    innerClasses.put( inner, new Object[] { outer, simpleName == 0 ? null : utf8[simpleName], flags } );
+                }
+            }
+            else
+            {
+                attributes.put( name, Boolean.TRUE );
+                skipFully( length );
+            }
+        }
+        return attributes;
+    }
+
+    private void skipFully( int length )
+        throws IOException
+    {
+        int remaining = length;
+        while ( remaining > 0 )
+        {
+            int skipped = in.skipBytes( remaining );
+            if ( skipped <= 0 )
+            {
+                throw new IOException( "Unexpected end of class file" );
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private String getClassName( int index )
+    {
+        return index == 0 ? null : utf8[classNames[index]];
+    }
+
+    /**
+     * Converts an internal name to the name javadoc uses, resolving nested classes by the InnerClasses attribute.
+     */
+    private String getQualifiedName( String name )
+    {
+        Object[] inner = innerClasses.get( name );
+        if ( inner != null && inner[0] != null && inner[1] != null )
+        {
+            return getQualifiedName( (String) inner[0] ) + '.' + inner[1];
+        }
+        return name.replace( '/', '.' );
+    }
+
+    /**
+     * Parses field and method descriptors as well as generic signatures.
+     */
+    private class TypeParser
+    {
+        private final String value;
+
+        private int index;
+
+        TypeParser( String value )
+        {
+            this.value = value;
+        }
+
+        /**
+         * Skips the type parameters of a generic method and returns its parameter types.
+         */
+        List<String> nextParameters()
+        {
+            if ( value.charAt( index ) == '<' )
+            {
+                skipTypeArguments();
+            }
+            List<String> types = new ArrayList<String>();
+            index++; // (
+            while ( value.charAt( index ) != ')' )
+            {
+                types.add( nextType() );
+            }
+            index++; // )
+            return types;
+        }
+
+        String nextType()
+        {
+            char c = value.charAt( index++ );
+            switch ( c )
+            {
+                case 'B':
+                    return "byte";
+                case 'C':
+                    return "char";
+                case 'D':
+                    return "double";
+                case 'F':
+                    return "float";
+                case 'I':
+                    return "int";
+                case 'J':
+                    return "long";
+                case 'S':
+                    return "short";
+                case 'Z':
+                    return "boolean";
+                case 'V':
+                    return "void";
+                case '[':
+                    return nextType() + "[]";
+                case 'T':
+                    int end = value.indexOf( ';', index );
+                    String variable = value.substring( index, end );
+                    index = end + 1;
+                    return variable;
+                case 'L':
+                    StringBuffer name = new StringBuffer();
+                    for ( c = value.charAt( index++ ); c != ';'; c = value.charAt( index++ ) )
+                    {
+                        if ( c == '<' )
+                        {
+                            index--;
+                            skipTypeArguments();
+                        }
+                        else
+                        {
+                            // inner classes of parameterized types are separated by a dot in signatures
+                            name.append( c == '.' ? '$' : c );
+                        }
+                    }
+                    return getQualifiedName( name.toString() );
+                default:
+                    throw new IllegalArgumentException( "Invalid type in " + value + " at " + ( index - 1 ) );
+            }
+        }
+
+        private void skipTypeArguments()
+        {
+            int depth = 0;
+            do
+            {
+                char c = value.charAt( index++ );
+                if ( c == '<' )
+                {
+                    depth++;
+                }
+                else if ( c == '>' )
+                {
+                    depth--;
+                }
+            }
+            while ( depth > 0 );
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Persistent cache of JDiff API descriptors, addressed by a {@link Fingerprint} of everything that influences the
+ * descriptor. Entries are evicted least recently used first once the cache exceeds its maximum size; the modification
+ * time of an entry is its last use.
+ * <p>
+ * The cache may be shared by concurrent builds without locking: entries are written under a temporary name and renamed
+ * into place, and an entry evicted by another build while it's being restored is a cache miss.
+ */
+public class DescriptorCache
+{
+    private static final String EXTENSION = ".xml";
+
+    private File directory;
+
+    private long maxSize;
+
+    private Log log;
+
+    /**
+     * The constructor
+     *
+     * @param directory the cache directory
+     * @param maxSize the maximum total size of the cache in bytes
+     * @param log the mojo logger
+     */
+    public DescriptorCache( File directory, long maxSize, Log log )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Copy the cached descriptor for {@code key} to {@code descriptor}.
+     *
+     * @param key the fingerprint of the descriptor
+     * @param descriptor the descriptor file to restore
+     * @return {@code true} if the descriptor was cached and restored
+     */
+    public boolean restore( String key, File descriptor )
+    {
+        File entry = getEntry( key );
+        if ( entry.isFile() )
+        {
+            try
+            {
+                FileUtils.copyFile( entry, descriptor );
+                entry.setLastModified( System.currentTimeMillis() );
+                log.info( "JDiff descriptor cache hit for " + descriptor.getName() + " (" + key + ")" );
+                return true;
+            }
+            catch ( IOException e )
+            {
+                // most likely evicted by a concurrent build, the descriptor is generated again
+                log.debug( "Failed to restore " + entry + ": " + e.getMessage() );
+                descriptor.delete();
+            }
+        }
+
+        log.info( "JDiff descriptor cache miss for " + descriptor.getName() + " (" + key + ")" );
+        return false;
+    }
+
+    /**
+     * Store {@code descriptor} under {@code key} and evict the least recently used entries exceeding the maximum size.
+     *
+     * @param key the fingerprint of the descriptor
+     * @param descriptor the generated descriptor
+     * @throws IOException if the descriptor can't be copied into the cache
+     */
+    public void store( String key, File descriptor )
+        throws IOException
+    {
+        if ( !descriptor.isFile() )
+        {
+            return;
+        }
+        directory.mkdirs();
+
+        // copy under a unique name first, so concurrent builds never see a partially written entry
+        File tmp = File.createTempFile( key, ".tmp", directory );
+        FileUtils.copyFile( descriptor, tmp );
+        File entry = getEntry( key );
+        if ( !tmp.renameTo( entry ) )
+        {
+            tmp.delete();
+        }
+
+        evict();
+    }
+
+    private void evict()
+    {
+        File[] entries = directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.isFile() && file.getName().endsWith( EXTENSION );
+            }
+        } );
+        if ( entries == null )
+        {
+            return;
+        }
+
+        long size = 0;
+        for ( File entry : entries )
+        {
+            size += entry.length();
+        }
+
+        Arrays.sort( entries, new Comparator<File>()
+        {
+            public int compare( File o1, File o2 )
+            {
+                long diff = o1.lastModified() - o2.lastModified();
+                return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+            }
+        } );
+
+        for ( int i = 0; i < entries.length && size > maxSize; i++ )
+        {
+            size -= entries[i].length();
+            log.debug( "Evicting " + entries[i].getName() + " from the JDiff descriptor cache" );
+            entries[i].delete();
+        }
+    }
+
+    private File getEntry( String key )
+    {
+        return new File( directory, key + EXTENSION );
+    }
+}
@@ -0,0 +1,251 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The API descriptor of one version kept as one fragment per package, along with a manifest of the hashes of the
+ * sources of each package. Only the packages whose sources changed since the fragments were written need to be
+ * documented again, the descriptor is then stitched together from the fragments.
+ */
+public class DescriptorFragments
+{
+    private static final String MANIFEST = "manifest.properties";
+
+    /**
+     * The manifest entry of the key of everything but the sources, no package can be named like this
+     */
+    private static final String OPTIONS_ENTRY = "/options";
+
+    private static final String EXTENSION = ".xml";
+
+    private final File directory;
+
+    private final Properties manifest = new Properties();
+
+    /**
+     * The constructor, reads the manifest of the fragments if there is one.
+     *
+     * @param directory the directory of the fragments
+     * @throws IOException if the manifest can't be read
+     */
+    public DescriptorFragments( File directory )
+        throws IOException
+    {
+        this.directory = directory;
+        File file = new File( directory, MANIFEST );
+        if ( file.isFile() )
+        {
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                manifest.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    /**
+     * Hash the sources of a package, only the files of the package directories and not those of its subpackages.
+     *
+     * @param sourceRoots the source roots
+     * @param packageName the package
+     * @return the hash of the names and content of the sources
+     * @throws IOException if a source can't be read
+     */
+    public static String getPackageHash( List<String> sourceRoots, String packageName )
+        throws IOException
+    {
+        Fingerprint fingerprint = new Fingerprint();
+        for ( String sourceRoot : sourceRoots )
+        {
+            File packageDirectory = new File( sourceRoot, packageName.replace( '.', File.separatorChar ) );
+            String[] files = packageDirectory.list( new FilenameFilter()
+            {
+                public boolean accept( File dir, String name )
+                {
+                    return name.endsWith( ".java" );
+                }
+            } );
+            if ( files != null )
+            {
+                Arrays.sort( files );
+                for ( String file : files )
+                {
+                    fingerprint.add( file ).addContent( new File( packageDirectory, file ) );
+                }
+            }
+        }
+        return fingerprint.getHash();
+    }
+
+    /**
+     * @param optionsKey the key of the javadoc options and classpath
+     * @param packageHashes the hash of the sources of each package of the version
+     * @return the packages to document, because their sources, the options or the classpath changed
+     */
+    public Set<String> getStalePackages( String optionsKey, Map<String, String> packageHashes )
+    {
+        if ( !optionsKey.equals( manifest.getProperty( OPTIONS_ENTRY ) ) )
+        {
+            return new TreeSet<String>( packageHashes.keySet() );
+        }
+        Set<String> stale = new TreeSet<String>();
+        for ( Map.Entry<String, String> entry : packageHashes.entrySet() )
+        {
+            if ( !entry.getValue().equals( manifest.getProperty( entry.getKey() ) )
+                || !getFragment( entry.getKey() ).isFile() )
+            {
+                stale.add( entry.getKey() );
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Replace the fragments of the documented packages by their part of {@code descriptor} and record the hashes of
+     * all packages. Fragments of packages which no longer exist are removed.
+     *
+     * @param descriptor the descriptor of the documented packages
+     * @param documented the documented packages; those missing from the descriptor, because they have no API, get an
+     *            empty fragment
+     * @param optionsKey the key of the javadoc options and classpath
+     * @param packageHashes the hash of the sources of each package of the version
+     * @throws IOException if the descriptor can't be read or a fragment or the manifest can't be written
+     */
+    public void update( File descriptor, Set<String> documented, String optionsKey, Map<String, String> packageHashes )
+        throws IOException
+    {
+        directory.mkdirs();
+        Set<String> missing = new TreeSet<String>( documented );
+        ApiReader reader = new ApiReader( descriptor );
+        try
+        {
+            for ( ApiPackage apiPackage = reader.nextPackage(); apiPackage != null; apiPackage = reader.nextPackage() )
+            {
+                ApiWriter writer = new ApiWriter( getFragment( apiPackage.getName() ), reader.getApiName() );
+                try
+                {
+                    writer.writePackage( apiPackage );
+                }
+                finally
+                {
+                    writer.close();
+                }
+                missing.remove( apiPackage.getName() );
+            }
+            for ( String packageName : missing )
+            {
+                new ApiWriter( getFragment( packageName ), reader.getApiName() ).close();
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        for ( Object packageName : manifest.keySet() )
+        {
+            if ( !packageHashes.containsKey( packageName ) )
+            {
+                getFragment( (String) packageName ).delete();
+            }
+        }
+        manifest.clear();
+        manifest.putAll( packageHashes );
+        manifest.setProperty( OPTIONS_ENTRY, optionsKey );
+        OutputStream out = new FileOutputStream( new File( directory, MANIFEST ) );
+        try
+        {
+            manifest.store( out, "Source hashes of the API descriptor fragments" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    /**
+     * Write the descriptor of a version from the fragments of its packages.
+     *
+     * @param descriptor the descriptor file
+     * @param apiName the api name
+     * @param packageNames the packages of the version
+     * @throws IOException if a fragment can't be read or the descriptor can't be written
+     */
+    public void stitch( File descriptor, String apiName, Set<String> packageNames )
+        throws IOException
+    {
+        ApiWriter writer = new ApiWriter( descriptor, apiName );
+        boolean complete = false;
+        try
+        {
+            for ( String packageName : new TreeSet<String>( packageNames ) )
+            {
+                ApiReader reader = new ApiReader( getFragment( packageName ) );
+                try
+                {
+                    for ( ApiPackage apiPackage = reader.nextPackage(); apiPackage != null;
+                        apiPackage = reader.nextPackage() )
+                    {
+                        writer.writePackage( apiPackage );
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            complete = true;
+        }
+        finally
+        {
+            writer.close();
+            if ( !complete )
+            {
+                // don't leave a valid but partial descriptor behind
+                descriptor.delete();
+            }
+        }
+    }
+
+    private File getFragment( String packageName )
+    {
+        return new File( directory, packageName + EXTENSION );
+    }
+}
@@ -23,26 +23,33 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Generates an API descriptor of the Java sources.
  */
-@Mojo( name = "descriptor", requiresDependencyResolution = ResolutionScope.COMPILE )
+@Mojo( name = "descriptor", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true )
 @Execute( phase = LifecyclePhase.GENERATE_SOURCES )
 public class DescriptorMojo
     extends BaseJDiffMojo
 {
+    private static final String FORMAT_XML = "xml";
+
+    private static final String FORMAT_BINARY = "binary";
 
     /**
      * The JDiff API name.
@@ -68,6 +75,33 @@ public class DescriptorMojo
     @Parameter( property = "includePackageNames" )
     private String includePackageNames;
 
+    /**
+     * Attach the API descriptor to the project, so the <code>jdiff</code> report of later versions can resolve it
+     * from the repository instead of checking out and documenting the sources of this version.
+     */
+    @Parameter( property = "jdiff.attach", defaultValue = "false" )
+    private boolean attach;
+
+    /**
+     * The classifier of the attached API descriptor. The visibility is appended to it, like
+     * <code>jdiff-protected</code>, so reports only use descriptors of their own visibility. Descriptors extracted
+     * from class files get a <code>-bytecode</code> suffix, like <code>jdiff-protected-bytecode</code>.
+     */
+    @Parameter( property = "jdiff.descriptorClassifier", defaultValue = "jdiff" )
+    private String descriptorClassifier;
+
+    /**
+     * The formats of the API descriptor, separated by commas: <code>xml</code> for the JDiff descriptor, which the
+     * JDiff doclet needs to write the report, and <code>binary</code> for a compact descriptor which the report reads
+     * in parts when comparing the descriptors within the plugin. Each format is attached when <code>attach</code> is
+     * set.
+     */
+    @Parameter( property = "jdiff.descriptorFormats", defaultValue = "xml" )
+    private String descriptorFormats;
+
+    @Component
+    private MavenProjectHelper projectHelper;
+
     /**
      * {@inheritDoc}
      * 
@@ -76,15 +110,64 @@ public class DescriptorMojo
     public void execute()
         throws MojoExecutionException
     {
+        Set<String> formats = new TreeSet<String>();
+        for ( String format : StringUtils.split( descriptorFormats, "," ) )
+        {
+            format = format.trim().toLowerCase( Locale.ENGLISH );
+            if ( !FORMAT_XML.equals( format ) && !FORMAT_BINARY.equals( format ) )
+            {
+                throw new MojoExecutionException( "Unknown descriptor format '" + format + "', expected "
+                    + FORMAT_XML + " or " + FORMAT_BINARY );
+            }
+            formats.add( format );
+        }
+        if ( !isValidVisibility() )
+        {
+            throw new MojoExecutionException( "Unknown visibility '" + getVisibility() + "', expected one of "
+                + VISIBILITIES );
+        }
+
         try
         {
-            generateJDiffXML( apiname );
+            File classes = new File( buildOutputDirectory );
+            boolean fromClasses = isUseBytecode() && classes.isDirectory();
+            if ( fromClasses )
+            {
+                extractJDiffXML( Collections.singletonList( classes ), apiname );
+            }
+            else
+            {
+                generateJDiffXML( apiname );
+                logJavadocStatistics();
+            }
+
+            // javadoc always writes the XML descriptor, the binary one is converted from it
+            File descriptor = new File( workingDirectory, apiname + ".xml" );
+            if ( formats.contains( FORMAT_BINARY ) )
+            {
+                File binary = BinaryApiWriter.write( ApiReader.read( descriptor ), workingDirectory );
+                getLog().info( "Wrote binary API descriptor " + binary );
+                if ( attach )
+                {
+                    projectHelper.attachArtifact( project, BinaryApiWriter.EXTENSION,
+                                                  getDescriptorClassifier( descriptorClassifier, fromClasses ), binary );
+                }
+            }
+            if ( attach && formats.contains( FORMAT_XML ) )
+            {
+                projectHelper.attachArtifact( project, "xml",
+                                              getDescriptorClassifier( descriptorClassifier, fromClasses ), descriptor );
+            }
         }
         catch ( JavadocExecutionException e )
         {
             getLog().error( "Error when generating the JDiff descriptor" );
             throw new MojoExecutionException( e.getMessage(), e );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error when extracting the JDiff descriptor: " + e.getMessage(), e );
+        }
     }
 
     /**
@@ -98,8 +181,11 @@ public class DescriptorMojo
     {
         try
         {
-            JavadocExecutor javadoc = new JavadocExecutor( getJavadocExecutable(), getLog() );
+            JavadocExecutor javadoc = createJavadocExecutor();
+
+            javadoc.setLogFile( new File( workingDirectory, "javadoc-" + apiname + ".log" ) );
 
+            javadoc.addArgument( "-" + getVisibility() );
             javadoc.addArgumentPair( "doclet", "jdiff.JDiff" );
             javadoc.addArgumentPair( "docletpath", getDocletpath() );
             javadoc.addArgumentPair( "apiname", apiname );
@@ -107,7 +193,7 @@ public class DescriptorMojo
 
             List<String> classpathElements = new ArrayList<String>();
             classpathElements.add( buildOutputDirectory );
-            classpathElements.addAll( JDiffUtils.getClasspathElements( project ) );
+            classpathElements.addAll( ProjectCache.getClasspathElements( getBuildKey(), project ) );
             String classpath = StringUtils.join( classpathElements.iterator(), File.pathSeparator );
             javadoc.addArgumentPair( "classpath", StringUtils.quoteAndEscape( classpath, '\'' ) );
 
@@ -127,7 +213,7 @@ public class DescriptorMojo
             }
             else
             {
-                pckgs = JDiffUtils.getPackages( project.getBasedir(), project.getCompileSourceRoots() );
+                pckgs = getApiPackages( project.getBasedir(), project.getCompileSourceRoots() );
             }
 
             for ( String pckg : pckgs )
@@ -136,7 +222,7 @@ public class DescriptorMojo
             }
             getPackages().addAll( pckgs );
 
-            javadoc.execute( workingDirectory.getAbsolutePath() );
+            executeJavadoc( javadoc );
         }
         catch ( IOException e )
         {
@@ -0,0 +1,221 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Builds a SHA-1 hash over strings and files, used to detect whether the input of a javadoc run has changed.
+ */
+public class Fingerprint
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    public Fingerprint()
+    {
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported by this JVM" );
+        }
+    }
+
+    /**
+     * Add a value to the fingerprint.
+     *
+     * @param value the value, may be {@code null}
+     * @return this fingerprint
+     */
+    public Fingerprint add( String value )
+    {
+        try
+        {
+            digest.update( String.valueOf( value ).getBytes( "UTF-8" ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            // UTF-8 is always supported
+        }
+        digest.update( (byte) 0 );
+        return this;
+    }
+
+    /**
+     * Add all values to the fingerprint, in iteration order.
+     *
+     * @param values the values
+     * @return this fingerprint
+     */
+    public Fingerprint addAll( Collection<String> values )
+    {
+        add( String.valueOf( values.size() ) );
+        for ( String value : values )
+        {
+            add( value );
+        }
+        return this;
+    }
+
+    /**
+     * Add the content of a file to the fingerprint.
+     *
+     * @param file the file
+     * @return this fingerprint
+     * @throws IOException if the file can't be read
+     */
+    public Fingerprint addContent( File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        digest.update( (byte) 0 );
+        return this;
+    }
+
+    /**
+     * Add the name, size and modification time of a file to the fingerprint. This is much cheaper than hashing the
+     * content and good enough for files which are replaced rather than edited, like repository artifacts.
+     *
+     * @param file the file
+     * @return this fingerprint
+     */
+    public Fingerprint addStamp( File file )
+    {
+        add( file.getName() );
+        add( String.valueOf( file.length() ) );
+        return add( String.valueOf( file.lastModified() ) );
+    }
+
+    /**
+     * Add the JDK of a javadoc executable: its location and the content of its <code>release</code> file, which holds
+     * the version and vendor of the JDK and thereby of javadoc. JDKs without that file are added by the stamp of the
+     * executable.
+     *
+     * @param javadocExecutable the javadoc executable
+     * @return this fingerprint
+     * @throws IOException if the <code>release</code> file can't be read
+     */
+    public Fingerprint addJdk( String javadocExecutable )
+        throws IOException
+    {
+        File executable = new File( javadocExecutable ).getAbsoluteFile();
+        File release = new File( executable.getParentFile().getParentFile(), "release" );
+        add( executable.getPath() );
+        if ( release.isFile() )
+        {
+            return addContent( release );
+        }
+        return addStamp( executable );
+    }
+
+    /**
+     * Add the relative path and content of all files within a directory matching {@code includes}.
+     *
+     * @param directory the directory, ignored when it doesn't exist
+     * @param includes the Ant-style includes
+     * @return this fingerprint
+     * @throws IOException if a file can't be read
+     */
+    public Fingerprint addTree( File directory, String includes )
+        throws IOException
+    {
+        if ( directory.isDirectory() )
+        {
+            @SuppressWarnings( "unchecked" )
+            List<String> files = FileUtils.getFileNames( directory, includes, null, false );
+            Collections.sort( files );
+            for ( String file : files )
+            {
+                add( file.replace( File.separatorChar, '/' ) ).addContent( new File( directory, file ) );
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Add each classpath element: directories by the content of their class files, which survives a rebuild, and
+     * archives by their stamp.
+     *
+     * @param classpathElements the classpath elements
+     * @return this fingerprint
+     * @throws IOException if a directory can't be scanned
+     */
+    public Fingerprint addClasspath( List<String> classpathElements )
+        throws IOException
+    {
+        for ( String element : classpathElements )
+        {
+            File file = new File( element );
+            if ( file.isDirectory() )
+            {
+                addTree( file, "**/*.class" );
+            }
+            else
+            {
+                addStamp( file );
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the hexadecimal representation of the hash; the fingerprint can't be used afterwards
+     */
+    public String getHash()
+    {
+        byte[] hash = digest.digest();
+        char[] chars = new char[hash.length * 2];
+        for ( int i = 0; i < hash.length; i++ )
+        {
+            chars[i * 2] = HEX[( hash[i] >> 4 ) & 0xf];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String( chars );
+    }
+}
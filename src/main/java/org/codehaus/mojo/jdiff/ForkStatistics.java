@@ -0,0 +1,264 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Measures the peak resident set size and the garbage collection time of a forked javadoc.
+ * <p>
+ * The peak RSS is the high-water mark the kernel keeps for every process, polled from <code>/proc</code> while the
+ * fork runs, so it is only available on Linux. The process is recognized by a marker on its command line. The GC
+ * time is the sum of the pauses javadoc logs with <code>-verbose:gc</code>, in the formats of Java 8 and of the
+ * unified logging of later versions; those lines are taken from the output.
+ */
+public class ForkStatistics
+{
+    private static final File PROC = new File( "/proc" );
+
+    private static final long POLL_INTERVAL = 100;
+
+    /**
+     * <code>[GC (Allocation Failure)  65536K->1234K(251392K), 0.0045678 secs]</code>
+     */
+    private static final Pattern LEGACY_GC = Pattern.compile( "^\\[(?:Full )?GC .*, ([0-9.,]+) secs\\]$" );
+
+    /**
+     * <code>[0.234s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 23M->4M(256M) 4.567ms</code>
+     */
+    private static final Pattern UNIFIED_GC = Pattern.compile( "\\[gc\\s*\\]\\s*GC\\(\\d+\\) Pause.* ([0-9.,]+)ms$" );
+
+    /**
+     * The start of every line of unified GC logging
+     */
+    private static final Pattern UNIFIED_GC_LINE = Pattern.compile( "^\\[[0-9.,]+s\\]\\[\\w+\\s*\\]\\[gc" );
+
+    private final String marker;
+
+    private volatile long peakRss = -1;
+
+    private long gcTime;
+
+    private Thread poller;
+
+    /**
+     * The constructor
+     * 
+     * @param marker an argument on the command line of the fork, identifying its process
+     */
+    public ForkStatistics( String marker )
+    {
+        this.marker = marker;
+    }
+
+    /**
+     * @return {@code true} if the peak RSS of processes can be measured on this platform
+     */
+    public static boolean isRssAvailable()
+    {
+        return new File( PROC, "self/status" ).isFile();
+    }
+
+    /**
+     * Start polling the peak RSS of the fork.
+     */
+    public void start()
+    {
+        if ( !isRssAvailable() )
+        {
+            return;
+        }
+        poller = new Thread( "jdiff-fork-statistics" )
+        {
+            public void run()
+            {
+                while ( !isInterrupted() )
+                {
+                    poll();
+                    try
+                    {
+                        sleep( POLL_INTERVAL );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        break;
+                    }
+                }
+            }
+        };
+        poller.setDaemon( true );
+        poller.start();
+    }
+
+    /**
+     * Stop polling, once the fork has exited.
+     */
+    public void stop()
+    {
+        if ( poller != null )
+        {
+            poller.interrupt();
+            try
+            {
+                poller.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            poller = null;
+        }
+    }
+
+    /**
+     * @param consumer the consumer of the output of the fork
+     * @return a consumer adding up the GC pauses and passing all other lines to {@code consumer}
+     */
+    public StreamConsumer getGcConsumer( final StreamConsumer consumer )
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                if ( !consumeGcLine( line ) )
+                {
+                    consumer.consumeLine( line );
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the peak RSS in bytes, or {@code -1} if unknown
+     */
+    public long getPeakRss()
+    {
+        return peakRss;
+    }
+
+    /**
+     * @return the total time of the GC pauses in milliseconds
+     */
+    public synchronized long getGcTime()
+    {
+        return gcTime;
+    }
+
+    synchronized boolean consumeGcLine( String line )
+    {
+        Matcher legacy = LEGACY_GC.matcher( line );
+        if ( legacy.find() )
+        {
+            gcTime += Math.round( parse( legacy.group( 1 ) ) * 1000 );
+            return true;
+        }
+        Matcher unified = UNIFIED_GC.matcher( line );
+        if ( unified.find() )
+        {
+            gcTime += Math.round( parse( unified.group( 1 ) ) );
+            return true;
+        }
+        return UNIFIED_GC_LINE.matcher( line ).find();
+    }
+
+    private static double parse( String number )
+    {
+        // the JVM logs in the default locale
+        return Double.parseDouble( number.replace( ',', '.' ) );
+    }
+
+    private void poll()
+    {
+        File[] processes = PROC.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.getName().length() > 0 && Character.isDigit( file.getName().charAt( 0 ) );
+            }
+        } );
+        if ( processes == null )
+        {
+            return;
+        }
+        for ( File process : processes )
+        {
+            try
+            {
+                // processes come and go, failing reads are expected
+                String cmdline = read( new File( process, "cmdline" ) );
+                if ( cmdline.indexOf( marker ) >= 0 )
+                {
+                    long rss = getHighWaterMark( read( new File( process, "status" ) ) );
+                    if ( rss > peakRss )
+                    {
+                        peakRss = rss;
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                // the process has exited
+            }
+        }
+    }
+
+    private static long getHighWaterMark( String status )
+    {
+        for ( String line : status.split( "\n" ) )
+        {
+            if ( line.startsWith( "VmHWM:" ) )
+            {
+                String kiloBytes = line.substring( "VmHWM:".length() ).replace( "kB", "" ).trim();
+                return Long.parseLong( kiloBytes ) * 1024;
+            }
+        }
+        return -1;
+    }
+
+    private static String read( File file )
+        throws IOException
+    {
+        BufferedReader reader = new BufferedReader( new FileReader( file ) );
+        try
+        {
+            StringBuffer content = new StringBuffer();
+            char[] buffer = new char[4096];
+            int n;
+            while ( ( n = reader.read( buffer ) ) != -1 )
+            {
+                content.append( buffer, 0, n );
+            }
+            return content.toString();
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Writes the differences between two APIs as a single HTML page, <code>changes.html</code>, with a summary followed
+ * by the removed, added and changed packages, classes and members. The sections of the changed packages can be
+ * rendered concurrently.
+ */
+public class HtmlApiDiffWriter
+    implements ApiDiffWriter
+{
+    private final File outputDirectory;
+
+    private final ExecutorService executor;
+
+    private PrintWriter out;
+
+    /**
+     * The constructor
+     *
+     * @param outputDirectory the report output directory
+     */
+    public HtmlApiDiffWriter( File outputDirectory )
+    {
+        this( outputDirectory, null );
+    }
+
+    /**
+     * The constructor
+     *
+     * @param outputDirectory the report output directory
+     * @param executor the executor rendering the changed packages, {@code null} to render in the calling thread
+     */
+    public HtmlApiDiffWriter( File outputDirectory, ExecutorService executor )
+    {
+        this.outputDirectory = outputDirectory;
+        this.executor = executor;
+    }
+
+    public void write( ApiDiff diff )
+        throws IOException
+    {
+        outputDirectory.mkdirs();
+        File report = new File( outputDirectory, "changes.html" );
+        Writer writer = WriterFactory.newWriter( report, "UTF-8" );
+        out = new PrintWriter( writer );
+        try
+        {
+            writeReport( diff );
+            if ( out.checkError() )
+            {
+                throw new IOException( "Failed to write " + report );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+            out = null;
+        }
+    }
+
+    private void writeReport( ApiDiff diff )
+        throws IOException
+    {
+        String title = "API changes from " + diff.getOldName() + " to " + diff.getNewName();
+        out.println( "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">" );
+        out.println( "<html>" );
+        out.println( "<head>" );
+        out.println( "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">" );
+        out.println( "<title>" + ApiWriter.escape( title ) + "</title>" );
+        out.println( "<style type=\"text/css\">" );
+        out.println( "body { font-family: sans-serif; } table { border-collapse: collapse; }" );
+        out.println( "th, td { border: 1px solid #999; padding: 2px 6px; text-align: left; vertical-align: top; }" );
+        out.println( "code { white-space: nowrap; }" );
+        out.println( "</style>" );
+        out.println( "</head>" );
+        out.println( "<body>" );
+        out.println( "<h1>" + ApiWriter.escape( title ) + "</h1>" );
+
+        writeSummary( diff );
+        if ( diff.isEmpty() )
+        {
+            out.println( "<p>No API changes.</p>" );
+        }
+
+        writePackages( "Removed packages", diff.getRemovedPackages() );
+        writePackages( "Added packages", diff.getAddedPackages() );
+        writePackages( diff.getChangedPackages() );
+
+        out.println( "</body>" );
+        out.println( "</html>" );
+    }
+
+    private void writeSummary( ApiDiff diff )
+    {
+        int[] classes = new int[3];
+        int[] members = new int[3];
+        for ( ApiDiff.PackageDiff packageDiff : diff.getChangedPackages() )
+        {
+            classes[0] += packageDiff.getRemovedClasses().size();
+            classes[1] += packageDiff.getAddedClasses().size();
+            classes[2] += packageDiff.getChangedClasses().size();
+            for ( ApiDiff.ClassDiff classDiff : packageDiff.getChangedClasses() )
+            {
+                members[0] += classDiff.getRemovedMembers().size();
+                members[1] += classDiff.getAddedMembers().size();
+                members[2] += classDiff.getChangedMembers().size();
+            }
+        }
+
+        out.println( "<h2>Summary</h2>" );
+        out.println( "<table>" );
+        out.println( "<tr><th></th><th>Removed</th><th>Added</th><th>Changed</th></tr>" );
+        out.println( "<tr><th>Packages</th><td>" + diff.getRemovedPackages().size() + "</td><td>"
+            + diff.getAddedPackages().size() + "</td><td>" + diff.getChangedPackages().size() + "</td></tr>" );
+        out.println( "<tr><th>Classes</th><td>" + classes[0] + "</td><td>" + classes[1] + "</td><td>" + classes[2]
+            + "</td></tr>" );
+        out.println( "<tr><th>Members</th><td>" + members[0] + "</td><td>" + members[1] + "</td><td>" + members[2]
+            + "</td></tr>" );
+        out.println( "</table>" );
+    }
+
+    private void writePackages( String heading, List<ApiPackage> packages )
+    {
+        if ( packages.isEmpty() )
+        {
+            return;
+        }
+        out.println( "<h2>" + heading + "</h2>" );
+        out.println( "<ul>" );
+        for ( ApiPackage apiPackage : packages )
+        {
+            out.println( "<li><code>" + ApiWriter.escape( apiPackage.getName() ) + "</code></li>" );
+        }
+        out.println( "</ul>" );
+    }
+
+    private void writePackages( List<ApiDiff.PackageDiff> packageDiffs )
+        throws IOException
+    {
+        if ( executor == null )
+        {
+            for ( ApiDiff.PackageDiff packageDiff : packageDiffs )
+            {
+                writePackage( packageDiff );
+            }
+            return;
+        }
+
+        List<Future<String>> sections = new ArrayList<Future<String>>( packageDiffs.size() );
+        for ( final ApiDiff.PackageDiff packageDiff : packageDiffs )
+        {
+            sections.add( executor.submit( new Callable<String>()
+            {
+                public String call()
+                {
+                    StringWriter section = new StringWriter();
+                    HtmlApiDiffWriter renderer = new HtmlApiDiffWriter( outputDirectory );
+                    renderer.out = new PrintWriter( section );
+                    renderer.writePackage( packageDiff );
+                    renderer.out.flush();
+                    return section.toString();
+                }
+            } ) );
+        }
+        try
+        {
+            for ( Future<String> section : sections )
+            {
+                out.print( section.get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            throw new InterruptedIOException( "Interrupted while rendering the report" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+        finally
+        {
+            for ( Future<String> section : sections )
+            {
+                section.cancel( true );
+            }
+        }
+    }
+
+    private void writePackage( ApiDiff.PackageDiff packageDiff )
+    {
+        out.println( "<h2>Package <code>" + ApiWriter.escape( packageDiff.getName() ) + "</code></h2>" );
+        writeClasses( "Removed classes", packageDiff.getRemovedClasses() );
+        writeClasses( "Added classes", packageDiff.getAddedClasses() );
+        for ( ApiDiff.ClassDiff classDiff : packageDiff.getChangedClasses() )
+        {
+            writeClass( packageDiff.getName(), classDiff );
+        }
+    }
+
+    private void writeClasses( String heading, List<ApiClass> classes )
+    {
+        if ( classes.isEmpty() )
+        {
+            return;
+        }
+        out.println( "<h3>" + heading + "</h3>" );
+        out.println( "<ul>" );
+        for ( ApiClass apiClass : classes )
+        {
+            out.println( "<li>" + ( apiClass.isInterface() ? "interface" : "class" ) + " <code>"
+                + ApiWriter.escape( apiClass.getName() ) + "</code></li>" );
+        }
+        out.println( "</ul>" );
+    }
+
+    private void writeClass( String packageName, ApiDiff.ClassDiff classDiff )
+    {
+        out.println( "<h3>" + ( classDiff.getNewClass().isInterface() ? "Interface" : "Class" ) + " <code>"
+            + ApiWriter.escape( packageName + "." + classDiff.getName() ) + "</code></h3>" );
+        if ( !classDiff.getChanges().isEmpty() )
+        {
+            out.println( "<ul>" );
+            for ( String change : classDiff.getChanges() )
+            {
+                out.println( "<li>" + ApiWriter.escape( change ) + "</li>" );
+            }
+            out.println( "</ul>" );
+        }
+        if ( classDiff.getRemovedMembers().isEmpty() && classDiff.getAddedMembers().isEmpty()
+            && classDiff.getChangedMembers().isEmpty() )
+        {
+            return;
+        }
+
+        out.println( "<table>" );
+        out.println( "<tr><th>Change</th><th>Member</th><th>Details</th></tr>" );
+        for ( ApiMember member : classDiff.getRemovedMembers() )
+        {
+            out.println( "<tr><td>Removed</td><td><code>" + ApiWriter.escape( describe( member ) ) + "</code></td><td></td></tr>" );
+        }
+        for ( ApiMember member : classDiff.getAddedMembers() )
+        {
+            out.println( "<tr><td>Added</td><td><code>" + ApiWriter.escape( describe( member ) ) + "</code></td><td></td></tr>" );
+        }
+        for ( ApiDiff.MemberDiff memberDiff : classDiff.getChangedMembers() )
+        {
+            StringBuffer details = new StringBuffer();
+            for ( String change : memberDiff.getChanges() )
+            {
+                if ( details.length() > 0 )
+                {
+                    details.append( "<br>" );
+                }
+                details.append( ApiWriter.escape( change ) );
+            }
+            out.println( "<tr><td>Changed</td><td><code>" + ApiWriter.escape( describe( memberDiff.getNewMember() ) )
+                + "</code></td><td>" + details + "</td></tr>" );
+        }
+        out.println( "</table>" );
+    }
+
+    /**
+     * @return the member as declared in Java, without modifiers
+     */
+    static String describe( ApiMember member )
+    {
+        if ( member.getKind() == ApiMember.Kind.FIELD )
+        {
+            return member.getType() + " " + member.getName();
+        }
+        String signature = member.getSignature();
+        if ( member.getKind() == ApiMember.Kind.CONSTRUCTOR )
+        {
+            return member.getName() + signature;
+        }
+        return member.getType() + " " + signature;
+    }
+}
@@ -30,12 +30,13 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
 import org.apache.maven.reporting.MavenReport;
 
 /**
  * Generates an API difference report between Java sources of two SCM versions
  */
-@Mojo( name = "jdiff", requiresDependencyResolution = ResolutionScope.COMPILE )
+@Mojo( name = "jdiff", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true )
 @Execute( phase = LifecyclePhase.GENERATE_SOURCES )
 public class JDiffMojo
     extends AbstractJDiffMojo
@@ -52,13 +53,28 @@ public class JDiffMojo
      */
     @Parameter( property = "destDir", defaultValue = "apidocs" )
     private String destDir;
+    
+    /**
+     * The classifier of the API descriptor attached by the <code>descriptor</code> goal. When the comparison version
+     * has such an artifact for the configured visibility, like <code>jdiff-protected</code>, it's used instead of
+     * checking out and documenting its sources. With <code>useBytecode</code> only descriptors extracted from class
+     * files are used, like <code>jdiff-protected-bytecode</code>. Leave empty to always use the sources.
+     */
+    @Parameter( property = "jdiff.descriptorClassifier", defaultValue = "jdiff" )
+    private String descriptorClassifier;
 
-    @SuppressWarnings( "unchecked" )
     protected List<String> getCompileSourceRoots()
     {
-        return ( getProject().getCompileSourceRoots() == null
+        return getCompileSourceRoots( getProject() );
+    }
+    
+    @SuppressWarnings( "unchecked" )
+    @Override
+    protected List<String> getCompileSourceRoots( MavenProject p )
+    {
+        return ( p.getCompileSourceRoots() == null
             ? Collections.<String>emptyList()
-            : new LinkedList<String>( getProject().getCompileSourceRoots() ) );
+            : new LinkedList<String>( p.getCompileSourceRoots() ) );
     }
     
     public void setDestDir( String destDir )
@@ -75,7 +91,13 @@ public class JDiffMojo
     @Override
     protected String getBuildOutputDirectory()
     {
-        return getProject().getBuild().getOutputDirectory();
+        return getBuildOutputDirectory( getProject().getBuild() );
+    }
+    
+    @Override
+    protected String getBuildOutputDirectory( Build build )
+    {
+        return build.getOutputDirectory();
     }
     
     @Override
@@ -84,6 +106,24 @@ public class JDiffMojo
         return build.getSourceDirectory();
     }
     
+    @Override
+    protected String getDescriptorClassifier()
+    {
+        return descriptorClassifier;
+    }
+    
+    @Override
+    protected String getSourcesClassifier()
+    {
+        return "sources";
+    }
+    
+    @Override
+    protected String getClassesClassifier()
+    {
+        return null;
+    }
+    
     @Override
     protected String getApiName( String lhsTag )
     {
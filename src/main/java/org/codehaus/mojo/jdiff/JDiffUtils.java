@@ -19,24 +19,52 @@ package org.codehaus.mojo.jdiff;
  * under the License.
  */
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Utility-class for this plugin. 
  */
 public class JDiffUtils
 {
+    /**
+     * The packages of each source root walked during the build identified by {@link #packagesBuildKey}, by the root
+     * and whether only packages with public types were kept
+     */
+    private static final Map<String, Set<String>> PACKAGES_BY_ROOT = new HashMap<String, Set<String>>();
+
+    private static String packagesBuildKey;
+
     private JDiffUtils()
     {
         // hide constructor of utility class
@@ -64,25 +92,316 @@ public class JDiffUtils
     }
 
     public static Set<String> getPackages( File basedir, List<String> compileSourceRoots  )
+        throws InterruptedIOException
+    {
+        return getPackages( basedir, compileSourceRoots, "private", null, new SystemStreamLog() );
+    }
+
+    /**
+     * Finds the packages of the sources below the source roots. For the <code>public</code> and
+     * <code>protected</code> visibilities a directory is a package as soon as one of its sources declares a public
+     * type, only the start of the sources is read for that; packages without public types have nothing to document
+     * then. For lower visibilities every directory with sources is a package. Sources declaring another package than
+     * the one of their directory are skipped, javadoc wouldn't find them by their package name. When a source root has
+     * a module declaration, only its exported packages are returned. Multiple roots are walked concurrently.
+     * 
+     * @param basedir the directory to resolve relative source roots against
+     * @param compileSourceRoots the source roots
+     * @param visibility the least visibility of the documented classes
+     * @param buildKey identifies the build, to walk each root only once per build; {@code null} to always walk
+     * @param log logs the skipped sources at debug level
+     * @return the package names
+     * @throws InterruptedIOException if interrupted while walking the roots
+     */
+    public static Set<String> getPackages( File basedir, List<String> compileSourceRoots, String visibility,
+                                           String buildKey, final Log log )
+        throws InterruptedIOException
     {
+        final boolean publicOnly = "public".equals( visibility ) || "protected".equals( visibility );
         Set<String> packages = new HashSet<String>();
-        for ( String compileRoot : compileSourceRoots )
+        Map<File, Future<Set<String>>> scans = new LinkedHashMap<File, Future<Set<String>>>();
+        ExecutorService executor = null;
+        try
         {
-            try
+            for ( String compileRoot : compileSourceRoots )
             {
-                List<String> files =
-                    FileUtils.getFileNames( FileUtils.resolveFile( basedir, compileRoot ), "**/*.java",
-                                            null, false );
-                for ( String file : files )
+                final File root = FileUtils.resolveFile( basedir, compileRoot );
+                Set<String> cached = getCachedPackages( buildKey, root, publicOnly );
+                if ( cached != null )
+                {
+                    packages.addAll( cached );
+                }
+                else if ( !scans.containsKey( root ) )
                 {
-                    packages.add( FileUtils.dirname( file ).replace( File.separatorChar, '.' ) );
+                    if ( executor == null )
+                    {
+                        int threads = Math.min( compileSourceRoots.size(), Runtime.getRuntime().availableProcessors() );
+                        executor = Executors.newFixedThreadPool( Math.max( 1, threads ) );
+                    }
+                    scans.put( root, executor.submit( new Callable<Set<String>>()
+                    {
+                        public Set<String> call()
+                        {
+                            Set<String> rootPackages = new HashSet<String>();
+                            scanPackages( root, "", publicOnly, rootPackages, log );
+                            retainExports( root, rootPackages );
+                            return rootPackages;
+                        }
+                    } ) );
                 }
             }
-            catch ( IOException e )
+
+            for ( Map.Entry<File, Future<Set<String>>> scan : scans.entrySet() )
             {
-                // do nothing
+                Set<String> rootPackages = scan.getValue().get();
+                putCachedPackages( buildKey, scan.getKey(), publicOnly, rootPackages );
+                packages.addAll( rootPackages );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            // partial results would silently drop packages from the report
+            throw new InterruptedIOException( "Interrupted while looking for the packages of " + compileSourceRoots );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+        finally
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow();
             }
         }
         return packages;
     }
+
+    /**
+     * Adds the package of each directory with a source declaring a public type, or any type unless
+     * {@code publicOnly}. Sources are read until one with such a type is found, usually the first one. Sources
+     * declaring another package than the one of their directory don't count.
+     */
+    private static void scanPackages( File directory, String packageName, boolean publicOnly, Set<String> packages,
+                                      Log log )
+    {
+        String[] names = directory.list();
+        if ( names == null )
+        {
+            return;
+        }
+        boolean publicType = false;
+        for ( String name : names )
+        {
+            if ( name.endsWith( ".java" ) )
+            {
+                // no need to check whether it's a file, directories aren't named like sources
+                if ( !publicType && !"module-info.java".equals( name ) )
+                {
+                    File source = new File( directory, name );
+                    SourceHeader header = readHeader( source );
+                    String declaredPackage = header.getPackageName();
+                    if ( declaredPackage != null && !declaredPackage.equals( packageName ) )
+                    {
+                        log.debug( "Skipping " + source + ", it declares package " + declaredPackage );
+                        continue;
+                    }
+                    // package-info declares the package, but no type
+                    publicType =
+                        !"package-info.java".equals( name ) && ( !publicOnly || header.mayDeclarePublicType() );
+                }
+            }
+            else if ( !name.startsWith( "." ) )
+            {
+                File file = new File( directory, name );
+                if ( file.isDirectory() )
+                {
+                    scanPackages( file, packageName.length() == 0 ? name : packageName + '.' + name, publicOnly,
+                                  packages, log );
+                }
+            }
+        }
+        if ( publicType )
+        {
+            packages.add( packageName );
+        }
+    }
+
+    private static SourceHeader readHeader( File source )
+    {
+        try
+        {
+            return SourceHeader.read( source );
+        }
+        catch ( IOException e )
+        {
+            // leave it to javadoc to report an unreadable source
+            return new SourceHeader();
+        }
+    }
+
+    /**
+     * Keeps only the packages exported by the module declaration of a source root, if it has one.
+     */
+    private static void retainExports( File root, Set<String> packages )
+    {
+        File moduleInfo = new File( root, "module-info.java" );
+        if ( moduleInfo.isFile() )
+        {
+            try
+            {
+                packages.retainAll( SourceHeader.readExports( moduleInfo ) );
+            }
+            catch ( IOException e )
+            {
+                // document all packages
+            }
+        }
+    }
+
+    /**
+     * Filters package names by comma separated patterns, in which <code>*</code> matches any part of a name,
+     * including dots, and <code>?</code> a single character.
+     * 
+     * @param packages the package names
+     * @param includes the patterns of the packages to keep, {@code null} or empty to keep all
+     * @param excludes the patterns of the packages to remove, may be {@code null}
+     * @return the matching package names
+     */
+    public static Set<String> filterPackages( Set<String> packages, String includes, String excludes )
+    {
+        Pattern include = StringUtils.isEmpty( includes ) ? null : toPattern( includes );
+        Pattern exclude = StringUtils.isEmpty( excludes ) ? null : toPattern( excludes );
+        Set<String> result = new HashSet<String>();
+        for ( String packageName : packages )
+        {
+            if ( ( include == null || include.matcher( packageName ).matches() )
+                && ( exclude == null || !exclude.matcher( packageName ).matches() ) )
+            {
+                result.add( packageName );
+            }
+        }
+        return result;
+    }
+
+    private static Pattern toPattern( String globs )
+    {
+        StringBuffer regex = new StringBuffer();
+        for ( String glob : StringUtils.split( globs, "," ) )
+        {
+            if ( regex.length() > 0 )
+            {
+                regex.append( '|' );
+            }
+            String pattern = glob.trim();
+            for ( int i = 0; i < pattern.length(); i++ )
+            {
+                char c = pattern.charAt( i );
+                if ( c == '*' )
+                {
+                    regex.append( ".*" );
+                }
+                else if ( c == '?' )
+                {
+                    regex.append( '.' );
+                }
+                else
+                {
+                    regex.append( Pattern.quote( String.valueOf( c ) ) );
+                }
+            }
+        }
+        return Pattern.compile( regex.toString() );
+    }
+
+    private static Set<String> getCachedPackages( String buildKey, File root, boolean publicOnly )
+    {
+        if ( buildKey == null )
+        {
+            return null;
+        }
+        synchronized ( PACKAGES_BY_ROOT )
+        {
+            if ( !buildKey.equals( packagesBuildKey ) )
+            {
+                // a new build in the same JVM, its sources may have changed
+                PACKAGES_BY_ROOT.clear();
+                packagesBuildKey = buildKey;
+            }
+            return PACKAGES_BY_ROOT.get( root.getPath() + ':' + publicOnly );
+        }
+    }
+
+    private static void putCachedPackages( String buildKey, File root, boolean publicOnly, Set<String> packages )
+    {
+        if ( buildKey == null )
+        {
+            return;
+        }
+        synchronized ( PACKAGES_BY_ROOT )
+        {
+            if ( buildKey.equals( packagesBuildKey ) )
+            {
+                PACKAGES_BY_ROOT.put( root.getPath() + ':' + publicOnly, Collections.unmodifiableSet( packages ) );
+            }
+        }
+    }
+
+    /**
+     * Extracts only the Java sources of an archive, like a <code>-sources.jar</code>.
+     * 
+     * @param archive the archive
+     * @param targetDirectory the directory to extract to
+     * @return the number of extracted sources
+     * @throws IOException if the archive can't be read or a source can't be written
+     */
+    public static int extractSources( File archive, File targetDirectory )
+        throws IOException
+    {
+        int count = 0;
+        ZipInputStream in = new ZipInputStream( new BufferedInputStream( new FileInputStream( archive ) ) );
+        try
+        {
+            String targetPath = targetDirectory.getCanonicalPath() + File.separator;
+            byte[] buffer = new byte[8192];
+            for ( ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry() )
+            {
+                if ( entry.isDirectory() || !entry.getName().endsWith( ".java" ) )
+                {
+                    continue;
+                }
+
+                File target = new File( targetDirectory, entry.getName() );
+                if ( !target.getCanonicalPath().startsWith( targetPath ) )
+                {
+                    throw new IOException( "Entry " + entry.getName() + " is outside of the target directory" );
+                }
+                target.getParentFile().mkdirs();
+
+                OutputStream out = new FileOutputStream( target );
+                try
+                {
+                    int n;
+                    while ( ( n = in.read( buffer ) ) != -1 )
+                    {
+                        out.write( buffer, 0, n );
+                    }
+                }
+                finally
+                {
+                    IOUtil.close( out );
+                }
+                count++;
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return count;
+    }
 }
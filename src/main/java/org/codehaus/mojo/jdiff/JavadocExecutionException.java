@@ -19,12 +19,17 @@ package org.codehaus.mojo.jdiff;
  * under the License.
  */
 
+import java.io.File;
+
 /**
  * Exception to throw when the javadoc execution fails
  */
 public class JavadocExecutionException
     extends Exception
 {
+    private int exitCode = -1;
+
+    private File logFile;
 
     public JavadocExecutionException( String message )
     {
@@ -35,4 +40,32 @@ public class JavadocExecutionException
     {
         super( message, cause );
     }
+
+    /**
+     * @param message the message
+     * @param exitCode the exit code of javadoc
+     * @param logFile the file holding the complete javadoc output, may be {@code null}
+     */
+    public JavadocExecutionException( String message, int exitCode, File logFile )
+    {
+        super( message );
+        this.exitCode = exitCode;
+        this.logFile = logFile;
+    }
+
+    /**
+     * @return the exit code of javadoc, or {@code -1} if javadoc didn't run to completion
+     */
+    public int getExitCode()
+    {
+        return exitCode;
+    }
+
+    /**
+     * @return the file holding the complete javadoc output, or {@code null} if there is none
+     */
+    public File getLogFile()
+    {
+        return logFile;
+    }
 }
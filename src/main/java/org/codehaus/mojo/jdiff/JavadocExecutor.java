@@ -20,21 +20,60 @@ package org.codehaus.mojo.jdiff;
  */
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.DefaultConsumer;
 
 /**
  * Execute javadoc 
+ * <p>
+ * A forked javadoc gets its options and packages through <code>@argfiles</code> in the working directory, so large
+ * classpaths and package lists don't run into the limits of the command line. The argfiles are named by a hash of
+ * their content, so runs with the same classpath, options or packages share them.
  */
 public class JavadocExecutor
 {
-    private Commandline cmd = new Commandline();
+    private String executable;
+    
+    private List<String> options = new ArrayList<String>();
+    
+    private List<String> packages = new ArrayList<String>();
+    
+    private List<String> jvmOptions = new ArrayList<String>();
     
     private Log log;
     
+    private int pathingJarThreshold;
+    
+    private boolean measure;
+    
+    private ClassDataArchive classDataArchive;
+    
+    private JavadocWorkerPool workerPool;
+    
+    private long executionTime;
+    
+    private long peakRss = -1;
+    
+    private long gcTime = -1;
+    
+    private File optionsArgfile;
+    
+    private File logFile;
+    
     /**
      * The constructor
      * 
@@ -43,11 +82,19 @@ public class JavadocExecutor
      */
     public JavadocExecutor( String executable, Log log )
     {
-        cmd.setExecutable( executable );
+        this.executable = executable;
         
         this.log = log;
     }
     
+    /**
+     * @return the javadoc executable
+     */
+    public String getExecutable()
+    {
+        return executable;
+    }
+    
     /**
      * Add a javadoc argument pair
      * 
@@ -56,19 +103,131 @@ public class JavadocExecutor
      */
     public void addArgumentPair( String argKey, String argValue )
     {
-        cmd.createArg().setValue( "-" + argKey );
+        options.add( "-" + argKey );
         
-        cmd.createArg().setValue( argValue );
+        options.add( argValue );
     }
     
     /**
-     * Add an javadoc argument
+     * Add an javadoc argument, an option when it starts with <code>-</code> or else a package name
      * 
      * @param arg the argument
      */
     public void addArgument( String arg )
     {
-        cmd.createArg().setValue( arg );
+        if ( arg.startsWith( "-" ) )
+        {
+            options.add( arg );
+        }
+        else
+        {
+            packages.add( arg );
+        }
+    }
+    
+    /**
+     * Add an option of the JVM of a forked javadoc, like <code>-Xmx1g</code>.
+     * 
+     * @param option the JVM option, with or without the <code>-J</code> javadoc uses to pass it on
+     */
+    public void addJvmOption( String option )
+    {
+        jvmOptions.add( option.startsWith( "-J" ) ? option : "-J" + option );
+    }
+    
+    /**
+     * @return the javadoc arguments added so far, the options before the packages; JVM options aren't part of them
+     */
+    public String[] getArguments()
+    {
+        List<String> arguments = new ArrayList<String>( options );
+        arguments.addAll( packages );
+        return arguments.toArray( new String[arguments.size()] );
+    }
+    
+    /**
+     * Pass a classpath longer than {@code pathingJarThreshold} characters to a forked javadoc as a jar whose manifest
+     * only holds the classpath.
+     * 
+     * @param pathingJarThreshold the length of the classpath, {@code 0} to always pass the classpath itself
+     */
+    public void setPathingJarThreshold( int pathingJarThreshold )
+    {
+        this.pathingJarThreshold = pathingJarThreshold;
+    }
+    
+    /**
+     * Let forked javadoc runs map the classes of the doclet and the javadoc tool from a class data sharing archive.
+     * 
+     * @param classDataArchive the archive, may be {@code null}
+     */
+    public void setClassDataArchive( ClassDataArchive classDataArchive )
+    {
+        this.classDataArchive = classDataArchive;
+    }
+    
+    /**
+     * Write the output of javadoc to {@code logFile} instead of <code>javadoc.log</code> in the working directory.
+     * 
+     * @param logFile the log file
+     */
+    public void setLogFile( File logFile )
+    {
+        this.logFile = logFile;
+    }
+    
+    /**
+     * @return {@code true} if javadoc runs on a worker of a pool instead of being forked
+     */
+    public boolean isOnWorker()
+    {
+        return workerPool != null;
+    }
+    
+    /**
+     * Run javadoc on a worker of the pool instead of forking it for every execution.
+     * 
+     * @param workerPool the pool, may be {@code null}
+     */
+    public void setWorkerPool( JavadocWorkerPool workerPool )
+    {
+        this.workerPool = workerPool;
+    }
+    
+    /**
+     * Measure the peak RSS and GC time of a forked javadoc.
+     * 
+     * @param measure {@code true} to measure
+     */
+    public void setMeasure( boolean measure )
+    {
+        this.measure = measure;
+    }
+    
+    /**
+     * @return the peak resident set size in bytes of the last forked {@link #execute(String)}, or {@code -1} if it
+     *         wasn't measured or can't be measured on this platform
+     */
+    public long getPeakRss()
+    {
+        return peakRss;
+    }
+    
+    /**
+     * @return the time in milliseconds the last forked {@link #execute(String)} spent in GC pauses, or {@code -1} if
+     *         it wasn't measured
+     */
+    public long getGcTime()
+    {
+        return gcTime;
+    }
+    
+    /**
+     * @return the wall-clock time in milliseconds of the last {@link #execute(String)}
+     */
+    public long getExecutionTime()
+    {
+        return executionTime;
     }
     
     /**
@@ -87,25 +246,265 @@ public class JavadocExecutor
             dir.mkdirs();
         }
         
-        cmd.setWorkingDirectory( dir.getAbsolutePath() );
+        int exitCode = -1;
+        
+        long start = System.currentTimeMillis();
+        
+        JavadocOutput output = new JavadocOutput( logFile != null ? logFile : new File( dir, "javadoc.log" ), log );
         
-        int exitCode = 0;
-                
         try
         {
-            log.debug( cmd.toString() );
-            exitCode = CommandLineUtils.executeCommandLine( cmd, 
-                                                            new DefaultConsumer(), 
-                                                            new DefaultConsumer() );
+            if ( workerPool != null )
+            {
+                String[] arguments = getArguments();
+                for ( int i = 0; i < arguments.length; i++ )
+                {
+                    arguments[i] = unquote( arguments[i] );
+                }
+                log.debug( "worker: " + StringUtils.join( arguments, " " ) );
+                output.start();
+                exitCode = workerPool.execute( dir, arguments, output );
+            }
+            else if ( measure )
+            {
+                Commandline cmd = createCommandline( dir );
+                log.debug( cmd.toString() );
+                // the options hold the output directory, so they tell concurrent forks apart
+                ForkStatistics statistics = new ForkStatistics( optionsArgfile.getAbsolutePath() );
+                output.start();
+                statistics.start();
+                try
+                {
+                    exitCode = CommandLineUtils.executeCommandLine( cmd, statistics.getGcConsumer( output ), output );
+                }
+                finally
+                {
+                    statistics.stop();
+                    peakRss = statistics.getPeakRss();
+                    gcTime = statistics.getGcTime();
+                }
+            }
+            else
+            {
+                Commandline cmd = createCommandline( dir );
+                log.debug( cmd.toString() );
+                output.start();
+                exitCode = CommandLineUtils.executeCommandLine( cmd, output, output );
+            }
+        }
+        catch ( JavadocExecutionException ex )
+        {
+            throw ex;
         }
         catch ( Exception ex )
         {
-            throw new JavadocExecutionException( "generateJDiff doclet failed.", ex );
+            throw new JavadocExecutionException( "Unable to run javadoc: " + ex.getMessage(), ex );
+        }
+        finally
+        {
+            executionTime = System.currentTimeMillis() - start;
+            output.stop();
+            if ( classDataArchive != null && workerPool == null )
+            {
+                classDataArchive.forkCompleted( exitCode == 0 );
+            }
         }
         
         if ( exitCode != 0 )
         {
-            throw new JavadocExecutionException( "generate JDiff doclet failed." );
+            output.logTail();
+            throw new JavadocExecutionException( getFailureMessage( exitCode, output ), exitCode,
+                                                 output.getLogFile() );
+        }
+        output.logSummary();
+    }
+    
+    private static String getFailureMessage( int exitCode, JavadocOutput output )
+    {
+        StringBuffer message = new StringBuffer( "javadoc failed with exit code " + exitCode );
+        if ( output.getErrorCount() > 0 )
+        {
+            message.append( " and " ).append( output.getErrorCount() ).append( " error(s), the first being:" );
+            for ( String error : output.getFirstErrors() )
+            {
+                message.append( "\n  " ).append( error );
+            }
+            message.append( "\n" );
+        }
+        message.append( output.getErrorCount() > 0 ? "see " : ", see " );
+        message.append( output.getLogFile() ).append( " for the complete output" );
+        return message.toString();
+    }
+    
+    /**
+     * Arguments are quoted for the command line of the forked executable, strip those quotes again.
+     */
+    static String unquote( String arg )
+    {
+        if ( arg.length() > 1 && arg.charAt( 0 ) == '\'' && arg.charAt( arg.length() - 1 ) == '\'' )
+        {
+            return StringUtils.replace( arg.substring( 1, arg.length() - 1 ), "\\'", "'" );
+        }
+        return arg;
+    }
+    
+    /**
+     * The classpath, the other options and the packages each go into an argfile of their own, as they change
+     * independently between runs. JVM options (<code>-J</code>) aren't allowed in argfiles and stay on the command
+     * line.
+     */
+    private Commandline createCommandline( File dir )
+        throws IOException
+    {
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( executable );
+        cmd.setWorkingDirectory( dir.getAbsolutePath() );
+        for ( String jvmOption : jvmOptions )
+        {
+            cmd.createArg().setValue( jvmOption );
+        }
+        if ( classDataArchive != null )
+        {
+            for ( String option : classDataArchive.getJvmOptions() )
+            {
+                cmd.createArg().setValue( "-J" + option );
+            }
+        }
+        if ( measure )
+        {
+            cmd.createArg().setValue( "-J-verbose:gc" );
+        }
+        
+        List<String> classpathOptions = new ArrayList<String>();
+        List<String> otherOptions = new ArrayList<String>();
+        for ( int i = 0; i < options.size(); i++ )
+        {
+            String option = options.get( i );
+            if ( "-classpath".equals( option ) && i + 1 < options.size() )
+            {
+                classpathOptions.add( option );
+                classpathOptions.add( getClasspath( dir, unquote( options.get( ++i ) ) ) );
+            }
+            else
+            {
+                otherOptions.add( unquote( option ) );
+            }
         }
+        
+        addArgumentFile( cmd, dir, "classpath", classpathOptions );
+        optionsArgfile = addArgumentFile( cmd, dir, "options", otherOptions );
+        addArgumentFile( cmd, dir, "packages", packages );
+        return cmd;
+    }
+    
+    private File addArgumentFile( Commandline cmd, File dir, String name, List<String> arguments )
+        throws IOException
+    {
+        if ( arguments.isEmpty() )
+        {
+            return null;
+        }
+        
+        StringBuffer content = new StringBuffer();
+        for ( String argument : arguments )
+        {
+            // quoted, so whitespace and '#' in paths survive
+            content.append( '\'' );
+            content.append( StringUtils.replace( StringUtils.replace( argument, "\\", "\\\\" ), "'", "\\'" ) );
+            content.append( '\'' ).append( '\n' );
+        }
+        
+        File argfile = new File( dir, name + "-" + getHash( content.toString() ) + ".args" );
+        if ( !argfile.isFile() )
+        {
+            File tempFile = File.createTempFile( name, ".tmp", dir );
+            Writer writer = WriterFactory.newPlatformWriter( tempFile );
+            try
+            {
+                // javadoc reads argfiles in the platform encoding
+                writer.write( content.toString() );
+            }
+            finally
+            {
+                IOUtil.close( writer );
+            }
+            publish( tempFile, argfile );
+        }
+        else
+        {
+            log.debug( "Reusing " + argfile );
+        }
+        cmd.createArg().setValue( "@" + argfile.getAbsolutePath() );
+        return argfile;
+    }
+    
+    /**
+     * @return the classpath, or a pathing jar referring to its elements when it exceeds the threshold
+     */
+    private String getClasspath( File dir, String classpath )
+        throws IOException
+    {
+        if ( pathingJarThreshold <= 0 || classpath.length() <= pathingJarThreshold )
+        {
+            return classpath;
+        }
+        
+        File jar = new File( dir, "classpath-" + getHash( classpath ) + ".jar" );
+        if ( !jar.isFile() )
+        {
+            StringBuffer classPath = new StringBuffer();
+            for ( String element : StringUtils.split( classpath, File.pathSeparator ) )
+            {
+                if ( classPath.length() > 0 )
+                {
+                    classPath.append( ' ' );
+                }
+                classPath.append( toURL( new File( element ) ) );
+            }
+            
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+            manifest.getMainAttributes().put( Attributes.Name.CLASS_PATH, classPath.toString() );
+            
+            File tempFile = File.createTempFile( "classpath", ".tmp", dir );
+            JarOutputStream out = new JarOutputStream( new FileOutputStream( tempFile ), manifest );
+            IOUtil.close( out );
+            publish( tempFile, jar );
+            log.debug( "Passing the classpath of " + classpath.length() + " characters through " + jar );
+        }
+        return jar.getAbsolutePath();
+    }
+    
+    private static String toURL( File file )
+        throws MalformedURLException
+    {
+        // directories only count as such with a trailing slash, even when they don't exist yet
+        String url = file.getAbsoluteFile().toURI().toURL().toExternalForm();
+        if ( !url.endsWith( "/" ) && !file.isFile() && !file.getName().endsWith( ".jar" ) )
+        {
+            url += "/";
+        }
+        return url;
+    }
+    
+    /**
+     * Moves a completely written file to its name; another run writing the same content may have been first.
+     */
+    private static void publish( File tempFile, File file )
+        throws IOException
+    {
+        if ( !tempFile.renameTo( file ) )
+        {
+            tempFile.delete();
+            if ( !file.isFile() )
+            {
+                throw new IOException( "Unable to write " + file );
+            }
+        }
+    }
+    
+    private static String getHash( String content )
+    {
+        return new Fingerprint().add( content ).getHash().substring( 0, 12 );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,380 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Captures the output of a javadoc run without holding javadoc up. Lines are handed through a bounded queue to a
+ * thread of their own, which writes all of them to a log file, counts warnings and errors by category and keeps the
+ * last lines in a ring buffer. Only a summary goes to the Maven log, plus the last lines when the run fails.
+ */
+public class JavadocOutput
+    implements StreamConsumer
+{
+    private static final int QUEUE_SIZE = 4096;
+
+    private static final int TAIL_SIZE = 40;
+
+    private static final int MAX_ERRORS = 5;
+
+    private static final int MAX_CATEGORIES = 10;
+
+    /**
+     * How long to wait for room in the queue before checking whether the writing thread is still alive, in seconds
+     */
+    private static final int OFFER_TIMEOUT = 1;
+
+    /**
+     * Marks the end of the output in the queue
+     */
+    private static final String END = new String( "END" );
+
+    /**
+     * <code>Foo.java:12: warning: no @param for x</code> or <code>Foo.java:12: warning - Tag @see: not found</code>,
+     * also without the location
+     */
+    private static final Pattern DIAGNOSTIC = Pattern.compile( "(?:^|: )(warning|error)(?::| -) (.*)$" );
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<String>( QUEUE_SIZE );
+
+    private final File logFile;
+
+    private final Log log;
+
+    private final String[] tail = new String[TAIL_SIZE];
+
+    private int lines;
+
+    private final Map<String, Integer> warnings = new HashMap<String, Integer>();
+
+    private final Map<String, Integer> errors = new HashMap<String, Integer>();
+
+    private final List<String> firstErrors = new ArrayList<String>();
+
+    private int warningCount;
+
+    private int errorCount;
+
+    private Throwable writeFailure;
+
+    private volatile Thread writer;
+
+    /**
+     * The constructor
+     * 
+     * @param logFile the file receiving the complete output
+     * @param log the mojo logger
+     */
+    public JavadocOutput( File logFile, Log log )
+    {
+        this.logFile = logFile;
+        this.log = log;
+    }
+
+    /**
+     * Start the thread writing the output.
+     * 
+     * @throws IOException if the log file can't be created
+     */
+    public void start()
+        throws IOException
+    {
+        logFile.getParentFile().mkdirs();
+        final Writer out = WriterFactory.newPlatformWriter( logFile );
+        writer = new Thread( "jdiff-javadoc-output" )
+        {
+            public void run()
+            {
+                try
+                {
+                    String line;
+                    while ( ( line = queue.take() ) != END )
+                    {
+                        try
+                        {
+                            consume( line );
+                            if ( writeFailure == null )
+                            {
+                                out.write( line );
+                                out.write( '\n' );
+                            }
+                        }
+                        catch ( Throwable e )
+                        {
+                            // keep draining the queue, javadoc would block on it otherwise
+                            if ( writeFailure == null )
+                            {
+                                writeFailure = e;
+                            }
+                        }
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    // stopped
+                }
+                finally
+                {
+                    IOUtil.close( out );
+                }
+            }
+        };
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    /**
+     * Queue a line of output, blocking while the queue is full so the log stays complete. Once the writing thread is
+     * gone, the line goes to the Maven log instead.
+     * 
+     * @param line the line
+     */
+    public void consumeLine( String line )
+    {
+        try
+        {
+            while ( isWriting() )
+            {
+                if ( queue.offer( line, OFFER_TIMEOUT, TimeUnit.SECONDS ) )
+                {
+                    return;
+                }
+            }
+            log.info( line );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for all queued output to be written, once javadoc has exited.
+     */
+    public void stop()
+    {
+        if ( writer == null )
+        {
+            return;
+        }
+        try
+        {
+            boolean ended = false;
+            while ( !ended && writer.isAlive() )
+            {
+                ended = queue.offer( END, OFFER_TIMEOUT, TimeUnit.SECONDS );
+            }
+            writer.join();
+        }
+        catch ( InterruptedException e )
+        {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        if ( writeFailure instanceof IOException )
+        {
+            log.warn( "Failed to write the javadoc output to " + logFile + ": " + writeFailure.getMessage() );
+        }
+        else if ( writeFailure != null )
+        {
+            log.warn( "Failed to process the javadoc output", writeFailure );
+        }
+    }
+
+    private boolean isWriting()
+    {
+        Thread current = writer;
+        return current != null && current.isAlive();
+    }
+
+    private synchronized void consume( String line )
+    {
+        tail[lines % TAIL_SIZE] = line;
+        lines++;
+
+        Matcher matcher = DIAGNOSTIC.matcher( line );
+        if ( matcher.find() )
+        {
+            String category = getCategory( matcher.group( 2 ) );
+            if ( "error".equals( matcher.group( 1 ) ) )
+            {
+                errorCount++;
+                count( errors, category );
+                if ( firstErrors.size() < MAX_ERRORS )
+                {
+                    firstErrors.add( line.trim() );
+                }
+            }
+            else
+            {
+                warningCount++;
+                count( warnings, category );
+            }
+        }
+    }
+
+    /**
+     * The category of <code>no @param for x</code> is <code>no @param for</code>, the one of
+     * <code>Tag @see: reference not found: Bar</code> is <code>Tag @see</code>.
+     */
+    static String getCategory( String message )
+    {
+        int colon = message.indexOf( ": " );
+        if ( colon > 0 )
+        {
+            return message.substring( 0, colon );
+        }
+        String[] words = message.trim().split( "\\s+" );
+        StringBuffer category = new StringBuffer();
+        for ( int i = 0; i < words.length && i < 3; i++ )
+        {
+            if ( i > 0 )
+            {
+                category.append( ' ' );
+            }
+            category.append( words[i] );
+        }
+        return category.toString();
+    }
+
+    private static void count( Map<String, Integer> counts, String category )
+    {
+        Integer count = counts.get( category );
+        counts.put( category, Integer.valueOf( count == null ? 1 : count.intValue() + 1 ) );
+    }
+
+    /**
+     * @return the log file
+     */
+    public File getLogFile()
+    {
+        return logFile;
+    }
+
+    /**
+     * @return the number of warnings
+     */
+    public synchronized int getWarningCount()
+    {
+        return warningCount;
+    }
+
+    /**
+     * @return the number of errors
+     */
+    public synchronized int getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * @return the first error lines
+     */
+    public synchronized List<String> getFirstErrors()
+    {
+        return new ArrayList<String>( firstErrors );
+    }
+
+    /**
+     * @return the last lines of the output, oldest first
+     */
+    public synchronized List<String> getTail()
+    {
+        List<String> result = new ArrayList<String>();
+        for ( int i = Math.max( 0, lines - TAIL_SIZE ); i < lines; i++ )
+        {
+            result.add( tail[i % TAIL_SIZE] );
+        }
+        return result;
+    }
+
+    /**
+     * Log the number of warnings and errors and the most frequent categories.
+     */
+    public synchronized void logSummary()
+    {
+        if ( warningCount == 0 && errorCount == 0 )
+        {
+            log.debug( "javadoc: no warnings, output in " + logFile );
+            return;
+        }
+        log.info( "javadoc: " + warningCount + " warning(s), " + errorCount + " error(s), output in " + logFile );
+        logCategories( "error", errors );
+        logCategories( "warning", warnings );
+    }
+
+    /**
+     * Log the last lines of the output, after a failed run.
+     */
+    public void logTail()
+    {
+        List<String> lastLines = getTail();
+        if ( lastLines.isEmpty() )
+        {
+            return;
+        }
+        log.error( "Last " + lastLines.size() + " line(s) of the javadoc output:" );
+        for ( String line : lastLines )
+        {
+            log.error( "  " + line );
+        }
+    }
+
+    private void logCategories( String kind, final Map<String, Integer> counts )
+    {
+        List<String> categories = new ArrayList<String>( counts.keySet() );
+        Collections.sort( categories, new Comparator<String>()
+        {
+            public int compare( String o1, String o2 )
+            {
+                int result = counts.get( o2 ).compareTo( counts.get( o1 ) );
+                return result != 0 ? result : o1.compareTo( o2 );
+            }
+        } );
+        for ( int i = 0; i < categories.size() && i < MAX_CATEGORIES; i++ )
+        {
+            log.info( "  " + counts.get( categories.get( i ) ) + " x " + kind + ": " + categories.get( i ) );
+        }
+        if ( categories.size() > MAX_CATEGORIES )
+        {
+            log.info( "  ... " + ( categories.size() - MAX_CATEGORIES ) + " more " + kind + " categories" );
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Long-lived javadoc process, started by a {@link JavadocWorkerPool} with the JDK of the javadoc executable. It runs
+ * the javadoc requests of the pool one after the other through the system documentation tool, so the JVM, its JIT and
+ * the classes of javadoc stay warm between runs.
+ * <p>
+ * The worker connects back to the pool through a local socket, which carries the requests and their output; anything
+ * the JVM itself writes to the standard streams stays out of the protocol. A request is the number of arguments
+ * followed by the working directory and the arguments, a negative number shuts the worker down. The worker answers
+ * with output lines and the exit code, see {@link #LINE} and {@link #EXIT}. The worker exits when the connection
+ * closes.
+ * <p>
+ * The worker doesn't change its own working directory between requests, so it resolves the paths of the
+ * {@link #PATH_OPTIONS path options} against the working directory of the request. A doclet calling
+ * <code>System.exit</code> ends the worker; the pool reports its exit code.
+ * <p>
+ * This class runs outside Maven and must only depend on the JDK.
+ */
+public final class JavadocWorker
+{
+    /**
+     * Record of a line of javadoc output, followed by the line
+     */
+    static final int LINE = 'L';
+
+    /**
+     * Record of the exit code of a request, followed by the code
+     */
+    static final int EXIT = 'E';
+
+    /**
+     * Options of javadoc and the JDiff doclet whose value is a file, a directory or a path
+     */
+    static final List<String> PATH_OPTIONS =
+        Arrays.asList( new String[] { "-d", "-sourcepath", "-classpath", "-cp", "-bootclasspath", "-extdirs",
+            "-docletpath", "-overview", "-apidir", "-oldapidir", "-newapidir" } );
+
+    private JavadocWorker()
+    {
+        // only runs through main
+    }
+
+    /**
+     * @param args the port of the pool and the token identifying the worker to the pool
+     * @throws Exception if the pool can't be reached or the connection fails
+     */
+    public static void main( String[] args )
+        throws Exception
+    {
+        Socket socket = new Socket( "127.0.0.1", Integer.parseInt( args[0] ) );
+        DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+        writeString( out, args[1] );
+        out.flush();
+
+        LineOutputStream lines = new LineOutputStream( out );
+        PrintStream output = new PrintStream( lines, true );
+        // doclets print to the standard streams
+        System.setOut( output );
+        System.setErr( output );
+
+        try
+        {
+            while ( true )
+            {
+                int count = in.readInt();
+                if ( count < 0 )
+                {
+                    break;
+                }
+                File workingDir = new File( readString( in ) );
+                String[] arguments = new String[count];
+                for ( int i = 0; i < count; i++ )
+                {
+                    arguments[i] = readString( in );
+                    if ( i > 0 && PATH_OPTIONS.contains( arguments[i - 1] ) )
+                    {
+                        arguments[i] = resolve( workingDir, arguments[i] );
+                    }
+                }
+
+                int exitCode = run( arguments, output );
+                output.flush();
+                lines.flushLine();
+                synchronized ( out )
+                {
+                    out.writeByte( EXIT );
+                    out.writeInt( exitCode );
+                    out.flush();
+                }
+            }
+        }
+        catch ( EOFException e )
+        {
+            // the pool is gone
+        }
+        finally
+        {
+            socket.close();
+        }
+        System.exit( 0 );
+    }
+
+    /**
+     * The docletpath also backs the context classloader for the duration of the run, so services the doclet looks up
+     * (like its XML parser) come from the docletpath.
+     */
+    private static int run( String[] arguments, PrintStream output )
+    {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextLoader = currentThread.getContextClassLoader();
+        try
+        {
+            Object tool = Class.forName( "javax.tools.ToolProvider" ).getMethod( "getSystemDocumentationTool" )
+                .invoke( null );
+            if ( tool == null )
+            {
+                output.println( "No system documentation tool available in " + System.getProperty( "java.home" ) );
+                return 1;
+            }
+
+            String docletpath = null;
+            for ( int i = 1; i < arguments.length; i++ )
+            {
+                if ( "-docletpath".equals( arguments[i - 1] ) )
+                {
+                    docletpath = arguments[i];
+                }
+            }
+            currentThread.setContextClassLoader( new URLClassLoader( toURLs( docletpath ),
+                                                                     tool.getClass().getClassLoader() ) );
+
+            Method run =
+                Class.forName( "javax.tools.Tool" ).getMethod( "run", InputStream.class, OutputStream.class,
+                                                               OutputStream.class, String[].class );
+            return ( (Integer) run.invoke( tool, null, output, output, arguments ) ).intValue();
+        }
+        catch ( InvocationTargetException e )
+        {
+            e.getCause().printStackTrace( output );
+            return 1;
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace( output );
+            return 1;
+        }
+        finally
+        {
+            currentThread.setContextClassLoader( contextLoader );
+        }
+    }
+
+    /**
+     * @param workingDir the working directory of the request
+     * @param path one or more elements separated by the path separator
+     * @return the path with its relative elements resolved against {@code workingDir}
+     */
+    static String resolve( File workingDir, String path )
+    {
+        StringBuffer resolved = new StringBuffer();
+        StringTokenizer elements = new StringTokenizer( path, File.pathSeparator );
+        while ( elements.hasMoreTokens() )
+        {
+            File element = new File( elements.nextToken() );
+            if ( resolved.length() > 0 )
+            {
+                resolved.append( File.pathSeparatorChar );
+            }
+            resolved.append( element.isAbsolute() ? element.getPath() : new File( workingDir, element.getPath() )
+                .getPath() );
+        }
+        return resolved.toString();
+    }
+
+    private static URL[] toURLs( String path )
+        throws IOException
+    {
+        List<URL> urls = new ArrayList<URL>();
+        if ( path != null )
+        {
+            StringTokenizer elements = new StringTokenizer( path, File.pathSeparator );
+            while ( elements.hasMoreTokens() )
+            {
+                urls.add( new File( elements.nextToken() ).toURI().toURL() );
+            }
+        }
+        return urls.toArray( new URL[urls.size()] );
+    }
+
+    static void writeString( DataOutputStream out, String value )
+        throws IOException
+    {
+        // writeUTF is limited to 64 KB, classpaths aren't
+        byte[] bytes = value.getBytes( "UTF-8" );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    static String readString( DataInputStream in )
+        throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, "UTF-8" );
+    }
+
+    /**
+     * Sends every line written to it as a {@link #LINE} record.
+     */
+    private static class LineOutputStream
+        extends OutputStream
+    {
+        private final DataOutputStream out;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineOutputStream( DataOutputStream out )
+        {
+            this.out = out;
+        }
+
+        public synchronized void write( int b )
+            throws IOException
+        {
+            if ( b == '\n' )
+            {
+                sendLine();
+            }
+            else if ( b != '\r' )
+            {
+                line.write( b );
+            }
+        }
+
+        /**
+         * Send the rest of an unterminated line.
+         */
+        synchronized void flushLine()
+            throws IOException
+        {
+            if ( line.size() > 0 )
+            {
+                sendLine();
+            }
+        }
+
+        private void sendLine()
+            throws IOException
+        {
+            // javadoc writes in the platform encoding
+            String value = new String( line.toByteArray() );
+            line.reset();
+            synchronized ( out )
+            {
+                out.writeByte( LINE );
+                writeString( out, value );
+                out.flush();
+            }
+        }
+    }
+}
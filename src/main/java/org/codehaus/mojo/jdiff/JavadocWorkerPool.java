@@ -0,0 +1,512 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.SystemUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.codehaus.plexus.util.cli.StreamPumper;
+
+/**
+ * Pool of {@link JavadocWorker javadoc workers}, shared by all projects and goals of a build which run javadoc from
+ * the same JDK with the same JVM options. Workers are started on demand up to the size of the pool, which is the
+ * largest size any goal asked for; a worker whose request fails on the protocol level, for instance because the
+ * doclet called <code>System.exit</code>, is replaced by a new one on the next request.
+ * <p>
+ * Like {@link CheckoutCoordinator}, pools are registered by a key identifying the build. They are shut down when
+ * another build starts in the same JVM or when the JVM exits; a worker also exits by itself when its connection to the
+ * pool closes.
+ */
+public class JavadocWorkerPool
+{
+    private static final Map<String, JavadocWorkerPool> POOLS = new HashMap<String, JavadocWorkerPool>();
+
+    private static String poolsBuildKey;
+
+    private static boolean shutdownHookAdded;
+
+    /**
+     * The time in milliseconds a new worker may take to connect to the pool
+     */
+    private static final long CONNECT_TIMEOUT = 60000;
+
+    /**
+     * The time in milliseconds a worker whose connection closed may take to exit
+     */
+    private static final long EXIT_TIMEOUT = 5000;
+
+    private final List<String> command;
+
+    private final Log log;
+
+    private int size;
+
+    private final LinkedList<Worker> idle = new LinkedList<Worker>();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private int workers;
+
+    private boolean shutdown;
+
+    private ServerSocket serverSocket;
+
+    private JavadocWorkerPool( List<String> command, int size, Log log )
+    {
+        this.command = command;
+        this.size = size;
+        this.log = log;
+    }
+
+    /**
+     * Returns the pool of this build for the JDK of {@code javadocExecutable} and {@code jvmOptions}, creating it on
+     * the first request. A pool created with fewer workers grows to {@code size}.
+     * 
+     * @param buildKey identifies the build
+     * @param javadocExecutable the javadoc executable, the workers run with the <code>java</code> executable next to it
+     * @param jvmOptions the options of the JVM of the workers
+     * @param size the maximum number of workers of the pool
+     * @param log the mojo logger
+     * @return the pool, or {@code null} if there is no <code>java</code> executable next to {@code javadocExecutable}
+     * @throws IOException if the location of the worker class can't be determined
+     */
+    public static JavadocWorkerPool getPool( String buildKey, String javadocExecutable, List<String> jvmOptions,
+                                             int size, Log log )
+        throws IOException
+    {
+        File java = new File( new File( javadocExecutable ).getParentFile(),
+                              SystemUtils.IS_OS_WINDOWS ? "java.exe" : "java" );
+        if ( !java.isFile() )
+        {
+            return null;
+        }
+
+        String key = java.getAbsolutePath() + ':' + jvmOptions;
+        synchronized ( POOLS )
+        {
+            if ( !buildKey.equals( poolsBuildKey ) )
+            {
+                // a new build in the same JVM, the workers of the previous one are done
+                shutdownAll();
+                poolsBuildKey = buildKey;
+            }
+            if ( !shutdownHookAdded )
+            {
+                Runtime.getRuntime().addShutdownHook( new Thread( "jdiff-javadoc-workers" )
+                {
+                    public void run()
+                    {
+                        synchronized ( POOLS )
+                        {
+                            shutdownAll();
+                        }
+                    }
+                } );
+                shutdownHookAdded = true;
+            }
+
+            JavadocWorkerPool pool = POOLS.get( key );
+            if ( pool == null )
+            {
+                List<String> command = new ArrayList<String>();
+                command.add( java.getAbsolutePath() );
+                for ( String option : jvmOptions )
+                {
+                    command.add( option.startsWith( "-J" ) ? option.substring( 2 ) : option );
+                }
+                command.add( "-cp" );
+                command.add( getWorkerClasspath() );
+                command.add( JavadocWorker.class.getName() );
+                pool = new JavadocWorkerPool( command, size, log );
+                POOLS.put( key, pool );
+            }
+            else
+            {
+                // goals may ask for different sizes, a smaller one would hold up the goals sharing the pool
+                pool.grow( size );
+            }
+            return pool;
+        }
+    }
+
+    private synchronized void grow( int newSize )
+    {
+        if ( newSize > size )
+        {
+            log.debug( "Growing the javadoc worker pool from " + size + " to " + newSize + " workers" );
+            size = newSize;
+            // requests waiting for a worker may start one now
+            notifyAll();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on {@link #POOLS}.
+     */
+    private static void shutdownAll()
+    {
+        for ( JavadocWorkerPool pool : POOLS.values() )
+        {
+            pool.shutdown();
+        }
+        POOLS.clear();
+    }
+
+    private static String getWorkerClasspath()
+        throws IOException
+    {
+        try
+        {
+            return new File( JavadocWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI() )
+                .getAbsolutePath();
+        }
+        catch ( URISyntaxException e )
+        {
+            throw new IOException( "Unable to locate the javadoc worker: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Run javadoc on a worker of the pool, waiting for one to become available when all are busy.
+     * 
+     * @param workingDir the working directory of the request, relative paths of the arguments resolve against it
+     * @param arguments the javadoc arguments, unquoted
+     * @param consumer the consumer of the javadoc output
+     * @return the javadoc exit code
+     * @throws JavadocExecutionException if no worker can be started or the worker fails during the request
+     */
+    public int execute( File workingDir, String[] arguments, StreamConsumer consumer )
+        throws JavadocExecutionException
+    {
+        Worker worker = borrow();
+        boolean healthy = false;
+        try
+        {
+            int exitCode = worker.execute( workingDir, arguments, consumer );
+            healthy = true;
+            return exitCode;
+        }
+        catch ( IOException e )
+        {
+            Integer exitCode = worker.waitForExit();
+            if ( exitCode != null )
+            {
+                throw new JavadocExecutionException( "The javadoc worker exited with code " + exitCode
+                    + " during the request, the doclet may have called System.exit", e );
+            }
+            throw new JavadocExecutionException( "The javadoc worker failed: " + e.getMessage(), e );
+        }
+        finally
+        {
+            release( worker, healthy );
+        }
+    }
+
+    private Worker borrow()
+        throws JavadocExecutionException
+    {
+        synchronized ( this )
+        {
+            while ( true )
+            {
+                if ( shutdown )
+                {
+                    throw new JavadocExecutionException( "The javadoc workers have been shut down." );
+                }
+                if ( !idle.isEmpty() )
+                {
+                    return idle.removeFirst();
+                }
+                if ( workers < size )
+                {
+                    workers++;
+                    break;
+                }
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new JavadocExecutionException( "Interrupted while waiting for a javadoc worker." );
+                }
+            }
+        }
+
+        try
+        {
+            return start();
+        }
+        catch ( IOException e )
+        {
+            synchronized ( this )
+            {
+                workers--;
+                notifyAll();
+            }
+            throw new JavadocExecutionException( "Unable to start a javadoc worker: " + e.getMessage(), e );
+        }
+    }
+
+    private synchronized void release( Worker worker, boolean healthy )
+    {
+        if ( healthy && !shutdown )
+        {
+            // the most recently used worker is the warmest
+            idle.addFirst( worker );
+        }
+        else
+        {
+            if ( !healthy )
+            {
+                log.warn( "Discarding the failed javadoc worker, the next request starts a new one." );
+            }
+            worker.destroy();
+            workers--;
+        }
+        notifyAll();
+    }
+
+    private Worker start()
+        throws IOException
+    {
+        // workers are started one at a time, so each connection belongs to the worker just started
+        synchronized ( command )
+        {
+            if ( serverSocket == null )
+            {
+                serverSocket = new ServerSocket( 0, 50, InetAddress.getByName( "127.0.0.1" ) );
+                serverSocket.setSoTimeout( 1000 );
+            }
+
+            String token = Long.toHexString( random.nextLong() );
+            List<String> workerCommand = new ArrayList<String>( command );
+            workerCommand.add( String.valueOf( serverSocket.getLocalPort() ) );
+            workerCommand.add( token );
+            log.debug( "Starting javadoc worker: " + workerCommand );
+            Process process = new ProcessBuilder( workerCommand ).start();
+            process.getOutputStream().close();
+
+            // the JVM of the worker may write to the standard streams itself
+            StreamConsumer debug = new StreamConsumer()
+            {
+                public void consumeLine( String line )
+                {
+                    log.debug( "[javadoc worker] " + line );
+                }
+            };
+            new StreamPumper( process.getInputStream(), debug ).start();
+            new StreamPumper( process.getErrorStream(), debug ).start();
+
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            while ( System.currentTimeMillis() < deadline )
+            {
+                Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch ( SocketTimeoutException e )
+                {
+                    if ( hasExited( process ) )
+                    {
+                        throw new IOException( "The worker exited with " + process.exitValue() );
+                    }
+                    continue;
+                }
+
+                try
+                {
+                    socket.setSoTimeout( 1000 );
+                    Worker worker = new Worker( process, socket );
+                    if ( token.equals( JavadocWorker.readString( worker.in ) ) )
+                    {
+                        socket.setSoTimeout( 0 );
+                        return worker;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // not a worker
+                }
+                socket.close();
+            }
+            process.destroy();
+            throw new IOException( "The worker didn't connect within " + CONNECT_TIMEOUT / 1000 + " seconds" );
+        }
+    }
+
+    private static boolean hasExited( Process process )
+    {
+        try
+        {
+            process.exitValue();
+            return true;
+        }
+        catch ( IllegalThreadStateException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Shut the idle workers down, busy workers are shut down once their request completes.
+     */
+    public synchronized void shutdown()
+    {
+        shutdown = true;
+        for ( Worker worker : idle )
+        {
+            worker.shutdown();
+        }
+        workers -= idle.size();
+        idle.clear();
+        notifyAll();
+        if ( serverSocket != null )
+        {
+            try
+            {
+                serverSocket.close();
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to close the javadoc worker socket: " + e.getMessage() );
+            }
+        }
+    }
+
+    private static class Worker
+    {
+        private final Process process;
+
+        private final Socket socket;
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        Worker( Process process, Socket socket )
+            throws IOException
+        {
+            this.process = process;
+            this.socket = socket;
+            in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+            out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+        }
+
+        int execute( File workingDir, String[] arguments, StreamConsumer consumer )
+            throws IOException
+        {
+            out.writeInt( arguments.length );
+            JavadocWorker.writeString( out, workingDir.getAbsolutePath() );
+            for ( String argument : arguments )
+            {
+                JavadocWorker.writeString( out, argument );
+            }
+            out.flush();
+
+            while ( true )
+            {
+                int record = in.readByte();
+                if ( record == JavadocWorker.LINE )
+                {
+                    consumer.consumeLine( JavadocWorker.readString( in ) );
+                }
+                else if ( record == JavadocWorker.EXIT )
+                {
+                    return in.readInt();
+                }
+                else
+                {
+                    throw new IOException( "Unexpected record " + record + " from the worker" );
+                }
+            }
+        }
+
+        /**
+         * The connection of a worker closes before its process is gone, so give the process a moment to exit.
+         * 
+         * @return the exit code of the worker, or {@code null} if it is still running
+         */
+        Integer waitForExit()
+        {
+            long deadline = System.currentTimeMillis() + EXIT_TIMEOUT;
+            while ( !hasExited( process ) && System.currentTimeMillis() < deadline )
+            {
+                try
+                {
+                    Thread.sleep( 50 );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return hasExited( process ) ? Integer.valueOf( process.exitValue() ) : null;
+        }
+
+        void shutdown()
+        {
+            try
+            {
+                out.writeInt( -1 );
+                out.flush();
+            }
+            catch ( IOException e )
+            {
+                // the worker is gone already
+            }
+            destroy();
+        }
+
+        void destroy()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch ( IOException e )
+            {
+                // closing anyway
+            }
+            process.destroy();
+        }
+    }
+}
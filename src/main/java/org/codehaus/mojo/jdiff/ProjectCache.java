@@ -0,0 +1,253 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Shares resolved projects, classpaths and source roots between all mojo executions of a build, so a reactor with
+ * many modules builds the POM of every comparison version and collects its classpath only once. Entries are keyed by
+ * the project coordinates and a hash of the POM, and dropped as soon as another build starts in the same JVM.
+ * <p>
+ * Like {@link CheckoutCoordinator}, the cache is registered by a key identifying the build instead of in the session,
+ * since parallel builds may give every project its own copy of the session.
+ */
+public final class ProjectCache
+{
+    private static final Map<String, FutureTask<MavenProject>> PROJECTS =
+        new HashMap<String, FutureTask<MavenProject>>();
+
+    private static final Map<String, Classpath> CLASSPATHS = new HashMap<String, Classpath>();
+
+    private static final Map<String, List<String>> SOURCE_ROOTS = new HashMap<String, List<String>>();
+
+    /**
+     * POM hashes by path, size and modification time, so every POM is read only once per build
+     */
+    private static final Map<String, String> POM_HASHES = new HashMap<String, String>();
+
+    private static String cacheBuildKey;
+
+    private ProjectCache()
+    {
+        // hide constructor of utility class
+    }
+
+    /**
+     * Returns the project built for {@code coordinates} and {@code pom} during this build, running {@code builder} in
+     * the calling thread when this is the first request for it. Other projects asking for the same project meanwhile
+     * wait for it instead of building it again.
+     * 
+     * @param buildKey identifies the build
+     * @param coordinates the coordinates of the project
+     * @param pom the POM the project is built from, {@code null} when the coordinates identify an immutable project
+     *            in the repository
+     * @param builder builds the project
+     * @return the project
+     * @throws ExecutionException if the project couldn't be built, for the calling project as well as all waiting ones
+     * @throws InterruptedException if interrupted while waiting for another project to build it
+     */
+    public static MavenProject getProject( String buildKey, String coordinates, File pom,
+                                           Callable<MavenProject> builder )
+        throws ExecutionException, InterruptedException
+    {
+        String key = coordinates;
+        if ( pom != null )
+        {
+            // the same POM checked out twice yields different source roots
+            key += '@' + pom.getAbsolutePath() + ':' + getPomHash( buildKey, pom );
+        }
+
+        FutureTask<MavenProject> task;
+        boolean owner = false;
+        synchronized ( PROJECTS )
+        {
+            checkBuild( buildKey );
+            task = PROJECTS.get( key );
+            if ( task == null )
+            {
+                task = new FutureTask<MavenProject>( builder );
+                PROJECTS.put( key, task );
+                owner = true;
+            }
+        }
+
+        if ( owner )
+        {
+            task.run();
+        }
+        return task.get();
+    }
+
+    /**
+     * @param buildKey identifies the build
+     * @param project the project
+     * @return the compile classpath elements of the project, the returned list can't be modified
+     */
+    public static List<String> getClasspathElements( String buildKey, MavenProject project )
+    {
+        Set<?> artifacts = project.getArtifacts();
+        String key = getProjectKey( buildKey, project ) + ':' + getArtifactsKey( artifacts );
+        synchronized ( PROJECTS )
+        {
+            checkBuild( buildKey );
+            Classpath classpath = CLASSPATHS.get( key );
+            if ( classpath != null && classpath.artifacts == artifacts )
+            {
+                return classpath.elements;
+            }
+        }
+
+        List<String> classpathElements = Collections.unmodifiableList( JDiffUtils.getClasspathElements( project ) );
+        synchronized ( PROJECTS )
+        {
+            if ( buildKey.equals( cacheBuildKey ) )
+            {
+                CLASSPATHS.put( key, new Classpath( artifacts, classpathElements ) );
+            }
+        }
+        return classpathElements;
+    }
+
+    /**
+     * Only use this for projects which aren't part of the reactor, plugins of the reactor may still add source roots
+     * to those.
+     * 
+     * @param buildKey identifies the build
+     * @param project the project
+     * @param scope tells the main from the test source roots
+     * @param compileSourceRoots the source roots of {@code scope}, used the first time only
+     * @return the source roots of the project, the returned list can't be modified
+     */
+    public static List<String> getSourceRoots( String buildKey, MavenProject project, String scope,
+                                               List<String> compileSourceRoots )
+    {
+        String key = getProjectKey( buildKey, project ) + ':' + scope;
+        synchronized ( PROJECTS )
+        {
+            checkBuild( buildKey );
+            List<String> sourceRoots = SOURCE_ROOTS.get( key );
+            if ( sourceRoots == null )
+            {
+                sourceRoots =
+                    Collections.unmodifiableList( JDiffUtils.getProjectSourceRoots( project, compileSourceRoots ) );
+                SOURCE_ROOTS.put( key, sourceRoots );
+            }
+            return sourceRoots;
+        }
+    }
+
+    /**
+     * The resolved artifacts tell a resolved project from the same project before its dependency resolution, or
+     * resolved again with other versions or files. Dependency resolution sets a new artifact set, so its identity and
+     * size are enough to tell them apart without looking at every artifact.
+     */
+    private static String getArtifactsKey( Set<?> artifacts )
+    {
+        return Integer.toHexString( System.identityHashCode( artifacts ) ) + ':' + artifacts.size();
+    }
+
+    private static String getProjectKey( String buildKey, MavenProject project )
+    {
+        String key = project.getId();
+        if ( project.getFile() != null )
+        {
+            key += '@' + project.getFile().getAbsolutePath() + ':' + getPomHash( buildKey, project.getFile() );
+        }
+        return key;
+    }
+
+    private static String getPomHash( String buildKey, File pom )
+    {
+        String stamp = pom.getAbsolutePath() + ':' + pom.length() + ':' + pom.lastModified();
+        synchronized ( PROJECTS )
+        {
+            checkBuild( buildKey );
+            String hash = POM_HASHES.get( stamp );
+            if ( hash != null )
+            {
+                return hash;
+            }
+        }
+
+        String hash;
+        try
+        {
+            hash = new Fingerprint().addContent( pom ).getHash();
+        }
+        catch ( IOException e )
+        {
+            // an unreadable POM can't be built either, it only needs a key of its own
+            hash = stamp;
+        }
+        synchronized ( PROJECTS )
+        {
+            if ( buildKey.equals( cacheBuildKey ) )
+            {
+                POM_HASHES.put( stamp, hash );
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * The classpath collected from an artifact set, which is held to tell it from another set with the same identity
+     * hash.
+     */
+    private static final class Classpath
+    {
+        private final Set<?> artifacts;
+
+        private final List<String> elements;
+
+        Classpath( Set<?> artifacts, List<String> elements )
+        {
+            this.artifacts = artifacts;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on {@link #PROJECTS}.
+     */
+    private static void checkBuild( String buildKey )
+    {
+        if ( !buildKey.equals( cacheBuildKey ) )
+        {
+            // a new build in the same JVM, its projects may have changed
+            PROJECTS.clear();
+            CLASSPATHS.clear();
+            SOURCE_ROOTS.clear();
+            POM_HASHES.clear();
+            cacheBuildKey = buildKey;
+        }
+    }
+}
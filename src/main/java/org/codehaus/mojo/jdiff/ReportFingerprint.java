@@ -0,0 +1,93 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * The {@link Fingerprint} of the input a report was generated from. A report whose stored fingerprint matches the one
+ * of the current input doesn't need to be generated again.
+ */
+public class ReportFingerprint
+{
+    private final File file;
+
+    private final File report;
+
+    /**
+     * The constructor
+     *
+     * @param file the file storing the fingerprint
+     * @param report the main page of the report, which must exist for the report to be up to date
+     */
+    public ReportFingerprint( File file, File report )
+    {
+        this.file = file;
+        this.report = report;
+    }
+
+    /**
+     * @return the file storing the fingerprint
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @param key the fingerprint of the current input
+     * @return {@code true} if the report exists and was generated from the same input
+     * @throws IOException if the stored fingerprint can't be read
+     */
+    public boolean isUpToDate( String key )
+        throws IOException
+    {
+        if ( !file.isFile() || !report.isFile() )
+        {
+            return false;
+        }
+        return key.equals( FileUtils.fileRead( file ).trim() );
+    }
+
+    /**
+     * Store the fingerprint of the input of a report which was generated successfully.
+     *
+     * @param key the fingerprint of the input
+     * @throws IOException if the fingerprint can't be written
+     */
+    public void store( String key )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), key );
+    }
+
+    /**
+     * Forget the stored fingerprint, before generating the report again. A run which fails halfway leaves a report
+     * which doesn't match the stored fingerprint.
+     */
+    public void delete()
+    {
+        file.delete();
+    }
+}
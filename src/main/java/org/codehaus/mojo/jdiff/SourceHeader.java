@@ -0,0 +1,301 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The start of a Java source: the declared package and whether a public type is declared. Only the first
+ * {@value #HEADER_SIZE} bytes are read, which is enough for the license, package, imports and first type declaration
+ * of almost every source.
+ */
+public class SourceHeader
+{
+    static final int HEADER_SIZE = 8192;
+
+    private static final Pattern EXPORTS = Pattern.compile( "\\bexports\\s+([\\w.]+)\\s*;" );
+
+    private String packageName;
+
+    private boolean publicType;
+
+    /**
+     * Whether the source was read and parsed completely, so the absence of a public type is certain
+     */
+    private boolean complete;
+
+    /**
+     * Read the header of a source.
+     *
+     * @param source the source file
+     * @return the header
+     * @throws IOException if the source can't be read
+     */
+    public static SourceHeader read( File source )
+        throws IOException
+    {
+        byte[] bytes = new byte[HEADER_SIZE];
+        int length = 0;
+        InputStream in = new FileInputStream( source );
+        try
+        {
+            for ( int n = 0; n != -1 && length < bytes.length; n = in.read( bytes, length, bytes.length - length ) )
+            {
+                length += n;
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        SourceHeader header = new SourceHeader();
+        header.parse( stripComments( new String( bytes, 0, length, "UTF-8" ) ), length < bytes.length );
+        return header;
+    }
+
+    /**
+     * Read the packages exported by a module declaration to all modules. Packages only exported to specific modules
+     * aren't part of the public API.
+     *
+     * @param moduleInfo the <code>module-info.java</code> file
+     * @return the exported packages
+     * @throws IOException if the module declaration can't be read
+     */
+    public static Set<String> readExports( File moduleInfo )
+        throws IOException
+    {
+        Set<String> exports = new HashSet<String>();
+        Matcher matcher = EXPORTS.matcher( stripComments( FileUtils.fileRead( moduleInfo, "UTF-8" ) ) );
+        while ( matcher.find() )
+        {
+            exports.add( matcher.group( 1 ) );
+        }
+        return exports;
+    }
+
+    /**
+     * @return the declared package, the empty string for the default package, or {@code null} if the declaration
+     *         wasn't found within the header
+     */
+    public String getPackageName()
+    {
+        return packageName;
+    }
+
+    /**
+     * @return {@code true} if a public type is declared, or if that's unknown because the source is longer than the
+     *         header or couldn't be parsed
+     */
+    public boolean mayDeclarePublicType()
+    {
+        return publicType || !complete;
+    }
+
+    private void parse( String code, boolean wholeSource )
+    {
+        boolean isPublic = false;
+        int i = 0;
+        while ( i < code.length() )
+        {
+            char c = code.charAt( i );
+            if ( Character.isWhitespace( c ) || c == '\uFEFF' || c == ';' )
+            {
+                i++;
+            }
+            else if ( c == '@' )
+            {
+                i = skipWhitespace( code, i + 1 );
+                int end = readName( code, i );
+                if ( "interface".equals( code.substring( i, end ) ) )
+                {
+                    i = parseType( code, end, isPublic );
+                    isPublic = false;
+                    continue;
+                }
+                i = skipWhitespace( code, end );
+                if ( i < code.length() && code.charAt( i ) == '(' )
+                {
+                    i = skipParentheses( code, i );
+                }
+            }
+            else if ( Character.isJavaIdentifierStart( c ) )
+            {
+                int end = readName( code, i );
+                String word = code.substring( i, end );
+                if ( "package".equals( word ) || "import".equals( word ) )
+                {
+                    int semicolon = code.indexOf( ';', end );
+                    if ( semicolon < 0 )
+                    {
+                        return;
+                    }
+                    if ( "package".equals( word ) )
+                    {
+                        packageName = code.substring( end, semicolon ).replaceAll( "\\s", "" );
+                    }
+                    i = semicolon + 1;
+                }
+                else if ( "class".equals( word ) || "interface".equals( word ) || "enum".equals( word )
+                    || "record".equals( word ) )
+                {
+                    i = parseType( code, end, isPublic );
+                    isPublic = false;
+                }
+                else
+                {
+                    isPublic |= "public".equals( word );
+                    i = end;
+                }
+            }
+            else
+            {
+                // not a declaration this parser understands
+                return;
+            }
+        }
+        complete = wholeSource;
+    }
+
+    /**
+     * Skips the body of a type declaration, unless the type is public.
+     *
+     * @return the end of the declaration, or the end of {@code code} when done parsing
+     */
+    private int parseType( String code, int start, boolean isPublic )
+    {
+        if ( packageName == null )
+        {
+            packageName = "";
+        }
+        publicType = isPublic;
+        int body = code.indexOf( '{', start );
+        if ( isPublic || body < 0 )
+        {
+            return code.length();
+        }
+        int depth = 0;
+        for ( int i = body; i < code.length(); i++ )
+        {
+            char c = code.charAt( i );
+            if ( c == '{' )
+            {
+                depth++;
+            }
+            else if ( c == '}' && --depth == 0 )
+            {
+                return i + 1;
+            }
+        }
+        return code.length();
+    }
+
+    private static int skipWhitespace( String code, int start )
+    {
+        int i = start;
+        while ( i < code.length() && Character.isWhitespace( code.charAt( i ) ) )
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the end of the possibly qualified name starting at {@code start}
+     */
+    private static int readName( String code, int start )
+    {
+        int i = start;
+        while ( i < code.length() && ( Character.isJavaIdentifierPart( code.charAt( i ) ) || code.charAt( i ) == '.' ) )
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipParentheses( String code, int start )
+    {
+        int depth = 0;
+        for ( int i = start; i < code.length(); i++ )
+        {
+            char c = code.charAt( i );
+            if ( c == '(' )
+            {
+                depth++;
+            }
+            else if ( c == ')' && --depth == 0 )
+            {
+                return i + 1;
+            }
+        }
+        return code.length();
+    }
+
+    /**
+     * Replace comments by a space and empty the string and character literals, so neither can be mistaken for
+     * declarations.
+     */
+    static String stripComments( String code )
+    {
+        StringBuffer result = new StringBuffer( code.length() );
+        int i = 0;
+        while ( i < code.length() )
+        {
+            char c = code.charAt( i );
+            if ( c == '/' && code.startsWith( "//", i ) )
+            {
+                int end = code.indexOf( '\n', i );
+                i = end < 0 ? code.length() : end;
+                result.append( ' ' );
+            }
+            else if ( c == '/' && code.startsWith( "/*", i ) )
+            {
+                int end = code.indexOf( "*/", i + 2 );
+                i = end < 0 ? code.length() : end + 2;
+                result.append( ' ' );
+            }
+            else if ( c == '"' || c == '\'' )
+            {
+                int end = i + 1;
+                while ( end < code.length() && code.charAt( end ) != c )
+                {
+                    end += code.charAt( end ) == '\\' ? 2 : 1;
+                }
+                result.append( c ).append( c );
+                i = end + 1;
+            }
+            else
+            {
+                result.append( c );
+                i++;
+            }
+        }
+        return result.toString();
+    }
+}
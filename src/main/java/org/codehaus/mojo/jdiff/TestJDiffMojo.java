@@ -30,12 +30,13 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
 import org.apache.maven.reporting.MavenReport;
 
 /**
  * Generates an API difference report between Java sources of two SCM versions
  */
-@Mojo( name = "test-jdiff", requiresDependencyResolution = ResolutionScope.TEST )
+@Mojo( name = "test-jdiff", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true )
 @Execute( phase = LifecyclePhase.GENERATE_TEST_SOURCES )
 public class TestJDiffMojo
     extends AbstractJDiffMojo
@@ -54,12 +55,18 @@ public class TestJDiffMojo
     @Parameter( property = "destDir", defaultValue = "testapidocs" )
     private String destDir;
 
-    @SuppressWarnings( "unchecked" )
     protected List<String> getCompileSourceRoots()
     {
-        return ( getProject().getTestCompileSourceRoots() == null
+        return getCompileSourceRoots( getProject() );
+    }
+    
+    @SuppressWarnings( "unchecked" )
+    @Override
+    protected List<String> getCompileSourceRoots( MavenProject p )
+    {
+        return ( p.getTestCompileSourceRoots() == null
             ? Collections.<String>emptyList()
-            : new LinkedList<String>( getProject().getTestCompileSourceRoots() ) );
+            : new LinkedList<String>( p.getTestCompileSourceRoots() ) );
     }
     
     public void setDestDir( String destDir )
@@ -76,7 +83,13 @@ public class TestJDiffMojo
     @Override
     protected String getBuildOutputDirectory()
     {
-        return getProject().getBuild().getTestOutputDirectory();
+        return getBuildOutputDirectory( getProject().getBuild() );
+    }
+    
+    @Override
+    protected String getBuildOutputDirectory( Build build )
+    {
+        return build.getTestOutputDirectory();
     }
     
     @Override
@@ -85,10 +98,29 @@ public class TestJDiffMojo
         return build.getTestSourceDirectory();
     }
     
+    @Override
+    protected String getDescriptorClassifier()
+    {
+        // the descriptor goal only covers the main sources
+        return null;
+    }
+    
+    @Override
+    protected String getSourcesClassifier()
+    {
+        return "test-sources";
+    }
+    
+    @Override
+    protected String getClassesClassifier()
+    {
+        return "tests";
+    }
+    
     @Override
     protected String getApiName( String lhsTag )
     {
         return lhsTag + "-test";
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
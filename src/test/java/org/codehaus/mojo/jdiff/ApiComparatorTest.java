@@ -0,0 +1,284 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApiComparatorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testAddedRemovedAndChangedMembers()
+    {
+        ApiDiff diff = new ApiComparator().compare( createOldApi(), createNewApi() );
+
+        List<String> expected = new ArrayList<String>();
+        expected.add( "- package org.example.removed" );
+        expected.add( "+ package org.example.added" );
+        expected.add( "org.example: - class Gone" );
+        expected.add( "org.example: + class Fresh" );
+        expected.add( "org.example.Service: superclass changed from java.lang.Object to org.example.Base" );
+        expected.add( "org.example.Service: interface java.io.Serializable added" );
+        expected.add( "org.example.Service: - CONSTRUCTOR (int)" );
+        expected.add( "org.example.Service: + CONSTRUCTOR (long)" );
+        expected.add( "org.example.Service: - METHOD stop()" );
+        expected.add( "org.example.Service: + METHOD restart(boolean)" );
+        expected.add( "org.example.Service.start(java.lang.String): return type changed from void to boolean" );
+        expected.add( "org.example.Service.start(java.lang.String): exception java.io.IOException added" );
+        expected.add( "org.example.Service.start(java.lang.String): now deprecated" );
+        expected.add( "org.example.Service.TIMEOUT: value changed from 10 to 20" );
+        expected.add( "org.example.Service.name: now final" );
+        expected.add( "org.example.Service.name: visibility changed from public to protected" );
+        Collections.sort( expected );
+
+        assertEquals( expected, describe( diff ) );
+    }
+
+    @Test
+    public void testSameApi()
+    {
+        assertTrue( new ApiComparator().compare( createOldApi(), createOldApi() ).isEmpty() );
+    }
+
+    @Test
+    public void testDescriptorRoundTrip()
+        throws Exception
+    {
+        Api api = createNewApi();
+        File descriptor = ApiWriter.write( api, temp.getRoot() );
+        Api read = ApiReader.read( descriptor );
+
+        assertEquals( "new", read.getName() );
+        assertTrue( new ApiComparator().compare( api, read ).isEmpty() );
+
+        ApiMember timeout = read.findPackage( "org.example" ).findClass( "Service" ).getFields().get( 0 );
+        assertEquals( "TIMEOUT", timeout.getName() );
+        assertEquals( "20", timeout.getValue() );
+        assertEquals( describe( new ApiComparator().compare( createOldApi(), api ) ),
+                      describe( new ApiComparator().compare( createOldApi(), read ) ) );
+    }
+
+    @Test
+    public void testStreamingOutOfOrder()
+        throws Exception
+    {
+        Api oldApi = createOldApi();
+        Api newApi = createNewApi();
+        for ( int i = 0; i < 50; i++ )
+        {
+            addService( oldApi.getPackage( "org.example.p" + i ), "Service", false );
+            addService( newApi.getPackage( "org.example.p" + i ), "Service", i % 3 == 0 );
+        }
+        File oldDescriptor = ApiWriter.write( oldApi, temp.newFolder( "old" ) );
+        File newDescriptor = temp.newFile( "new.xml" );
+        writeReversed( newApi, newDescriptor );
+
+        ApiDiff streamed =
+            new ApiComparator().compare( new ApiReader( oldDescriptor ), new ApiReader( newDescriptor ) );
+
+        assertEquals( describe( new ApiComparator().compare( oldApi, newApi ) ), describe( streamed ) );
+        assertEquals( 1 + 17, streamed.getChangedPackages().size() );
+    }
+
+    @Test
+    public void testStreamingInParallel()
+        throws Exception
+    {
+        Api oldApi = createOldApi();
+        Api newApi = createNewApi();
+        for ( int i = 0; i < 50; i++ )
+        {
+            addService( oldApi.getPackage( "org.example.p" + i ), "Service", false );
+            addService( newApi.getPackage( "org.example.p" + i ), "Service", i % 3 == 0 );
+        }
+        File oldDescriptor = ApiWriter.write( oldApi, temp.newFolder( "old" ) );
+        File newDescriptor = temp.newFile( "new.xml" );
+        writeReversed( newApi, newDescriptor );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            ApiDiff streamed =
+                new ApiComparator( executor, 2 ).compare( new ApiReader( oldDescriptor ),
+                                                          new ApiReader( newDescriptor ) );
+            ApiDiff inMemory = new ApiComparator().compare( oldApi, newApi );
+
+            assertEquals( describe( inMemory ), describe( streamed ) );
+            assertEquals( 1 + 17, streamed.getChangedPackages().size() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Write the packages in reverse order, so the comparator has to hold packages until the other side reaches them.
+     */
+    private static void writeReversed( Api api, File descriptor )
+        throws Exception
+    {
+        List<ApiPackage> packages = new ArrayList<ApiPackage>( api.getPackages() );
+        Collections.reverse( packages );
+        ApiWriter writer = new ApiWriter( descriptor, api.getName() );
+        for ( ApiPackage apiPackage : packages )
+        {
+            writer.writePackage( apiPackage );
+        }
+        writer.close();
+    }
+
+    static Api createOldApi()
+    {
+        Api api = new Api( "old" );
+        ApiPackage example = api.getPackage( "org.example" );
+        addService( example, "Service", false );
+        example.addClass( new ApiClass( "Gone", false ) );
+        api.getPackage( "org.example.removed" ).addClass( new ApiClass( "Removed", true ) );
+        return api;
+    }
+
+    static Api createNewApi()
+    {
+        Api api = new Api( "new" );
+        ApiPackage example = api.getPackage( "org.example" );
+        addService( example, "Service", true );
+        example.addClass( new ApiClass( "Fresh", false ) );
+        api.getPackage( "org.example.added" ).addClass( new ApiClass( "Added", true ) );
+        return api;
+    }
+
+    /**
+     * Add a class with a member of every kind, {@code changed} alters all of them.
+     */
+    static void addService( ApiPackage apiPackage, String name, boolean changed )
+    {
+        ApiClass service = new ApiClass( name, false );
+        service.setSuperclass( changed ? "org.example.Base" : "java.lang.Object" );
+        if ( changed )
+        {
+            service.getInterfaces().add( "java.io.Serializable" );
+        }
+
+        ApiMember constructor = new ApiMember( ApiMember.Kind.CONSTRUCTOR, name );
+        constructor.addParameter( "size", changed ? "long" : "int" );
+        service.addMember( constructor );
+
+        ApiMember start = new ApiMember( ApiMember.Kind.METHOD, "start" );
+        start.setType( changed ? "boolean" : "void" );
+        start.addParameter( "name", "java.lang.String" );
+        if ( changed )
+        {
+            start.getExceptions().add( "java.io.IOException" );
+            start.setDeprecated( ApiElement.DEPRECATED );
+        }
+        service.addMember( start );
+
+        ApiMember other = new ApiMember( ApiMember.Kind.METHOD, changed ? "restart" : "stop" );
+        other.setType( "void" );
+        if ( changed )
+        {
+            other.addParameter( "force", "boolean" );
+        }
+        service.addMember( other );
+
+        ApiMember timeout = new ApiMember( ApiMember.Kind.FIELD, "TIMEOUT" );
+        timeout.setType( "int" );
+        timeout.setModifier( "static", true );
+        timeout.setModifier( "final", true );
+        timeout.setValue( changed ? "20" : "10" );
+        service.addMember( timeout );
+
+        ApiMember field = new ApiMember( ApiMember.Kind.FIELD, "name" );
+        field.setType( "java.lang.String" );
+        field.setModifier( "final", changed );
+        field.setVisibility( changed ? "protected" : "public" );
+        service.addMember( field );
+
+        apiPackage.addClass( service );
+    }
+
+    /**
+     * @return a line per difference, sorted, so diffs compare regardless of the order they were found in
+     */
+    static List<String> describe( ApiDiff diff )
+    {
+        List<String> lines = new ArrayList<String>();
+        for ( ApiPackage apiPackage : diff.getRemovedPackages() )
+        {
+            lines.add( "- package " + apiPackage.getName() );
+        }
+        for ( ApiPackage apiPackage : diff.getAddedPackages() )
+        {
+            lines.add( "+ package " + apiPackage.getName() );
+        }
+        for ( ApiDiff.PackageDiff packageDiff : diff.getChangedPackages() )
+        {
+            String packageName = packageDiff.getName();
+            for ( ApiClass apiClass : packageDiff.getRemovedClasses() )
+            {
+                lines.add( packageName + ": - class " + apiClass.getName() );
+            }
+            for ( ApiClass apiClass : packageDiff.getAddedClasses() )
+            {
+                lines.add( packageName + ": + class " + apiClass.getName() );
+            }
+            for ( ApiDiff.ClassDiff classDiff : packageDiff.getChangedClasses() )
+            {
+                String className = packageName + "." + classDiff.getName();
+                for ( String change : classDiff.getChanges() )
+                {
+                    lines.add( className + ": " + change );
+                }
+                for ( ApiMember member : classDiff.getRemovedMembers() )
+                {
+                    lines.add( className + ": - " + member.getKind() + " " + member.getSignature() );
+                }
+                for ( ApiMember member : classDiff.getAddedMembers() )
+                {
+                    lines.add( className + ": + " + member.getKind() + " " + member.getSignature() );
+                }
+                for ( ApiDiff.MemberDiff memberDiff : classDiff.getChangedMembers() )
+                {
+                    for ( String change : memberDiff.getChanges() )
+                    {
+                        lines.add( className + "." + memberDiff.getNewMember().getSignature() + ": " + change );
+                    }
+                }
+            }
+        }
+        Collections.sort( lines );
+        return lines;
+    }
+}
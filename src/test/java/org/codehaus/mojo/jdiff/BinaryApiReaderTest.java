@@ -0,0 +1,181 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryApiReaderTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Api api;
+
+    private File xml;
+
+    private File binary;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        api = ApiComparatorTest.createNewApi();
+        ApiClass inner = new ApiClass( "Service.Inner", true );
+        inner.setDoc( "An inner interface with <b>markup</b> and non-ASCII text: \u00e9" );
+        api.getPackage( "org.example" ).addClass( inner );
+        api.getPackage( "org.example" ).setDoc( "The example package" );
+        for ( int i = 0; i < 20; i++ )
+        {
+            ApiComparatorTest.addService( api.getPackage( "org.example.p" + i ), "Service", i % 2 == 0 );
+        }
+
+        xml = ApiWriter.write( api, temp.newFolder( "xml" ) );
+        binary = BinaryApiWriter.write( ApiReader.read( xml ), temp.newFolder( "binary" ) );
+    }
+
+    @Test
+    public void testReadBack()
+        throws Exception
+    {
+        BinaryApiReader reader = new BinaryApiReader( binary );
+        assertEquals( "new", reader.getApiName() );
+        assertEquals( "new." + BinaryApiWriter.EXTENSION, binary.getName() );
+
+        Api read = new Api( reader.getApiName() );
+        for ( ApiPackage apiPackage = reader.nextPackage(); apiPackage != null; apiPackage = reader.nextPackage() )
+        {
+            read.getPackage( apiPackage.getName() ).setDoc( apiPackage.getDoc() );
+            for ( ApiClass apiClass : apiPackage.getClasses() )
+            {
+                read.getPackage( apiPackage.getName() ).addClass( apiClass );
+            }
+        }
+        reader.close();
+
+        assertTrue( new ApiComparator().compare( api, read ).isEmpty() );
+        assertEquals( "The example package", read.findPackage( "org.example" ).getDoc() );
+    }
+
+    @Test
+    public void testFind()
+        throws Exception
+    {
+        BinaryApiReader reader = new BinaryApiReader( binary );
+        assertEquals( api.getPackages().size(), reader.getPackageNames().size() );
+        assertEquals( "org.example", reader.getPackageNames().get( 0 ) );
+
+        ApiPackage example = reader.findPackage( "org.example" );
+        assertEquals( 3, example.getClasses().size() );
+        assertNull( reader.findPackage( "org.missing" ) );
+        assertNull( reader.findPackage( "org.example.p" ) );
+
+        ApiClass service = reader.findClass( "org.example.Service" );
+        assertEquals( "org.example.Base", service.getSuperclass() );
+        assertEquals( Arrays.asList( "java.io.Serializable" ), service.getInterfaces() );
+        assertEquals( 1, service.getConstructors().size() );
+        assertEquals( 2, service.getMethods().size() );
+        assertEquals( 2, service.getFields().size() );
+        assertTrue( new ApiComparator().compareClass( api.findPackage( "org.example" ).findClass( "Service" ),
+                                                      service ).isEmpty() );
+
+        ApiMember timeout = null;
+        for ( ApiMember field : service.getFields() )
+        {
+            if ( "TIMEOUT".equals( field.getName() ) )
+            {
+                timeout = field;
+            }
+        }
+        assertEquals( "20", timeout.getValue() );
+        assertTrue( timeout.hasModifier( "static" ) );
+
+        ApiClass inner = reader.findClass( "org.example.Service.Inner" );
+        assertTrue( inner.isInterface() );
+        assertEquals( "An inner interface with <b>markup</b> and non-ASCII text: \u00e9", inner.getDoc() );
+
+        assertNull( reader.findClass( "org.example.Missing" ) );
+        assertNull( reader.findClass( "Service" ) );
+        assertEquals( "Service", reader.findClass( "org.example.p19.Service" ).getName() );
+    }
+
+    @Test
+    public void testSameAsXml()
+        throws Exception
+    {
+        ApiReader xmlReader = new ApiReader( xml );
+        BinaryApiReader binaryReader = new BinaryApiReader( binary );
+        try
+        {
+            assertTrue( new ApiComparator().compare( xmlReader, binaryReader ).isEmpty() );
+        }
+        finally
+        {
+            xmlReader.close();
+            binaryReader.close();
+        }
+
+        Api fromXml = ApiReader.read( xml );
+        Api old = ApiComparatorTest.createOldApi();
+        ApiDiff expected = new ApiComparator().compare( old, fromXml );
+        File oldBinary = BinaryApiWriter.write( old, temp.newFolder( "old" ) );
+        ApiDiff actual = new ApiComparator().compare( new BinaryApiReader( oldBinary ), new BinaryApiReader( binary ) );
+        assertEquals( ApiComparatorTest.describe( expected ), ApiComparatorTest.describe( actual ) );
+    }
+
+    @Test
+    public void testNoBinaryDescriptor()
+        throws Exception
+    {
+        try
+        {
+            new BinaryApiReader( xml );
+            fail( "XML descriptor read as binary descriptor" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+
+        File empty = temp.newFile( "empty.api" );
+        FileUtils.fileWrite( empty.getAbsolutePath(), "" );
+        try
+        {
+            new BinaryApiReader( empty );
+            fail( "Empty file read as binary descriptor" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+}
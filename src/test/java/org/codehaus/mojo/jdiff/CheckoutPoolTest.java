@@ -0,0 +1,270 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckoutPoolTest
+{
+    private static final long HOUR = 3600000L;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testNormalize()
+    {
+        assertEquals( "scm:git:https://example.org/repo.git",
+                      CheckoutPool.normalize( " scm:GIT:https://example.org/repo.git// " ) );
+        assertEquals( "scm:svn:https://example.org/Trunk",
+                      CheckoutPool.normalize( "scm:svn:https://example.org/Trunk" ) );
+    }
+
+    @Test
+    public void testGetEntry()
+    {
+        CheckoutPool pool = createPool( Long.MAX_VALUE, Long.MAX_VALUE );
+        File entry = pool.getEntry( "scm:git:https://example.org/repo.git", "1.0", "**/pom.xml" );
+        assertEquals( temp.getRoot(), entry.getParentFile() );
+        assertTrue( entry.getName().startsWith( "1.0-" ) );
+        assertEquals( entry, pool.getEntry( "scm:Git:https://example.org/repo.git/", "1.0", "**/pom.xml" ) );
+        assertFalse( entry.equals( pool.getEntry( "scm:git:https://example.org/repo.git", "1.1", "**/pom.xml" ) ) );
+        assertFalse( entry.equals( pool.getEntry( "scm:git:https://example.org/repo.git", "1.0", null ) ) );
+    }
+
+    @Test
+    public void testMarkComplete()
+        throws Exception
+    {
+        CheckoutPool pool = createPool( Long.MAX_VALUE, Long.MAX_VALUE );
+        File entry = pool.getEntry( "scm:git:https://example.org/repo.git", "1.0", null );
+        assertFalse( pool.isComplete( entry ) );
+        FileLock lock = pool.lockExclusive( entry );
+        try
+        {
+            entry.mkdirs();
+            FileUtils.fileWrite( new File( entry, "pom.xml" ).getAbsolutePath(), "<project/>" );
+            assertFalse( pool.isComplete( entry ) );
+            pool.markComplete( entry );
+            assertTrue( pool.isComplete( entry ) );
+
+            pool.invalidate( entry );
+            assertFalse( pool.isComplete( entry ) );
+            assertFalse( entry.exists() );
+        }
+        finally
+        {
+            pool.release( lock );
+        }
+    }
+
+    @Test
+    public void testEvictExpiredEntries()
+        throws Exception
+    {
+        CheckoutPool pool = createPool( 24 * HOUR, Long.MAX_VALUE );
+        File expired = createEntry( pool, "1.0", 100, 25 );
+        File recent = createEntry( pool, "1.1", 100, 23 );
+
+        pool.evict();
+
+        assertFalse( expired.exists() );
+        assertFalse( pool.isComplete( expired ) );
+        assertTrue( pool.isComplete( recent ) );
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsedEntries()
+        throws Exception
+    {
+        CheckoutPool pool = createPool( Long.MAX_VALUE, 2500 );
+        File oldest = createEntry( pool, "1.0", 1000, 3 );
+        File older = createEntry( pool, "1.1", 1000, 2 );
+        File latest = createEntry( pool, "1.2", 1000, 1 );
+
+        pool.evict();
+
+        assertFalse( oldest.exists() );
+        assertTrue( pool.isComplete( older ) );
+        assertTrue( pool.isComplete( latest ) );
+    }
+
+    @Test
+    public void testEntriesInUseAreKept()
+        throws Exception
+    {
+        CheckoutPool pool = createPool( HOUR, 0 );
+        File used = createEntry( pool, "1.0", 100, 2 );
+        File unused = createEntry( pool, "1.1", 100, 2 );
+        pool.use( used );
+
+        pool.evict();
+
+        assertTrue( pool.isComplete( used ) );
+        assertFalse( unused.exists() );
+    }
+
+    @Test
+    public void testLockedEntriesAreKept()
+        throws Exception
+    {
+        CheckoutPool pool = createPool( HOUR, 0 );
+        File entry = createEntry( pool, "1.0", 100, 2 );
+
+        FileLock lock = pool.lockExclusive( entry );
+        try
+        {
+            // another build is checking the entry out
+            pool.evict();
+            assertTrue( pool.isComplete( entry ) );
+        }
+        finally
+        {
+            pool.release( lock );
+        }
+
+        pool.evict();
+        assertFalse( entry.exists() );
+    }
+
+    @Test
+    public void testUseWaitsForCheckout()
+        throws Exception
+    {
+        final CheckoutPool pool = createPool( HOUR, 0 );
+        final File entry = pool.getEntry( "scm:git:https://example.org/repo.git", "1.0", null );
+        File other = createEntry( pool, "1.1", 100, 2 );
+
+        final List<Exception> failures = Collections.synchronizedList( new ArrayList<Exception>() );
+        Thread user = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    pool.use( entry );
+                }
+                catch ( Exception e )
+                {
+                    failures.add( e );
+                }
+            }
+        };
+        FileLock lock = pool.lockExclusive( entry );
+        try
+        {
+            // another thread checks the entry out
+            user.start();
+            user.join( 500 );
+            assertTrue( user.isAlive() );
+
+            // other entries can be used meanwhile
+            pool.use( other );
+            entry.mkdirs();
+            FileUtils.fileWrite( new File( entry, "pom.xml" ).getAbsolutePath(), "<project/>" );
+            pool.markComplete( entry );
+        }
+        finally
+        {
+            pool.release( lock );
+        }
+        user.join( 10000 );
+        assertFalse( user.isAlive() );
+        assertEquals( Collections.emptyList(), failures );
+
+        assertTrue( new File( temp.getRoot(), entry.getName() + ".complete" )
+            .setLastModified( System.currentTimeMillis() - 2 * HOUR ) );
+        pool.evict();
+        assertTrue( pool.isComplete( entry ) );
+        assertTrue( pool.isComplete( other ) );
+    }
+
+    @Test
+    public void testNewBuildReleasesEntries()
+        throws Exception
+    {
+        CheckoutPool pool = createPool( HOUR, 0 );
+        File entry = createEntry( pool, "1.0", 100, 2 );
+        pool.use( entry );
+        pool.evict();
+        assertTrue( pool.isComplete( entry ) );
+
+        // the next build in the same JVM uses another entry only
+        CheckoutPool next = createPool( "next", HOUR, 0 );
+        File other = createEntry( next, "1.1", 100, 0 );
+        next.use( other );
+        next.evict();
+        assertFalse( entry.exists() );
+        assertTrue( next.isComplete( other ) );
+    }
+
+    private CheckoutPool createPool( long maxAge, long maxSize )
+    {
+        return createPool( temp.getRoot().getPath(), maxAge, maxSize );
+    }
+
+    private CheckoutPool createPool( String buildKey, long maxAge, long maxSize )
+    {
+        return new CheckoutPool( buildKey, temp.getRoot(), maxAge, maxSize, new SystemStreamLog() );
+    }
+
+    /**
+     * @return a complete entry holding a file of {@code size} bytes, last used {@code hours} ago
+     */
+    private File createEntry( CheckoutPool pool, String version, int size, int hours )
+        throws IOException
+    {
+        File entry = pool.getEntry( "scm:git:https://example.org/repo.git", version, null );
+        FileLock lock = pool.lockExclusive( entry );
+        try
+        {
+            StringBuffer content = new StringBuffer();
+            while ( content.length() < size )
+            {
+                content.append( 'x' );
+            }
+            entry.mkdirs();
+            FileUtils.fileWrite( new File( entry, "pom.xml" ).getAbsolutePath(), content.toString() );
+            pool.markComplete( entry );
+        }
+        finally
+        {
+            pool.release( lock );
+        }
+        assertTrue( new File( temp.getRoot(), entry.getName() + ".complete" )
+            .setLastModified( System.currentTimeMillis() - hours * HOUR ) );
+        return entry;
+    }
+}
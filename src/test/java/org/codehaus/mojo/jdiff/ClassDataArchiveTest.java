@@ -0,0 +1,118 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassDataArchiveTest
+{
+    private static final String DUMP_OPTION = "-XX:ArchiveClassesAtExit=";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private String javadoc;
+
+    @Before
+    public void setUp()
+    {
+        File javaHome = new File( System.getProperty( "java.home" ) );
+        File executable = new File( javaHome, "bin/javadoc" );
+        Assume.assumeTrue( executable.isFile() );
+        javadoc = executable.getAbsolutePath();
+    }
+
+    @Test
+    public void testFirstPublishedArchiveIsKept()
+        throws Exception
+    {
+        ClassDataArchive first = createArchive();
+        ClassDataArchive second = createArchive();
+        File firstDump = getDumpFile( first.getJvmOptions() );
+        File secondDump = getDumpFile( second.getJvmOptions() );
+        FileUtils.fileWrite( firstDump.getAbsolutePath(), "first" );
+        FileUtils.fileWrite( secondDump.getAbsolutePath(), "second" );
+
+        first.forkCompleted( true );
+        second.forkCompleted( true );
+
+        File archive = getArchive( createArchive().getJvmOptions() );
+        assertEquals( "first", FileUtils.fileRead( archive ) );
+        assertFalse( firstDump.exists() );
+        assertFalse( secondDump.exists() );
+    }
+
+    @Test
+    public void testFailedForkIsNotPublished()
+        throws Exception
+    {
+        ClassDataArchive archive = createArchive();
+        File dump = getDumpFile( archive.getJvmOptions() );
+        FileUtils.fileWrite( dump.getAbsolutePath(), "incomplete" );
+
+        archive.forkCompleted( false );
+
+        assertFalse( dump.exists() );
+        // the next fork dumps again
+        assertTrue( getDumpFile( createArchive().getJvmOptions() ) != null );
+    }
+
+    private ClassDataArchive createArchive()
+    {
+        List<String> jvmOptions = Collections.emptyList();
+        return new ClassDataArchive( temp.getRoot(), javadoc, "", jvmOptions, new SystemStreamLog() );
+    }
+
+    /**
+     * @return the file the fork dumps its archive to, the test is skipped on JDKs which don't dump dynamic archives
+     */
+    private static File getDumpFile( List<String> jvmOptions )
+    {
+        for ( String option : jvmOptions )
+        {
+            if ( option.startsWith( DUMP_OPTION ) )
+            {
+                return new File( option.substring( DUMP_OPTION.length() ) );
+            }
+        }
+        Assume.assumeTrue( false );
+        return null;
+    }
+
+    private static File getArchive( List<String> jvmOptions )
+    {
+        assertEquals( 1, jvmOptions.size() );
+        return new File( jvmOptions.get( 0 ).substring( "-XX:SharedArchiveFile=".length() ) );
+    }
+}
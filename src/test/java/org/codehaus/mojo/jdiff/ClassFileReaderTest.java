@@ -0,0 +1,344 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassFileReaderTest
+{
+    private static final String SERVICE =
+        "package p;\n"
+            + "public abstract class Service<T> extends java.util.AbstractList<T>\n"
+            + "    implements java.io.Serializable, Comparable<Service<T>>\n"
+            + "{\n"
+            + "    public static final int COUNT = 3;\n"
+            + "    protected transient String name;\n"
+            + "    private int hidden;\n"
+            + "    public Service( String name ) { this.name = name; }\n"
+            + "    public <E extends Exception> java.util.List<String> find( String key, int[] counts, T value )\n"
+            + "        throws java.io.IOException { return null; }\n"
+            + "    public int compareTo( Service<T> other ) { return 0; }\n"
+            + "    @Deprecated protected synchronized void stop() {}\n"
+            + "    void internal() {}\n"
+            + "    public Runnable task() { return new Runnable() { public void run() {} }; }\n"
+            + "    public static class Nested {}\n"
+            + "    public class Inner { public Inner( String label ) {} }\n"
+            + "}\n";
+
+    private static final String CONSTANTS =
+        "package p;\n"
+            + "public class Constants\n"
+            + "{\n"
+            + "    public static final String TEXT = \"a \\\"b\\\"\\n\\u00e9 'c' \\\\\";\n"
+            + "    public static final char CHAR = '\\'';\n"
+            + "    public static final byte BYTE = -3;\n"
+            + "    public static final short SHORT = 300;\n"
+            + "    public static final int INT = 42;\n"
+            + "    public static final long LONG = 5L;\n"
+            + "    public static final float FLOAT = 1.5f;\n"
+            + "    public static final float NAN = Float.NaN;\n"
+            + "    public static final double DOUBLE = 2.5;\n"
+            + "    public static final double INFINITY = Double.NEGATIVE_INFINITY;\n"
+            + "    public static final boolean BOOLEAN = true;\n"
+            + "    public static final Object NONE = null;\n"
+            + "}\n";
+
+    private static final String LEVEL =
+        "package p;\n"
+            + "public enum Level\n"
+            + "{\n"
+            + "    LOW( \"l\" ), HIGH( \"h\" );\n"
+            + "    Level( String code ) {}\n"
+            + "}\n";
+
+    private static final String OUTER =
+        "package p;\n"
+            + "public class Outer\n"
+            + "{\n"
+            + "    public class Holder<T>\n"
+            + "    {\n"
+            + "        public Holder( T value, java.util.List<T> values ) {}\n"
+            + "    }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testClass()
+        throws Exception
+    {
+        ClassFileReader reader = read( compile( SERVICE ), "p/Service", "protected" );
+        assertEquals( "p.Service", reader.getClassName() );
+        assertEquals( "p", reader.getPackageName() );
+        assertNull( reader.getOuterClassName() );
+        assertTrue( reader.isApiClass() );
+
+        ApiClass apiClass = reader.getApiClass();
+        assertEquals( "Service", apiClass.getName() );
+        assertFalse( apiClass.isInterface() );
+        assertTrue( apiClass.hasModifier( "abstract" ) );
+        assertEquals( "java.util.AbstractList", apiClass.getSuperclass() );
+        assertEquals( Arrays.asList( "java.io.Serializable", "java.lang.Comparable" ), apiClass.getInterfaces() );
+    }
+
+    @Test
+    public void testMembers()
+        throws Exception
+    {
+        ApiClass apiClass = read( compile( SERVICE ), "p/Service", "protected" ).getApiClass();
+
+        assertEquals( Arrays.asList( "COUNT", "name" ), getNames( apiClass.getFields() ) );
+        ApiMember count = apiClass.getFields().get( 0 );
+        assertEquals( "int", count.getType() );
+        assertTrue( count.hasModifier( "static" ) );
+        assertTrue( count.hasModifier( "final" ) );
+        ApiMember name = apiClass.getFields().get( 1 );
+        assertEquals( "protected", name.getVisibility() );
+        assertTrue( name.hasModifier( "transient" ) );
+
+        // the bridge method of compareTo is left out, like the package private method
+        assertEquals( Arrays.asList( "find", "compareTo", "stop", "task" ), getNames( apiClass.getMethods() ) );
+        ApiMember find = apiClass.getMethods().get( 0 );
+        assertEquals( "java.util.List", find.getType() );
+        assertEquals( Arrays.asList( "key", "counts", "value" ), find.getParameterNames() );
+        assertEquals( Arrays.asList( "java.lang.String", "int[]", "T" ), find.getParameterTypes() );
+        assertEquals( Arrays.asList( "java.io.IOException" ), find.getExceptions() );
+        assertEquals( Arrays.asList( "p.Service" ), apiClass.getMethods().get( 1 ).getParameterTypes() );
+        ApiMember stop = apiClass.getMethods().get( 2 );
+        assertTrue( stop.isDeprecated() );
+        assertTrue( stop.hasModifier( "synchronized" ) );
+
+        assertEquals( 1, apiClass.getConstructors().size() );
+        assertEquals( "Service", apiClass.getConstructors().get( 0 ).getName() );
+        assertEquals( Arrays.asList( "name" ), apiClass.getConstructors().get( 0 ).getParameterNames() );
+    }
+
+    @Test
+    public void testVisibility()
+        throws Exception
+    {
+        File classes = compile( SERVICE );
+        assertEquals( Arrays.asList( "COUNT", "name" ),
+                      getNames( read( classes, "p/Service", "protected" ).getApiClass().getFields() ) );
+        assertEquals( Arrays.asList( "COUNT" ),
+                      getNames( read( classes, "p/Service", "public" ).getApiClass().getFields() ) );
+        assertEquals( Arrays.asList( "COUNT", "name", "hidden" ),
+                      getNames( read( classes, "p/Service", "private" ).getApiClass().getFields() ) );
+        assertTrue( getNames( read( classes, "p/Service", "package" ).getApiClass().getMethods() )
+            .contains( "internal" ) );
+    }
+
+    @Test
+    public void testNestedClasses()
+        throws Exception
+    {
+        File classes = compile( SERVICE );
+
+        ClassFileReader nested = read( classes, "p/Service$Nested", "protected" );
+        assertEquals( "p.Service.Nested", nested.getClassName() );
+        assertEquals( "p.Service", nested.getOuterClassName() );
+        assertEquals( "Service.Nested", nested.getApiClass().getName() );
+        assertTrue( nested.getApiClass().hasModifier( "static" ) );
+        assertTrue( nested.isApiClass() );
+
+        // the outer instance isn't a parameter of the API
+        ApiMember constructor =
+            read( classes, "p/Service$Inner", "protected" ).getApiClass().getConstructors().get( 0 );
+        assertEquals( "Inner", constructor.getName() );
+        assertEquals( Arrays.asList( "java.lang.String" ), constructor.getParameterTypes() );
+        assertEquals( Arrays.asList( "label" ), constructor.getParameterNames() );
+
+        assertFalse( read( classes, "p/Service$1", "private" ).isApiClass() );
+    }
+
+    @Test
+    public void testPackagePrivateClass()
+        throws Exception
+    {
+        File classes = compile( "package p;\nclass Hidden {}\n" );
+        assertFalse( read( classes, "p/Hidden", "protected" ).isApiClass() );
+        assertTrue( read( classes, "p/Hidden", "package" ).isApiClass() );
+    }
+
+    @Test
+    public void testConstants()
+        throws Exception
+    {
+        ApiClass apiClass = read( compile( CONSTANTS ), "p/Constants", "public" ).getApiClass();
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for ( ApiMember field : apiClass.getFields() )
+        {
+            values.put( field.getName(), field.getValue() );
+        }
+
+        // formatted as Java source, like javadoc does
+        assertEquals( "\"a \\\"b\\\"\\n\\u00e9 \\'c\\' \\\\\"", values.get( "TEXT" ) );
+        assertEquals( "'\\''", values.get( "CHAR" ) );
+        assertEquals( "(byte)-3", values.get( "BYTE" ) );
+        assertEquals( "(short)300", values.get( "SHORT" ) );
+        assertEquals( "42", values.get( "INT" ) );
+        assertEquals( "5L", values.get( "LONG" ) );
+        assertEquals( "1.5f", values.get( "FLOAT" ) );
+        assertEquals( "0f/0", values.get( "NAN" ) );
+        assertEquals( "2.5", values.get( "DOUBLE" ) );
+        assertEquals( "-1d/0", values.get( "INFINITY" ) );
+        assertEquals( "true", values.get( "BOOLEAN" ) );
+        assertNull( values.get( "NONE" ) );
+    }
+
+    @Test
+    public void testEnumConstructor()
+        throws Exception
+    {
+        assertEnumConstructor( compile( LEVEL ) );
+        // the MethodParameters attribute marks the name and ordinal as synthetic
+        assertEnumConstructor( compile( LEVEL, "-parameters" ) );
+    }
+
+    private static void assertEnumConstructor( File classes )
+        throws IOException
+    {
+        ApiClass apiClass = read( classes, "p/Level", "private" ).getApiClass();
+        ApiMember constructor = apiClass.getConstructors().get( 0 );
+        assertEquals( Arrays.asList( "java.lang.String" ), constructor.getParameterTypes() );
+        assertEquals( Arrays.asList( "code" ), constructor.getParameterNames() );
+
+        // the parameter of the implicit valueOf is mandated, but declared all the same
+        for ( ApiMember method : apiClass.getMethods() )
+        {
+            if ( "valueOf".equals( method.getName() ) )
+            {
+                assertEquals( Arrays.asList( "java.lang.String" ), method.getParameterTypes() );
+                return;
+            }
+        }
+        fail( "valueOf is missing" );
+    }
+
+    @Test
+    public void testInnerConstructorParameters()
+        throws Exception
+    {
+        for ( File classes : new File[] { compile( OUTER ), compile( OUTER, "-parameters" ) } )
+        {
+            ApiMember constructor =
+                read( classes, "p/Outer$Holder", "public" ).getApiClass().getConstructors().get( 0 );
+            assertEquals( Arrays.asList( "T", "java.util.List" ), constructor.getParameterTypes() );
+            assertEquals( Arrays.asList( "value", "values" ), constructor.getParameterNames() );
+        }
+
+        ApiMember constructor = read( compile( SERVICE, "-parameters" ), "p/Service$Inner", "protected" ).getApiClass()
+            .getConstructors().get( 0 );
+        assertEquals( Arrays.asList( "java.lang.String" ), constructor.getParameterTypes() );
+        assertEquals( Arrays.asList( "label" ), constructor.getParameterNames() );
+    }
+
+    @Test( expected = IOException.class )
+    public void testNoClassFile()
+        throws Exception
+    {
+        File file = temp.newFile( "Empty.class" );
+        FileUtils.fileWrite( file.getAbsolutePath(), "not a class file" );
+        read( file.getParentFile(), "Empty", "public" );
+    }
+
+    private static List<String> getNames( List<ApiMember> members )
+    {
+        List<String> names = new ArrayList<String>();
+        for ( ApiMember member : members )
+        {
+            names.add( member.getName() );
+        }
+        return names;
+    }
+
+    private static ClassFileReader read( File classes, String internalName, String visibility )
+        throws IOException
+    {
+        ClassFileReader reader = new ClassFileReader( visibility );
+        InputStream in = new FileInputStream( new File( classes, internalName + ".class" ) );
+        try
+        {
+            reader.read( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return reader;
+    }
+
+    /**
+     * Compile a source with the compiler of the running JDK, with debug information and the given options.
+     *
+     * @return the directory of the classes
+     */
+    private File compile( String source, String... options )
+        throws Exception
+    {
+        Matcher matcher = Pattern.compile( "(?:class|enum) (\\w+)" ).matcher( source );
+        assertTrue( matcher.find() );
+        String className = matcher.group( 1 );
+        File sourceFile = new File( temp.newFolder(), className + ".java" );
+        FileUtils.fileWrite( sourceFile.getAbsolutePath(), "UTF-8", source );
+        File classes = temp.newFolder();
+
+        List<String> arguments = new ArrayList<String>();
+        arguments.addAll( Arrays.asList( "-g", "-encoding", "UTF-8", "-d", classes.getAbsolutePath() ) );
+        arguments.addAll( Arrays.asList( options ) );
+        arguments.add( sourceFile.getAbsolutePath() );
+
+        // javax.tools is only available from Java 6, the plugin itself runs on Java 5
+        Object compiler = Class.forName( "javax.tools.ToolProvider" ).getMethod( "getSystemJavaCompiler" )
+            .invoke( null );
+        Assume.assumeNotNull( compiler );
+        Method run = Class.forName( "javax.tools.Tool" ).getMethod( "run", InputStream.class,
+                                                                   java.io.OutputStream.class,
+                                                                   java.io.OutputStream.class, String[].class );
+        Object exitCode = run.invoke( compiler, null, null, null, arguments.toArray( new String[arguments.size()] ) );
+        assertEquals( "compiler exit code", Integer.valueOf( 0 ), exitCode );
+        return classes;
+    }
+}
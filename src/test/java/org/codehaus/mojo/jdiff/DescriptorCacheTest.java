@@ -0,0 +1,138 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DescriptorCacheTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File cacheDirectory;
+
+    private DescriptorCache cache;
+
+    @Before
+    public void setUp()
+    {
+        cacheDirectory = new File( temp.getRoot(), "cache" );
+        // room for two descriptors of 100 bytes
+        cache = new DescriptorCache( cacheDirectory, 250, new SystemStreamLog() );
+    }
+
+    @Test
+    public void testStoreAndRestore()
+        throws Exception
+    {
+        cache.store( key( "a" ), descriptor( "a" ) );
+
+        File restored = new File( temp.getRoot(), "restored/api.xml" );
+        assertTrue( cache.restore( key( "a" ), restored ) );
+        assertEquals( FileUtils.fileRead( descriptor( "a" ) ), FileUtils.fileRead( restored ) );
+        assertFalse( cache.restore( key( "b" ), new File( temp.getRoot(), "missing.xml" ) ) );
+    }
+
+    @Test
+    public void testMissingDescriptorIsNotStored()
+        throws Exception
+    {
+        cache.store( key( "a" ), new File( temp.getRoot(), "missing.xml" ) );
+        assertFalse( cache.restore( key( "a" ), new File( temp.getRoot(), "restored.xml" ) ) );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction()
+        throws Exception
+    {
+        cache.store( key( "a" ), descriptor( "a" ) );
+        cache.store( key( "b" ), descriptor( "b" ) );
+        age( "a", 3 );
+        age( "b", 2 );
+
+        // using a makes b the least recently used entry
+        assertTrue( cache.restore( key( "a" ), new File( temp.getRoot(), "restored.xml" ) ) );
+        cache.store( key( "c" ), descriptor( "c" ) );
+
+        assertTrue( entry( "a" ).isFile() );
+        assertFalse( entry( "b" ).exists() );
+        assertTrue( entry( "c" ).isFile() );
+    }
+
+    @Test
+    public void testEvictionOfAllButTheLatest()
+        throws Exception
+    {
+        DescriptorCache small = new DescriptorCache( cacheDirectory, 150, new SystemStreamLog() );
+        small.store( key( "a" ), descriptor( "a" ) );
+        age( "a", 1 );
+        small.store( key( "b" ), descriptor( "b" ) );
+
+        assertFalse( entry( "a" ).exists() );
+        assertTrue( entry( "b" ).isFile() );
+    }
+
+    /**
+     * @return a descriptor of 100 bytes
+     */
+    private File descriptor( String name )
+        throws IOException
+    {
+        File descriptor = new File( temp.getRoot(), name + ".xml" );
+        StringBuffer content = new StringBuffer( "<api name=\"" + name + "\">" );
+        while ( content.length() < 94 )
+        {
+            content.append( ' ' );
+        }
+        FileUtils.fileWrite( descriptor.getAbsolutePath(), content.append( "</api>" ).toString() );
+        return descriptor;
+    }
+
+    /**
+     * Pretend an entry was last used {@code hours} ago.
+     */
+    private void age( String name, int hours )
+    {
+        File entry = entry( name );
+        assertTrue( entry.setLastModified( System.currentTimeMillis() - hours * 3600000L ) );
+    }
+
+    private File entry( String name )
+    {
+        return new File( cacheDirectory, key( name ) + ".xml" );
+    }
+
+    private static String key( String name )
+    {
+        return new Fingerprint().add( name ).getHash();
+    }
+}
@@ -0,0 +1,207 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DescriptorFragmentsTest
+{
+    private static final String OPTIONS = "options";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File sources;
+
+    private File fragmentsDirectory;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        sources = temp.newFolder( "src" );
+        fragmentsDirectory = new File( temp.getRoot(), "fragments" );
+        writeSource( "org.example", "Alpha", "run" );
+        writeSource( "org.example", "Beta", "stop" );
+        writeSource( "org.example.sub", "Gamma", "start" );
+        writeSource( "org.other", "Delta", "close" );
+        // a package without API, documenting it gives no package element
+        writeSource( "org.empty", "package-info", null );
+    }
+
+    @Test
+    public void testChangedFileRegeneratesItsPackage()
+        throws Exception
+    {
+        DescriptorFragments fragments = new DescriptorFragments( fragmentsDirectory );
+        Map<String, String> hashes = getPackageHashes();
+        Set<String> stale = fragments.getStalePackages( OPTIONS, hashes );
+        assertEquals( hashes.keySet(), stale );
+        update( fragments, stale, hashes );
+
+        fragments = new DescriptorFragments( fragmentsDirectory );
+        assertTrue( fragments.getStalePackages( OPTIONS, getPackageHashes() ).isEmpty() );
+
+        writeSource( "org.example.sub", "Gamma", "restart" );
+        hashes = getPackageHashes();
+        stale = fragments.getStalePackages( OPTIONS, hashes );
+        // the parent package shares the directory, but not the sources
+        assertEquals( Collections.singleton( "org.example.sub" ), stale );
+        update( fragments, stale, hashes );
+
+        File stitched = new File( temp.getRoot(), "stitched.xml" );
+        fragments.stitch( stitched, "api", hashes.keySet() );
+        assertSameApi( document( hashes.keySet() ), stitched );
+        assertEquals( "restart", ApiReader.read( stitched ).findPackage( "org.example.sub" ).findClass( "Gamma" )
+            .getMethods().get( 0 ).getName() );
+    }
+
+    @Test
+    public void testChangedOptionsRegenerateAllPackages()
+        throws Exception
+    {
+        DescriptorFragments fragments = new DescriptorFragments( fragmentsDirectory );
+        Map<String, String> hashes = getPackageHashes();
+        update( fragments, hashes.keySet(), hashes );
+
+        assertEquals( hashes.keySet(), new DescriptorFragments( fragmentsDirectory )
+            .getStalePackages( "other options", hashes ) );
+    }
+
+    @Test
+    public void testMissingFragmentIsStale()
+        throws Exception
+    {
+        DescriptorFragments fragments = new DescriptorFragments( fragmentsDirectory );
+        Map<String, String> hashes = getPackageHashes();
+        update( fragments, hashes.keySet(), hashes );
+
+        assertTrue( new File( fragmentsDirectory, "org.other.xml" ).delete() );
+        assertEquals( Collections.singleton( "org.other" ), fragments.getStalePackages( OPTIONS, hashes ) );
+    }
+
+    @Test
+    public void testRemovedPackage()
+        throws Exception
+    {
+        DescriptorFragments fragments = new DescriptorFragments( fragmentsDirectory );
+        Map<String, String> hashes = getPackageHashes();
+        update( fragments, hashes.keySet(), hashes );
+
+        FileUtils.deleteDirectory( new File( sources, "org/other" ) );
+        hashes = getPackageHashes();
+        Set<String> stale = fragments.getStalePackages( OPTIONS, hashes );
+        assertTrue( stale.isEmpty() );
+        update( fragments, stale, hashes );
+        assertFalse( new File( fragmentsDirectory, "org.other.xml" ).exists() );
+
+        File stitched = new File( temp.getRoot(), "stitched.xml" );
+        fragments.stitch( stitched, "api", hashes.keySet() );
+        assertSameApi( document( hashes.keySet() ), stitched );
+    }
+
+    /**
+     * Document the stale packages and update the fragments with them, like the descriptor goal.
+     */
+    private void update( DescriptorFragments fragments, Set<String> stale, Map<String, String> hashes )
+        throws IOException
+    {
+        fragments.update( document( stale ), stale, OPTIONS, hashes );
+    }
+
+    /**
+     * Stands in for javadoc: every source is a class with the single method named in the source.
+     */
+    private File document( Set<String> packageNames )
+        throws IOException
+    {
+        Api api = new Api( "api" );
+        for ( String packageName : packageNames )
+        {
+            File directory = new File( sources, packageName.replace( '.', '/' ) );
+            for ( String file : directory.list() )
+            {
+                if ( file.endsWith( ".java" ) && !file.equals( "package-info.java" ) )
+                {
+                    ApiClass apiClass = new ApiClass( file.substring( 0, file.length() - 5 ), false );
+                    ApiMember method = new ApiMember( ApiMember.Kind.METHOD,
+                                                      FileUtils.fileRead( new File( directory, file ) ) );
+                    method.setType( "void" );
+                    apiClass.addMember( method );
+                    api.getPackage( packageName ).addClass( apiClass );
+                }
+            }
+        }
+        return ApiWriter.write( api, temp.newFolder() );
+    }
+
+    private Map<String, String> getPackageHashes()
+        throws IOException
+    {
+        List<String> roots = Arrays.asList( sources.getAbsolutePath() );
+        Map<String, String> hashes = new TreeMap<String, String>();
+        for ( String packageName : new TreeSet<String>( Arrays.asList( "org.example", "org.example.sub", "org.other",
+                                                                        "org.empty" ) ) )
+        {
+            if ( new File( sources, packageName.replace( '.', '/' ) ).isDirectory() )
+            {
+                hashes.put( packageName, DescriptorFragments.getPackageHash( roots, packageName ) );
+            }
+        }
+        return hashes;
+    }
+
+    private void writeSource( String packageName, String className, String methodName )
+        throws IOException
+    {
+        File file = new File( sources, packageName.replace( '.', '/' ) + "/" + className + ".java" );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), methodName == null ? "package " + packageName + ";" : methodName );
+    }
+
+    private static void assertSameApi( File expected, File actual )
+        throws IOException
+    {
+        Api expectedApi = ApiReader.read( expected );
+        Api actualApi = ApiReader.read( actual );
+        assertEquals( expectedApi.getName(), actualApi.getName() );
+        assertEquals( ApiComparatorTest.describe( new ApiComparator().compare( new Api( "none" ), expectedApi ) ),
+                      ApiComparatorTest.describe( new ApiComparator().compare( new Api( "none" ), actualApi ) ) );
+        assertTrue( new ApiComparator().compare( expectedApi, actualApi ).isEmpty() );
+    }
+}
@@ -0,0 +1,177 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JDiffUtilsTest
+{
+    private static final Log LOG = new SystemStreamLog();
+
+    private static final List<String> ROOTS = Arrays.asList( "src/main/java", "target/generated-sources/gen" );
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File basedir;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        basedir = temp.getRoot();
+        writeSource( "src/main/java/org/example/A.java", "package org.example;\npublic class A {}\n" );
+        writeSource( "src/main/java/org/example/internal/Hidden.java",
+                     "package org.example.internal;\nclass Hidden {}\n" );
+        writeSource( "src/main/java/org/example/doc/package-info.java",
+                     "/** Docs only */\npackage org.example.doc;\n" );
+        writeSource( "src/main/java/.svn/Ignored.java", "package svn;\npublic class Ignored {}\n" );
+        writeSource( "target/generated-sources/gen/org/example/generated/Generated.java",
+                     "package org.example.generated;\n@Deprecated\npublic interface Generated {}\n" );
+        // javadoc can't find sources outside the directory of their package
+        writeSource( "target/generated-sources/gen/flat/Misplaced.java",
+                     "package org.example.misplaced;\npublic interface Misplaced {}\n" );
+        writeSource( "target/generated-sources/gen/org/example/internal/Misplaced.java",
+                     "package org.example.misplaced;\npublic class Misplaced {}\n" );
+    }
+
+    @Test
+    public void testPublicPackages()
+        throws Exception
+    {
+        Set<String> expected = set( "org.example", "org.example.generated" );
+        assertEquals( expected, JDiffUtils.getPackages( basedir, ROOTS, "public", null, LOG ) );
+        assertEquals( expected, JDiffUtils.getPackages( basedir, ROOTS, "protected", null, LOG ) );
+    }
+
+    @Test
+    public void testAllPackages()
+        throws Exception
+    {
+        Set<String> expected = set( "org.example", "org.example.internal", "org.example.generated" );
+        assertEquals( expected, JDiffUtils.getPackages( basedir, ROOTS, "package", null, LOG ) );
+        assertEquals( expected, JDiffUtils.getPackages( basedir, ROOTS, "private", null, LOG ) );
+        assertEquals( expected, JDiffUtils.getPackages( basedir, ROOTS ) );
+    }
+
+    @Test
+    public void testMissingRoot()
+        throws Exception
+    {
+        List<String> roots = new ArrayList<String>( ROOTS );
+        roots.add( "src/missing/java" );
+        roots.add( new File( basedir, "src/main/java" ).getAbsolutePath() );
+        assertEquals( set( "org.example", "org.example.generated" ),
+                      JDiffUtils.getPackages( basedir, roots, "public", null, LOG ) );
+    }
+
+    @Test
+    public void testModuleExports()
+        throws Exception
+    {
+        writeSource( "src/main/java/module-info.java", "module org.example\n{\n    exports org.example.internal;\n"
+            + "    exports org.example to org.friend;\n}\n" );
+        assertEquals( set( "org.example.internal", "org.example.generated" ),
+                      JDiffUtils.getPackages( basedir, ROOTS, "private", null, LOG ) );
+    }
+
+    @Test
+    public void testParallelWalk()
+        throws Exception
+    {
+        List<String> roots = new ArrayList<String>();
+        Set<String> expected = new HashSet<String>();
+        for ( int i = 0; i < 16; i++ )
+        {
+            String root = "roots/" + i;
+            writeSource( root + "/org/example/p" + i + "/A.java",
+                         "package org.example.p" + i + ";\npublic class A {}" );
+            writeSource( root + "/org/example/shared/B" + i + ".java", "package org.example.shared;\nclass B" + i
+                + " {}" );
+            roots.add( root );
+            expected.add( "org.example.p" + i );
+            assertEquals( set( "org.example.p" + i ),
+                          JDiffUtils.getPackages( basedir, Arrays.asList( root ), "public", null, LOG ) );
+        }
+        assertEquals( expected, JDiffUtils.getPackages( basedir, roots, "public", null, LOG ) );
+
+        expected.add( "org.example.shared" );
+        assertEquals( expected, JDiffUtils.getPackages( basedir, roots, "private", null, LOG ) );
+    }
+
+    @Test
+    public void testBuildCache()
+        throws Exception
+    {
+        String buildKey = basedir.getAbsolutePath();
+        assertEquals( set( "org.example", "org.example.generated" ),
+                      JDiffUtils.getPackages( basedir, ROOTS, "public", buildKey, LOG ) );
+
+        writeSource( "src/main/java/org/example/added/C.java", "package org.example.added;\npublic class C {}\n" );
+        // the roots are walked once per build
+        assertEquals( set( "org.example", "org.example.generated" ),
+                      JDiffUtils.getPackages( basedir, ROOTS, "public", buildKey, LOG ) );
+        // but once per visibility
+        assertEquals( set( "org.example", "org.example.internal", "org.example.generated", "org.example.added" ),
+                      JDiffUtils.getPackages( basedir, ROOTS, "private", buildKey, LOG ) );
+        assertEquals( set( "org.example", "org.example.generated", "org.example.added" ),
+                      JDiffUtils.getPackages( basedir, ROOTS, "public", buildKey + "-next", LOG ) );
+    }
+
+    @Test
+    public void testFilterPackages()
+    {
+        Set<String> packages = set( "org.example", "org.example.internal", "org.example.api", "org.other" );
+        assertEquals( set( "org.example", "org.example.api" ),
+                      JDiffUtils.filterPackages( packages, "org.example*", "*.internal" ) );
+        assertEquals( set( "org.example.api", "org.other" ),
+                      JDiffUtils.filterPackages( packages, " org.example.a?i , org.other ", null ) );
+        assertEquals( packages, JDiffUtils.filterPackages( packages, "", null ) );
+    }
+
+    private void writeSource( String path, String content )
+        throws IOException
+    {
+        File file = new File( basedir, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", content );
+    }
+
+    private static Set<String> set( String... packages )
+    {
+        return new HashSet<String>( Arrays.asList( packages ) );
+    }
+}
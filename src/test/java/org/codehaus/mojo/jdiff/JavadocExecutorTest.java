@@ -0,0 +1,155 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavadocExecutorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private String javadoc;
+
+    private File sourcepath;
+
+    private File classpath;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        File javaHome = new File( System.getProperty( "java.home" ) );
+        File executable = new File( javaHome, "bin/javadoc" );
+        if ( !executable.isFile() )
+        {
+            // the JRE of a JDK 8
+            executable = new File( javaHome.getParentFile(), "bin/javadoc" );
+        }
+        Assume.assumeTrue( executable.isFile() );
+        javadoc = executable.getAbsolutePath();
+
+        // whitespace, quotes and '#' have a meaning in argfiles
+        sourcepath = new File( temp.getRoot(), "src dir's #1" );
+        File source = new File( sourcepath, "p/A.java" );
+        source.getParentFile().mkdirs();
+        FileUtils.fileWrite( source.getAbsolutePath(), "UTF-8", "package p;\n/** A class. */\npublic class A\n{\n"
+            + "    /** A type of the classpath. */\n    public org.codehaus.plexus.util.StringUtils utils;\n}\n" );
+
+        File jar = new File( StringUtils.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+        classpath = new File( temp.getRoot(), "lib dir's #1/plexus-utils.jar" );
+        FileUtils.copyFile( jar, classpath );
+    }
+
+    @Test
+    public void testArgumentFiles()
+        throws Exception
+    {
+        File workingDir = temp.newFolder( "work" );
+        File output = new File( temp.getRoot(), "out" );
+
+        createExecutor( output ).execute( workingDir.getAbsolutePath() );
+        assertTrue( new File( output, "p/A.html" ).isFile() );
+
+        File[] argfiles = listFiles( workingDir, "", ".args" );
+        assertEquals( 3, argfiles.length );
+        String classpathArgs = FileUtils.fileRead( listFiles( workingDir, "classpath-", ".args" )[0] );
+        assertEquals( "'-classpath'\n'" + escape( classpath.getAbsolutePath() ) + "'\n", classpathArgs );
+        assertEquals( "'p'\n", FileUtils.fileRead( listFiles( workingDir, "packages-", ".args" )[0] ) );
+
+        // the same arguments reuse the argfiles
+        FileUtils.forceDelete( output );
+        createExecutor( output ).execute( workingDir.getAbsolutePath() );
+        assertTrue( new File( output, "p/A.html" ).isFile() );
+        assertEquals( 3, listFiles( workingDir, "", ".args" ).length );
+    }
+
+    @Test
+    public void testPathingJar()
+        throws Exception
+    {
+        File workingDir = temp.newFolder( "work" );
+        File output = new File( temp.getRoot(), "out" );
+
+        JavadocExecutor executor = createExecutor( output );
+        executor.setPathingJarThreshold( 1 );
+        executor.execute( workingDir.getAbsolutePath() );
+        assertTrue( new File( output, "p/A.html" ).isFile() );
+
+        File[] jars = listFiles( workingDir, "classpath-", ".jar" );
+        assertEquals( 1, jars.length );
+        JarFile jarFile = new JarFile( jars[0] );
+        try
+        {
+            Manifest manifest = jarFile.getManifest();
+            assertEquals( classpath.toURI().toURL().toExternalForm(),
+                          manifest.getMainAttributes().getValue( "Class-Path" ) );
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        String classpathArgs = FileUtils.fileRead( listFiles( workingDir, "classpath-", ".args" )[0] );
+        assertEquals( "'-classpath'\n'" + escape( jars[0].getAbsolutePath() ) + "'\n", classpathArgs );
+    }
+
+    private JavadocExecutor createExecutor( File output )
+    {
+        JavadocExecutor executor = new JavadocExecutor( javadoc, new SystemStreamLog() );
+        executor.addJvmOption( "-Xmx128m" );
+        executor.addArgument( "-quiet" );
+        executor.addArgumentPair( "d", output.getAbsolutePath() );
+        executor.addArgumentPair( "sourcepath", sourcepath.getAbsolutePath() );
+        executor.addArgumentPair( "classpath", classpath.getAbsolutePath() );
+        executor.addArgument( "p" );
+        return executor;
+    }
+
+    private static String escape( String argument )
+    {
+        return StringUtils.replace( StringUtils.replace( argument, "\\", "\\\\" ), "'", "\\'" );
+    }
+
+    private static File[] listFiles( File directory, final String prefix, final String suffix )
+    {
+        return directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.getName().startsWith( prefix ) && file.getName().endsWith( suffix );
+            }
+        } );
+    }
+}
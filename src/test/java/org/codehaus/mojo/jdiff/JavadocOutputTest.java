@@ -0,0 +1,129 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavadocOutputTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testCounts()
+        throws Exception
+    {
+        File logFile = new File( temp.getRoot(), "logs/javadoc.log" );
+        JavadocOutput output = new JavadocOutput( logFile, new SystemStreamLog() );
+        output.start();
+        output.consumeLine( "Loading source files for package org.example..." );
+        output.consumeLine( "/src/org/example/A.java:12: warning: no @param for x" );
+        output.consumeLine( "/src/org/example/A.java:14: warning: no @param for y" );
+        output.consumeLine( "/src/org/example/B.java:3: warning - Tag @see: reference not found: C" );
+        output.consumeLine( "/src/org/example/B.java:9: error: cannot find symbol" );
+        output.consumeLine( "error: invalid flag: -foo" );
+        output.consumeLine( "1 error" );
+        output.stop();
+
+        assertEquals( 3, output.getWarningCount() );
+        assertEquals( 2, output.getErrorCount() );
+        assertEquals( Arrays.asList( "/src/org/example/B.java:9: error: cannot find symbol",
+                                     "error: invalid flag: -foo" ), output.getFirstErrors() );
+        // the log file holds every line
+        List<?> logged = FileUtils.loadFile( output.getLogFile() );
+        assertEquals( 7, logged.size() );
+        assertEquals( "1 error", logged.get( 6 ) );
+    }
+
+    @Test
+    public void testTail()
+        throws Exception
+    {
+        JavadocOutput output = new JavadocOutput( temp.newFile( "javadoc.log" ), new SystemStreamLog() );
+        output.start();
+        assertTrue( output.getTail().isEmpty() );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            output.consumeLine( "line " + i );
+        }
+        output.stop();
+
+        List<String> tail = output.getTail();
+        assertEquals( 40, tail.size() );
+        assertEquals( "line 4960", tail.get( 0 ) );
+        assertEquals( "line 4999", tail.get( 39 ) );
+        assertEquals( 0, output.getWarningCount() );
+        assertEquals( 5000, FileUtils.loadFile( output.getLogFile() ).size() );
+    }
+
+    @Test
+    public void testDeadWriter()
+        throws Exception
+    {
+        final List<CharSequence> logged = new ArrayList<CharSequence>();
+        JavadocOutput output = new JavadocOutput( temp.newFile( "javadoc.log" ), new SystemStreamLog()
+        {
+            public void info( CharSequence content )
+            {
+                logged.add( content );
+            }
+        } );
+        output.start();
+        output.consumeLine( "line 0" );
+        for ( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if ( "jdiff-javadoc-output".equals( thread.getName() ) )
+            {
+                thread.interrupt();
+                thread.join();
+            }
+        }
+
+        // more lines than the queue holds, none of them may block
+        for ( int i = 1; i < 5000; i++ )
+        {
+            output.consumeLine( "line " + i );
+        }
+        output.stop();
+
+        assertEquals( 4999, logged.size() );
+        assertEquals( "line 4999", logged.get( 4998 ) );
+    }
+
+    @Test
+    public void testCategory()
+    {
+        assertEquals( "Tag @see", JavadocOutput.getCategory( "Tag @see: reference not found: Bar" ) );
+        assertEquals( "no @param for", JavadocOutput.getCategory( "no @param for x" ) );
+        assertEquals( "cannot", JavadocOutput.getCategory( " cannot " ) );
+    }
+}
@@ -0,0 +1,106 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportFingerprintTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File report;
+
+    private ReportFingerprint fingerprint;
+
+    @Before
+    public void setUp()
+    {
+        report = new File( temp.getRoot(), "site/jdiff/changes.html" );
+        fingerprint = new ReportFingerprint( new File( temp.getRoot(), "jdiff/jdiff.fingerprint" ), report );
+    }
+
+    @Test
+    public void testFirstRun()
+        throws Exception
+    {
+        assertFalse( fingerprint.isUpToDate( key( "1.0", "1.1" ) ) );
+    }
+
+    @Test
+    public void testSameInput()
+        throws Exception
+    {
+        generateReport( key( "1.0", "1.1" ) );
+        assertTrue( fingerprint.isUpToDate( key( "1.0", "1.1" ) ) );
+        assertTrue( new ReportFingerprint( fingerprint.getFile(), report ).isUpToDate( key( "1.0", "1.1" ) ) );
+    }
+
+    @Test
+    public void testChangedInput()
+        throws Exception
+    {
+        generateReport( key( "1.0", "1.1" ) );
+        assertFalse( fingerprint.isUpToDate( key( "1.0", "1.2" ) ) );
+        assertFalse( fingerprint.isUpToDate( key( "1.1", "1.0" ) ) );
+    }
+
+    @Test
+    public void testMissingReport()
+        throws Exception
+    {
+        generateReport( key( "1.0", "1.1" ) );
+        assertTrue( report.delete() );
+        assertFalse( fingerprint.isUpToDate( key( "1.0", "1.1" ) ) );
+    }
+
+    @Test
+    public void testDeleted()
+        throws Exception
+    {
+        generateReport( key( "1.0", "1.1" ) );
+        // a run that fails after deleting the fingerprint leaves the report out of date
+        fingerprint.delete();
+        assertFalse( fingerprint.isUpToDate( key( "1.0", "1.1" ) ) );
+        assertFalse( fingerprint.getFile().exists() );
+    }
+
+    private void generateReport( String key )
+        throws Exception
+    {
+        report.getParentFile().mkdirs();
+        FileUtils.fileWrite( report.getAbsolutePath(), "<html/>" );
+        fingerprint.store( key );
+    }
+
+    private static String key( String comparisonVersion, String baseVersion )
+    {
+        return new Fingerprint().add( comparisonVersion ).add( baseVersion ).getHash();
+    }
+}
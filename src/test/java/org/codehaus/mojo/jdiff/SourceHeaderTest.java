@@ -0,0 +1,177 @@
+package org.codehaus.mojo.jdiff;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceHeaderTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testPublicClass()
+        throws Exception
+    {
+        SourceHeader header = read( "package org.example;\n\nimport java.util.List;\n\npublic class A\n{\n}\n" );
+        assertEquals( "org.example", header.getPackageName() );
+        assertTrue( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testPackagePrivateClass()
+        throws Exception
+    {
+        SourceHeader header = read( "package org.example;\n\nclass A\n{\n    public void run()\n    {\n    }\n}\n" );
+        assertEquals( "org.example", header.getPackageName() );
+        assertFalse( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testPublicClassAfterPackagePrivateClass()
+        throws Exception
+    {
+        SourceHeader header = read( "package org.example;\nclass A { class Inner { } }\npublic enum B { X }\n" );
+        assertTrue( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testDefaultPackage()
+        throws Exception
+    {
+        SourceHeader header = read( "import java.util.List;\ninterface A {}\n" );
+        assertEquals( "", header.getPackageName() );
+        assertFalse( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testComments()
+        throws Exception
+    {
+        SourceHeader header =
+            read( "/*\n * package org.license;\n * public class License\n */\n// package org.line;\n"
+                + "package /* the */ org . example; // public class Line\n"
+                + "/** public class Doc */\nclass A\n{\n    // }\n    /* { */\n}\n" );
+        assertEquals( "org.example", header.getPackageName() );
+        assertFalse( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testLiterals()
+        throws Exception
+    {
+        SourceHeader header =
+            read( "package org.example;\nclass A\n{\n    String s = \"} public class B {\";\n    char c = '}';\n"
+                + "    String escaped = \"\\\" }\";\n}\n" );
+        assertFalse( header.mayDeclarePublicType() );
+        assertEquals( "class A { String s = \"\"; }",
+                      SourceHeader.stripComments( "class A { String s = \"/* x */\"; }" ) );
+    }
+
+    @Test
+    public void testAnnotations()
+        throws Exception
+    {
+        SourceHeader header =
+            read( "package org.example;\n@Deprecated\n@SuppressWarnings( { \"unchecked\", \"class\" } )\n"
+                + "@org.example.Marker( value = ( 1 + 2 ) )\npublic final class A\n{\n}\n" );
+        assertEquals( "org.example", header.getPackageName() );
+        assertTrue( header.mayDeclarePublicType() );
+
+        assertTrue( read( "package org.example;\npublic @interface Marker {}\n" ).mayDeclarePublicType() );
+        assertFalse( read( "package org.example;\n@Retention( RUNTIME ) @interface Marker {}\n" )
+            .mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testPackageInfo()
+        throws Exception
+    {
+        SourceHeader header =
+            read( "/**\n * The example package.\n */\n@Deprecated\n@Generated( \"x\" )\npackage org.example;\n" );
+        assertEquals( "org.example", header.getPackageName() );
+        assertFalse( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testLongSource()
+        throws Exception
+    {
+        StringBuffer source = new StringBuffer( "package org.example;\nclass A\n{\n" );
+        while ( source.length() < SourceHeader.HEADER_SIZE )
+        {
+            source.append( "    int field" ).append( source.length() ).append( ";\n" );
+        }
+        source.append( "}\n" );
+        SourceHeader header = read( source.toString() );
+        assertEquals( "org.example", header.getPackageName() );
+        // the end of the source is unknown
+        assertTrue( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testUnparsableSource()
+        throws Exception
+    {
+        SourceHeader header = read( "#!/bin/sh\npackage org.example;\n" );
+        assertNull( header.getPackageName() );
+        assertTrue( header.mayDeclarePublicType() );
+    }
+
+    @Test
+    public void testReadExports()
+        throws Exception
+    {
+        File moduleInfo = write( "module-info.java",
+                                 "/* exports org.comment; */\nmodule org.example\n{\n    requires java.base;\n"
+                                     + "    exports org.example;\n    exports org.example.api ;\n"
+                                     + "    exports org.example.internal to org.friend;\n"
+                                     + "    // exports org.line;\n}\n" );
+        assertEquals( new HashSet<String>( Arrays.asList( "org.example", "org.example.api" ) ),
+                      SourceHeader.readExports( moduleInfo ) );
+    }
+
+    private SourceHeader read( String source )
+        throws IOException
+    {
+        return SourceHeader.read( write( "Source.java", source ) );
+    }
+
+    private File write( String name, String content )
+        throws IOException
+    {
+        File file = new File( temp.getRoot(), name );
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", content );
+        return file;
+    }
+}